@@ -0,0 +1,59 @@
+package com.fnb_ptaf.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of getting a hot-path event into a file through the {@link EventJournal} with
+ * logging it through slf4j-simple, with 16 workers at once. slf4j-simple writes to
+ * {@code target/jmh-slf4j-simple.log} rather than the console, as a log file would in a run. A worker
+ * records events far faster than the journal's writer drains them, so without help the rings would
+ * fill within microseconds and the benchmark would mostly time dropped events; each worker therefore
+ * drains the journal itself before its ring can fill, and the time per event includes its share of
+ * formatting and writing, as it does for slf4j. Run it with {@code mvn -Pjmh verify -DskipTests}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(16)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.logFile=target/jmh-slf4j-simple.log")
+public class EventJournalBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(EventJournalBenchmark.class);
+
+    private static final String NAME = "Login.submit";
+    private static final String DETAIL = "click";
+    // Well below the default ring size of 8192, so a worker's own ring never fills between its drains
+    private static final int DRAIN_EVERY = 1024;
+
+    @State(Scope.Thread)
+    public static class Worker {
+        int sinceDrain;
+    }
+
+    @Benchmark
+    public void slf4jSimpleInfo() {
+        logger.info("{} {} {} -> {} in {} us", EventJournal.Event.ACTION, NAME, DETAIL, true, 1234L);
+    }
+
+    @Benchmark
+    public void eventJournalRecordAndDrain(Worker worker) {
+        EventJournal.record(EventJournal.Event.ACTION, NAME, DETAIL, EventJournal.TRUE, 1_234_000L);
+        if (++worker.sinceDrain == DRAIN_EVERY) {
+            worker.sinceDrain = 0;
+            EventJournal.drain();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.fnb_ptaf;
+
+import com.microsoft.playwright.Page;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the scopes resolved by {@link GetContextScope}, which as an interface cannot keep
+ * private state of its own.
+ */
+final class ContextScopeCache {
+    // Resolved scopes per page and context path. The scopes hold their page, so the entries are
+    // removed explicitly when the page closes rather than left to weak keys
+    private static final Map<Page, Map<String, LocatorScope>> SCOPES = new ConcurrentHashMap<>();
+
+    private ContextScopeCache() {
+    }
+
+    /**
+     * @return The scopes resolved so far for a page, registering their removal when it closes
+     */
+    static Map<String, LocatorScope> scopesOf(Page page) {
+        return SCOPES.computeIfAbsent(page, p -> {
+            p.onClose(SCOPES::remove);
+            return new ConcurrentHashMap<>();
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.fnb_ptaf;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A pre-parsed element locator as declared in {@code elements/*.yml}. Instances are generated at
+ * build time into {@code com.fnb_ptaf.elements.Elements} (e.g. {@code Elements.Login.SUBMIT}), so
+ * typos in element keys and unknown locator types fail the compilation instead of a running scenario.
+ */
+public final class ElementLocator {
+    private final String element;
+    private final String key;
+    private final String context;
+    private final List<String> candidates;
+    private final String locatorType;
+    private final String actualLocator;
+
+    /**
+     * Creates a locator descriptor, parsing the primary locator.
+     *
+     * @param element    The name of the element as defined in the YAML configuration.
+     * @param key        The key within the element.
+     * @param context    The context path of the element (e.g. {@code frame:payments}), or null for the page.
+     * @param candidates The locator values in declaration order; the first one is the primary locator.
+     */
+    public ElementLocator(String element, String key, String context, List<String> candidates) {
+        this(element, key, context, candidates,
+                GetLocatorType.getLocatorType(candidates.get(0)), GetActualLocator.getActualLocator(candidates.get(0)));
+    }
+
+    /**
+     * Creates a locator descriptor whose primary locator was parsed at build time.
+     *
+     * @param element       The name of the element as defined in the YAML configuration.
+     * @param key           The key within the element.
+     * @param context       The context path of the element (e.g. {@code frame:payments}), or null for the page.
+     * @param candidates    The locator values in declaration order; the first one is the primary locator.
+     * @param locatorType   The locator type of the primary locator (e.g. {@code Id}).
+     * @param actualLocator The locator string of the primary locator without its type prefix.
+     */
+    public ElementLocator(String element, String key, String context, List<String> candidates,
+                          String locatorType, String actualLocator) {
+        this.element = element;
+        this.key = key;
+        this.context = context;
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.locatorType = locatorType;
+        this.actualLocator = actualLocator;
+    }
+
+    public String getElement() {
+        return element;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getContext() {
+        return context;
+    }
+
+    public List<String> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * @return The locator type of the primary locator (e.g. {@code Id}).
+     */
+    public String getLocatorType() {
+        return locatorType;
+    }
+
+    /**
+     * @return The locator string of the primary locator without its type prefix.
+     */
+    public String getActualLocator() {
+        return actualLocator;
+    }
+
+    @Override
+    public String toString() {
+        return element + "." + key;
+    }
+}
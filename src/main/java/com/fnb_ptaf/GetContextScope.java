@@ -0,0 +1,125 @@
+package com.fnb_ptaf;
+
+import com.fnb_ptaf.utils.YamlReader;
+import com.microsoft.playwright.Page;
+
+import static com.fnb_ptaf.GetActualLocator.getActualLocator;
+import static com.fnb_ptaf.GetLocatorType.getLocatorType;
+
+public interface GetContextScope {
+
+    /**
+     * Resolves a context path such as {@code frame:payments>frame:card} or
+     * {@code frame:payments>shadow:CSS_card-form} to the scope elements are located in.
+     * Segments are separated by {@code >}; each segment is either {@code frame:<frame>} or
+     * {@code shadow:<host>}. A frame is given by its name or id, or by a CSS/XPATH/Id/Name/Class
+     * locator value; a shadow host is given by a locator value. {@code page} (or an empty path)
+     * is the page itself. The resolved chain is cached per page, so steps that keep working in
+     * the same frame don't rebuild the frame hierarchy.
+     *
+     * @param page        The Page object in which to resolve the context.
+     * @param contextPath The context path to resolve.
+     * @return The scope in which to locate elements.
+     * @throws IllegalArgumentException if a segment of the path is not understood.
+     */
+    static LocatorScope getContextScope(Page page, String contextPath) {
+        if (contextPath == null || contextPath.trim().isEmpty() || "page".equals(contextPath.trim())) {
+            return LocatorScope.of(page);
+        }
+        return ContextScopeCache.scopesOf(page)
+                .computeIfAbsent(contextPath, path -> resolve(page, path));
+    }
+
+    /**
+     * Resolves the scope of an element as declared by the {@code context} entry of the element
+     * in the YAML configuration, e.g.
+     * <pre>
+     * elements:
+     *   payments:
+     *     context: "frame:payments>frame:card"
+     *     cardNumber: "Id_card-number"
+     * </pre>
+     *
+     * @param page    The Page object in which to resolve the context.
+     * @param element The name of the element as defined in the YAML configuration.
+     * @return The scope in which to locate the element's keys.
+     */
+    static LocatorScope getElementScope(Page page, String element) {
+        Object contextPath = YamlReader.getOrDefault("elements." + element + ".context", null);
+        return getContextScope(page, contextPath != null ? contextPath.toString() : null);
+    }
+
+    private static LocatorScope resolve(Page page, String contextPath) {
+        LocatorScope scope = LocatorScope.of(page);
+        for (String segment : contextPath.split(">")) {
+            String trimmed = segment.trim();
+            int separator = trimmed.indexOf(':');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Unknown context segment '" + trimmed + "' in '" + contextPath + "'");
+            }
+            String kind = trimmed.substring(0, separator);
+            String target = trimmed.substring(separator + 1);
+            switch (kind) {
+                case "frame":
+                    scope = scope.frame(frameSelector(target));
+                    break;
+                case "shadow":
+                    // Playwright's CSS engine pierces open shadow roots, so scoping to the host is enough
+                    scope = scope.element(toSelector(target));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown context: " + kind + " in '" + contextPath + "'");
+            }
+        }
+        return scope;
+    }
+
+    private static String frameSelector(String target) {
+        if (isLocatorValue(target)) {
+            return toSelector(target);
+        }
+        String value = cssString(target);
+        return "iframe[name=" + value + "], iframe[id=" + value + "], frame[name=" + value + "]";
+    }
+
+    /**
+     * Quotes a value for a CSS attribute selector, so frame names with quotes, spaces or a leading
+     * digit still match.
+     */
+    private static String cssString(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private static boolean isLocatorValue(String target) {
+        switch (getLocatorType(target)) {
+            case "XPATH":
+            case "CSS":
+            case "Tag":
+            case "Id":
+            case "Name":
+            case "Class":
+                return target.contains("_");
+            default:
+                return false;
+        }
+    }
+
+    private static String toSelector(String target) {
+        if (!isLocatorValue(target)) {
+            return target;
+        }
+        String locator = getActualLocator(target);
+        switch (getLocatorType(target)) {
+            case "XPATH":
+                return "xpath=" + locator;
+            case "Id":
+                return "#" + locator;
+            case "Name":
+                return "[name='" + locator + "']";
+            case "Class":
+                return "." + locator;
+            default:
+                return locator;
+        }
+    }
+}
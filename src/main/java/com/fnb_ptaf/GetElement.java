@@ -5,6 +5,10 @@ import com.fnb_ptaf.utils.YamlReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public interface GetElement {
     Logger logger = LoggerFactory.getLogger(CommonMethods.class);
     /**
@@ -15,8 +19,31 @@ public interface GetElement {
      * @return The CSS selector as a string
      */
     static String getElement(String element, String key) {
+        List<String> candidates = getElementCandidates(element, key);
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * Retrieves all locator values declared for a given element and key. A key may declare a single
+     * locator value or an ordered list whose first entry is the primary locator and whose remaining
+     * entries are fallbacks used for self-healing.
+     *
+     * @param element The name of the element (e.g., button, input)
+     * @param key     The specific key within the element (e.g., CSS selector, ID)
+     * @return The locator values in declaration order
+     */
+    static List<String> getElementCandidates(String element, String key) {
         try {
-            return (String) YamlReader.get("elements." + element + "." + key);
+            Object value = YamlReader.get("elements." + element + "." + key);
+            List<String> candidates = new ArrayList<>();
+            if (value instanceof Collection) {
+                for (Object candidate : (Collection<?>) value) {
+                    candidates.add(String.valueOf(candidate));
+                }
+            } else if (value != null) {
+                candidates.add((String) value);
+            }
+            return candidates;
         } catch (Exception e) {
             logger.error("Failed to retrieve selector for element '{}'", element + key, e);
             throw e;
@@ -4,8 +4,21 @@ import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import com.microsoft.playwright.options.AriaRole;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
 public interface GetLocatorForType {
 
+    /**
+     * The supported locator types and how each one is resolved inside a scope. This is the single
+     * definition of the locator types; the element catalogue generator and the dry-run validator
+     * check the YAML configuration against it.
+     */
+    Map<String, BiFunction<LocatorScope, String, Locator>> LOCATORS = locators();
+
     /**
      * Determines and returns the appropriate Locator based on the specified locator type.
      * This method is designed for use in page contexts and supports various locator types,
@@ -18,41 +31,74 @@ public interface GetLocatorForType {
      * @throws IllegalArgumentException if the locator type is unknown.
      */
     static Locator getLocatorForType(String locatorType, Page page, String locator) {
-        switch (locatorType) {
-            case "XPATH":
-            case "CSS":
-            case "Tag":
-                return page.locator(locator);
-            case "Button":
-                return page.getByRole(AriaRole.BUTTON, new Page.GetByRoleOptions().setName(locator));
-            case "LinkText":
-                return page.getByRole(AriaRole.LINK, new Page.GetByRoleOptions().setName(locator));
-            case "Link":
-                return page.getByRole(AriaRole.LINK, new Page.GetByRoleOptions().setName(locator).setExact(true));
-            case "Heading":
-                return page.getByRole(AriaRole.HEADING, new Page.GetByRoleOptions().setName(locator));
-            case "Text":
-                return page.getByText(locator);
-            case "Role":
-                return page.getByRole(AriaRole.valueOf(locator));
-            case "AltText":
-                return page.getByAltText(locator);
-            case "Title":
-                return page.getByTitle(locator);
-            case "Placeholder":
-                return page.getByPlaceholder(locator);
-            case "Label":
-                return page.getByLabel(locator);
-            case "TestId":
-                return page.getByTestId(locator);
-            case "Id":
-                return page.locator("#" + locator);
-            case "Name":
-                return page.locator("[name='" + locator + "']");
-            case "Class":
-                return page.locator("." + locator);
-            default:
-                throw new IllegalArgumentException("Unknown locator type: " + locatorType);
+        return getLocatorForType(locatorType, LocatorScope.of(page), locator);
+    }
+
+    /**
+     * Determines and returns the appropriate Locator based on the specified locator type,
+     * resolved inside the given scope (the page, a frame or a shadow host).
+     *
+     * @param locatorType The type of locator (e.g., XPATH, CSS).
+     * @param scope       The scope in which to locate the element.
+     * @param locator     The locator string used to identify the element.
+     * @return The appropriate Locator for the specified element.
+     * @throws IllegalArgumentException if the locator type is unknown.
+     */
+    static Locator getLocatorForType(String locatorType, LocatorScope scope, String locator) {
+        BiFunction<LocatorScope, String, Locator> factory = LOCATORS.get(locatorType);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown locator type: " + locatorType);
         }
+        return factory.apply(scope, locator);
+    }
+
+    /**
+     * Checks a locator value (e.g. {@code Role_BUTTON}) without resolving it. This is the check
+     * the element catalogue generator and the dry-run validator apply to the YAML configuration.
+     *
+     * @param locatorValue The locator value, including its type prefix.
+     * @return A description of the problem, or null if the value can be resolved.
+     */
+    static String validate(String locatorValue) {
+        int separator = locatorValue.indexOf('_');
+        String type = separator == -1 ? locatorValue : locatorValue.substring(0, separator);
+        if (!LOCATORS.containsKey(type)) {
+            return "unknown locator type '" + type + "' in '" + locatorValue + "'";
+        }
+        if (separator == -1 || separator == locatorValue.length() - 1) {
+            return "locator '" + locatorValue + "' has no value after its type";
+        }
+        if ("Role".equals(type)) {
+            try {
+                AriaRole.valueOf(locatorValue.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                return "unknown ARIA role '" + locatorValue.substring(separator + 1) + "' in '" + locatorValue
+                        + "', expected one of " + Arrays.toString(AriaRole.values());
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, BiFunction<LocatorScope, String, Locator>> locators() {
+        Map<String, BiFunction<LocatorScope, String, Locator>> locators = new LinkedHashMap<>();
+        locators.put("XPATH", LocatorScope::locator);
+        locators.put("CSS", LocatorScope::locator);
+        locators.put("Tag", LocatorScope::locator);
+        locators.put("Button", (scope, locator) -> scope.getByRole(AriaRole.BUTTON, locator, false));
+        locators.put("LinkText", (scope, locator) -> scope.getByRole(AriaRole.LINK, locator, false));
+        locators.put("Link", (scope, locator) -> scope.getByRole(AriaRole.LINK, locator, true));
+        locators.put("Heading", (scope, locator) -> scope.getByRole(AriaRole.HEADING, locator, false));
+        locators.put("Heading1", (scope, locator) -> scope.getByRole(AriaRole.HEADING, locator, true));
+        locators.put("Text", LocatorScope::getByText);
+        locators.put("Role", (scope, locator) -> scope.getByRole(AriaRole.valueOf(locator)));
+        locators.put("AltText", LocatorScope::getByAltText);
+        locators.put("Title", LocatorScope::getByTitle);
+        locators.put("Placeholder", LocatorScope::getByPlaceholder);
+        locators.put("Label", LocatorScope::getByLabel);
+        locators.put("TestId", LocatorScope::getByTestId);
+        locators.put("Id", (scope, locator) -> scope.locator("#" + locator));
+        locators.put("Name", (scope, locator) -> scope.locator("[name='" + locator + "']"));
+        locators.put("Class", (scope, locator) -> scope.locator("." + locator));
+        return Collections.unmodifiableMap(locators);
     }
 }
@@ -1,24 +1,49 @@
 package com.fnb_ptaf;
 
+import com.fnb_ptaf.utils.LocatorHealer;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 
+import java.util.List;
+
 import static com.fnb_ptaf.GetActualLocator.getActualLocator;
-import static com.fnb_ptaf.GetElement.getElement;
+import static com.fnb_ptaf.GetElement.getElementCandidates;
 import static com.fnb_ptaf.GetLocatorType.getLocatorType;
 
 public interface GetTargetLocator {
      static Locator getTargetLocator(Page page, String element, String key) {
-        String locatorValue = getElement(element, key);
+        List<String> candidates = getElementCandidates(element, key);
+        LocatorScope scope = GetContextScope.getElementScope(page, element);
+
+         // Keys with fallback locators are resolved by racing the candidates
+         if (candidates.size() > 1) {
+             return LocatorHealer.resolve(scope, element, key, candidates);
+         }
+
+        String locatorValue = candidates.isEmpty() ? null : candidates.get(0);
         String locatorType = getLocatorType(locatorValue);
         String actualLocator = getActualLocator(locatorValue);
 
          try {
-                 return GetLocatorForType.getLocatorForType(locatorType, page, actualLocator);
+                 return GetLocatorForType.getLocatorForType(locatorType, scope, actualLocator);
          } catch (IllegalArgumentException e) {
-             throw new RuntimeException("Unknown context: " + page);
+             throw new RuntimeException("Cannot locate '" + element + "." + key + "': " + e.getMessage(), e);
          }
      }
-}
-
 
+     /**
+      * Resolves a pre-parsed element locator generated from the YAML configuration, without
+      * looking anything up in the YAML data.
+      *
+      * @param page    The Page object in which to locate the element.
+      * @param locator The generated element locator (e.g. {@code Elements.Login.SUBMIT}).
+      * @return The Locator for the element.
+      */
+     static Locator getTargetLocator(Page page, ElementLocator locator) {
+         LocatorScope scope = GetContextScope.getContextScope(page, locator.getContext());
+         if (locator.getCandidates().size() > 1) {
+             return LocatorHealer.resolve(scope, locator.getElement(), locator.getKey(), locator.getCandidates());
+         }
+         return GetLocatorForType.getLocatorForType(locator.getLocatorType(), scope, locator.getActualLocator());
+     }
+}
@@ -2,7 +2,18 @@ package com.fnb_ptaf;
 
 import com.microsoft.playwright.Locator;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
 public interface HandleAction {
+
+    /**
+     * The supported actions and how each one is performed; the dry-run validator checks step
+     * arguments against it.
+     */
+    Map<String, BiConsumer<Locator, String>> ACTIONS = actions();
     /**
      * Executes the specified action on the provided Locator.
      * Supported actions include clicking, filling input fields, selecting options, etc.
@@ -13,37 +24,24 @@ public interface HandleAction {
      * @throws IllegalArgumentException if the action is unknown.
      */
      static void ACTION(Locator locator, String action, String value) {
-        switch (action) {
-            case "click":
-                locator.first().click();
-                break;
-            case "fill":
-                locator.fill(value);
-                break;
-            case "select":
-                locator.selectOption(value);
-                break;
-            case "check":
-                locator.check();
-                break;
-            case "uncheck":
-                locator.uncheck();
-                break;
-            case "hover":
-                locator.hover();
-                break;
-            case "type":
-                locator.type(value);
-                break;
-            case "press":
-                locator.press(value);
-                break;
-            case "dblclick":
-                locator.dblclick();
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown action: " + action);
+        BiConsumer<Locator, String> handler = ACTIONS.get(action);
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown action: " + action);
         }
+        handler.accept(locator, value);
     }
 
+    private static Map<String, BiConsumer<Locator, String>> actions() {
+        Map<String, BiConsumer<Locator, String>> actions = new LinkedHashMap<>();
+        actions.put("click", (locator, value) -> locator.first().click());
+        actions.put("fill", Locator::fill);
+        actions.put("select", Locator::selectOption);
+        actions.put("check", (locator, value) -> locator.check());
+        actions.put("uncheck", (locator, value) -> locator.uncheck());
+        actions.put("hover", (locator, value) -> locator.hover());
+        actions.put("type", Locator::type);
+        actions.put("press", Locator::press);
+        actions.put("dblclick", (locator, value) -> locator.dblclick());
+        return Collections.unmodifiableMap(actions);
+    }
 }
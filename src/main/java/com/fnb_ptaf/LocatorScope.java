@@ -0,0 +1,136 @@
+package com.fnb_ptaf;
+
+import com.microsoft.playwright.FrameLocator;
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.AriaRole;
+
+/**
+ * A LocatorScope is the root that element locators are resolved against: the page itself, a
+ * (possibly nested) frame, or a shadow host. Playwright exposes the same locator factories on
+ * {@link Page}, {@link FrameLocator} and {@link Locator} without a common interface, so this
+ * class dispatches to whichever one backs the scope.
+ */
+public final class LocatorScope {
+    private final Page page;
+    private final FrameLocator frame;
+    private final Locator host;
+
+    private LocatorScope(Page page, FrameLocator frame, Locator host) {
+        this.page = page;
+        this.frame = frame;
+        this.host = host;
+    }
+
+    public static LocatorScope of(Page page) {
+        return new LocatorScope(page, null, null);
+    }
+
+    public static LocatorScope of(FrameLocator frame) {
+        return new LocatorScope(null, frame, null);
+    }
+
+    public static LocatorScope of(Locator host) {
+        return new LocatorScope(null, null, host);
+    }
+
+    /**
+     * Returns the scope of a frame found by the given selector inside this scope.
+     */
+    public LocatorScope frame(String selector) {
+        if (page != null) {
+            return of(page.frameLocator(selector));
+        } else if (frame != null) {
+            return of(frame.frameLocator(selector));
+        }
+        return of(host.frameLocator(selector));
+    }
+
+    /**
+     * Returns the scope of an element (e.g. a shadow host) found by the given selector inside this scope.
+     */
+    public LocatorScope element(String selector) {
+        return of(locator(selector));
+    }
+
+    public Locator locator(String selector) {
+        if (page != null) {
+            return page.locator(selector);
+        } else if (frame != null) {
+            return frame.locator(selector);
+        }
+        return host.locator(selector);
+    }
+
+    public Locator getByRole(AriaRole role) {
+        if (page != null) {
+            return page.getByRole(role);
+        } else if (frame != null) {
+            return frame.getByRole(role);
+        }
+        return host.getByRole(role);
+    }
+
+    public Locator getByRole(AriaRole role, String name, boolean exact) {
+        if (page != null) {
+            return page.getByRole(role, new Page.GetByRoleOptions().setName(name).setExact(exact));
+        } else if (frame != null) {
+            return frame.getByRole(role, new FrameLocator.GetByRoleOptions().setName(name).setExact(exact));
+        }
+        return host.getByRole(role, new Locator.GetByRoleOptions().setName(name).setExact(exact));
+    }
+
+    public Locator getByText(String text) {
+        if (page != null) {
+            return page.getByText(text);
+        } else if (frame != null) {
+            return frame.getByText(text);
+        }
+        return host.getByText(text);
+    }
+
+    public Locator getByAltText(String text) {
+        if (page != null) {
+            return page.getByAltText(text);
+        } else if (frame != null) {
+            return frame.getByAltText(text);
+        }
+        return host.getByAltText(text);
+    }
+
+    public Locator getByTitle(String text) {
+        if (page != null) {
+            return page.getByTitle(text);
+        } else if (frame != null) {
+            return frame.getByTitle(text);
+        }
+        return host.getByTitle(text);
+    }
+
+    public Locator getByPlaceholder(String text) {
+        if (page != null) {
+            return page.getByPlaceholder(text);
+        } else if (frame != null) {
+            return frame.getByPlaceholder(text);
+        }
+        return host.getByPlaceholder(text);
+    }
+
+    public Locator getByLabel(String text) {
+        if (page != null) {
+            return page.getByLabel(text);
+        } else if (frame != null) {
+            return frame.getByLabel(text);
+        }
+        return host.getByLabel(text);
+    }
+
+    public Locator getByTestId(String testId) {
+        if (page != null) {
+            return page.getByTestId(testId);
+        } else if (frame != null) {
+            return frame.getByTestId(testId);
+        }
+        return host.getByTestId(testId);
+    }
+}
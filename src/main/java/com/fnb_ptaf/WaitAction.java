@@ -1,7 +1,9 @@
 package com.fnb_ptaf;
 
 import com.fnb_ptaf.pages.CommonMethods;
+import com.fnb_ptaf.utils.NetworkSettle;
 import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
 import com.microsoft.playwright.options.WaitForSelectorState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,9 @@ import org.slf4j.LoggerFactory;
 public interface WaitAction {
     static final Logger logger = LoggerFactory.getLogger(CommonMethods.class);
 
+    // Timeout used when waiting for elements to become visible (2 minutes)
+    long TIMEOUT = 120000;
+
     /**
      * Waits until the specified element is visible on the page or within the frame.
      * This method is crucial to ensure that elements are interactable before actions are performed.
@@ -20,9 +25,24 @@ public interface WaitAction {
         try {
             locator.waitFor(new Locator.WaitForOptions()
                     .setState(WaitForSelectorState.VISIBLE)
-                    .setTimeout(120000)); // 2-minute timeout
+                    .setTimeout(TIMEOUT)); // 2-minute timeout
         } catch (Exception e) {
             logger.error("Failed to wait for the element to be displayed", e);
         }
     }
+
+    /**
+     * Waits until the page has no network requests in flight for the configured quiet period
+     * ({@code settle.quietMs}). Returns as soon as the page is idle, so it replaces fixed sleeps
+     * after navigation or XHR-driven refreshes.
+     *
+     * @param page The Page to wait for.
+     */
+    static void SETTLE(Page page) {
+        try {
+            NetworkSettle.waitForQuiet(page);
+        } catch (Exception e) {
+            logger.error("Failed to wait for the page to settle", e);
+        }
+    }
 }
@@ -0,0 +1,295 @@
+package com.fnb_ptaf.codegen;
+
+import com.fnb_ptaf.GetLocatorForType;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time generator of typed element accessors. Reads every {@code *.yml} file below the given
+ * element directories and generates {@code com.fnb_ptaf.elements.Elements}, with one nested class
+ * per element and one {@code ElementLocator} constant per key, e.g. {@code Elements.Login.SUBMIT}.
+ *
+ * <p>Runs in the {@code generate-sources} phase, before the main compilation, together with the
+ * locator definitions of {@code GetLocatorForType} it validates against. Unknown locator types,
+ * unknown ARIA roles and malformed entries fail the build with the YAML file and key, instead of surfacing as runtime
+ * exceptions from {@code YamlReader.get}; a removed or misspelt key is a compile error in the code
+ * that uses it. The source is rewritten only when its content changes, so incremental builds
+ * recompile exactly when the element catalogue changed.
+ *
+ * <p>Usage: {@code ElementCatalogGenerator <output source dir> <elements dir>...}
+ */
+public class ElementCatalogGenerator {
+    private static final String PACKAGE = "com.fnb_ptaf.elements";
+    private static final String CLASS_NAME = "Elements";
+
+    private final List<String> errors = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: ElementCatalogGenerator <output source dir> <elements dir>...");
+        }
+        ElementCatalogGenerator generator = new ElementCatalogGenerator();
+        // element -> key -> (source file, value)
+        Map<String, Map<String, Entry>> catalog = new TreeMap<>();
+        for (int i = 1; i < args.length; i++) {
+            for (String dir : args[i].split(",")) {
+                generator.readDirectory(Paths.get(dir.trim()), catalog);
+            }
+        }
+        String source = generator.write(catalog);
+        if (!generator.errors.isEmpty()) {
+            throw new IllegalStateException("Invalid element catalogue:\n  " + String.join("\n  ", generator.errors));
+        }
+
+        Path file = Paths.get(args[0]).resolve(PACKAGE.replace('.', '/')).resolve(CLASS_NAME + ".java");
+        byte[] content = source.getBytes(StandardCharsets.UTF_8);
+        if (Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), content)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    private void readDirectory(Path dir, Map<String, Map<String, Entry>> catalog) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".yml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            error(dir, "cannot list element files: " + e.getMessage());
+            return;
+        }
+        Yaml yaml = new Yaml();
+        for (Path file : files) {
+            Object document;
+            try (InputStream inputStream = Files.newInputStream(file)) {
+                document = yaml.load(inputStream);
+            } catch (Exception e) {
+                error(file, "invalid YAML: " + e.getMessage());
+                continue;
+            }
+            if (!(document instanceof Map) || !(((Map<?, ?>) document).get("elements") instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> elements = (Map<?, ?>) ((Map<?, ?>) document).get("elements");
+            for (Map.Entry<?, ?> element : elements.entrySet()) {
+                String elementName = String.valueOf(element.getKey());
+                if (!(element.getValue() instanceof Map)) {
+                    error(file, "elements." + elementName + " must be a map of keys to locators");
+                    continue;
+                }
+                Map<String, Entry> keys = catalog.computeIfAbsent(elementName, k -> new TreeMap<>());
+                for (Map.Entry<?, ?> key : ((Map<?, ?>) element.getValue()).entrySet()) {
+                    keys.put(String.valueOf(key.getKey()), new Entry(file, key.getValue()));
+                }
+            }
+        }
+    }
+
+    private String write(Map<String, Map<String, Entry>> catalog) {
+        StringBuilder source = new StringBuilder();
+        source.append("/**\n * Generated from elements/*.yml by ElementCatalogGenerator. Do not edit.\n */\n")
+                .append("public final class ").append(CLASS_NAME).append(" {\n")
+                .append("    private ").append(CLASS_NAME).append("() {\n    }\n");
+
+        Set<String> classNames = new HashSet<>();
+        for (Map.Entry<String, Map<String, Entry>> element : catalog.entrySet()) {
+            String elementName = element.getKey();
+            Map<String, Entry> keys = element.getValue();
+            String className = toClassName(elementName);
+            if (!classNames.add(className)) {
+                error(keys.values().iterator().next().file, "element '" + elementName + "' clashes with another element named " + className);
+                continue;
+            }
+            Entry contextEntry = keys.get("context");
+            String context = contextEntry != null ? String.valueOf(contextEntry.value) : null;
+
+            source.append("\n    public static final class ").append(className).append(" {\n")
+                    .append("        private ").append(className).append("() {\n        }\n");
+            Set<String> constants = new HashSet<>();
+            for (Map.Entry<String, Entry> key : keys.entrySet()) {
+                if ("context".equals(key.getKey())) {
+                    continue;
+                }
+                String location = "elements." + elementName + "." + key.getKey();
+                Entry entry = key.getValue();
+                List<String> candidates = toCandidates(entry, location);
+                if (candidates == null) {
+                    continue;
+                }
+                String constant = toConstantName(key.getKey());
+                if (!constants.add(constant)) {
+                    error(entry.file, location + " clashes with another key named " + constant);
+                    continue;
+                }
+                source.append("\n        /** ").append(escapeJavadoc(location)).append(" = ")
+                        .append(escapeJavadoc(String.join(", ", candidates))).append(" */\n")
+                        .append("        public static final ElementLocator ").append(constant)
+                        .append(" = new ElementLocator(").append(literal(elementName)).append(", ")
+                        .append(literal(key.getKey())).append(", ").append(context != null ? literal(context) : "null")
+                        .append(", Arrays.asList(")
+                        .append(candidates.stream().map(ElementCatalogGenerator::literal).collect(Collectors.joining(", ")))
+                        .append("), ").append(literal(locatorType(candidates.get(0)))).append(", ")
+                        .append(literal(actualLocator(candidates.get(0)))).append(");\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+
+        // The imports are only referenced by the constants, so an empty catalogue must not declare them
+        String imports = source.indexOf("Arrays.asList(") != -1
+                ? "import com.fnb_ptaf.ElementLocator;\n\nimport java.util.Arrays;\n\n"
+                : "";
+        return "package " + PACKAGE + ";\n\n" + imports + source;
+    }
+
+    /**
+     * Validates the locator values of a key and returns them in declaration order.
+     */
+    private List<String> toCandidates(Entry entry, String location) {
+        List<String> candidates = new ArrayList<>();
+        if (entry.value instanceof Collection) {
+            for (Object value : (Collection<?>) entry.value) {
+                candidates.add(String.valueOf(value));
+            }
+        } else if (entry.value instanceof String) {
+            candidates.add((String) entry.value);
+        } else {
+            error(entry.file, location + " must be a locator string or a list of locator strings");
+            return null;
+        }
+        if (candidates.isEmpty()) {
+            error(entry.file, location + " declares no locator");
+            return null;
+        }
+        boolean valid = true;
+        for (String candidate : candidates) {
+            String problem = GetLocatorForType.validate(candidate);
+            if (problem != null) {
+                error(entry.file, location + ": " + problem);
+                valid = false;
+            }
+        }
+        return valid ? candidates : null;
+    }
+
+    // Same split as GetLocatorType / GetActualLocator, done once here instead of on every lookup
+    private static String locatorType(String locatorValue) {
+        return locatorValue.substring(0, locatorValue.indexOf('_'));
+    }
+
+    private static String actualLocator(String locatorValue) {
+        return locatorValue.substring(locatorValue.indexOf('_') + 1);
+    }
+
+    private void error(Path file, String message) {
+        errors.add(file + ": " + message);
+    }
+
+    static String toClassName(String name) {
+        StringBuilder result = new StringBuilder();
+        boolean upper = true;
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                result.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            } else {
+                upper = true;
+            }
+        }
+        if (result.length() == 0 || !Character.isJavaIdentifierStart(result.charAt(0))) {
+            result.insert(0, '_');
+        }
+        return result.toString();
+    }
+
+    static String toConstantName(String name) {
+        StringBuilder result = new StringBuilder();
+        char previous = 0;
+        for (char c : name.toCharArray()) {
+            if (!Character.isLetterOrDigit(c)) {
+                if (result.length() > 0 && result.charAt(result.length() - 1) != '_') {
+                    result.append('_');
+                }
+            } else {
+                if (Character.isUpperCase(c) && Character.isLowerCase(previous)) {
+                    result.append('_');
+                }
+                result.append(Character.toUpperCase(c));
+            }
+            previous = c;
+        }
+        if (result.length() == 0 || !Character.isJavaIdentifierStart(result.charAt(0))) {
+            result.insert(0, '_');
+        }
+        return result.toString();
+    }
+
+    private static String literal(String value) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    private static String escapeJavadoc(String value) {
+        return value.replace("*/", "*&#47;").replace("\\u", "\\\\u");
+    }
+
+    /**
+     * A raw key entry and the file it was read from.
+     */
+    private static class Entry {
+        private final Path file;
+        private final Object value;
+
+        Entry(Path file, Object value) {
+            this.file = file;
+            this.value = value;
+        }
+    }
+}
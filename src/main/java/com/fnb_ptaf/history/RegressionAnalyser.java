@@ -0,0 +1,219 @@
+package com.fnb_ptaf.history;
+
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The RegressionAnalyser compares the durations of a run with a rolling baseline of earlier runs
+ * against the same environment and reports the scenarios and steps that became significantly slower.
+ * Durations are compared on a log scale, where their spread is roughly symmetric, so a step that
+ * usually takes 200 ms and one that takes 20 s are judged by the same relative measure.
+ *
+ * <p>For every scenario and step of the run, the baseline is made of its passed durations in the last
+ * {@code history.baselineRuns} runs that include it. A single duration is scored against the spread
+ * of the baseline; several durations (a step used more than once) with Welch's t statistic. A slowdown
+ * is reported when the score reaches {@code history.zThreshold} and the run is also slower by at least
+ * {@code history.minRatio} and {@code history.minDeltaMs}, so stable sub-millisecond steps do not
+ * raise alarms over noise. Regressions are ordered by the time they added to the run.
+ *
+ * <p>Run it with {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.history.RegressionAnalyser} to
+ * analyse the latest recorded run again. Configuration keys:
+ * <ul>
+ *     <li>{@code history.baselineRuns} - earlier runs in the baseline (default 20)</li>
+ *     <li>{@code history.minSamples} - baseline durations needed before judging (default 5)</li>
+ *     <li>{@code history.zThreshold} - score that counts as significant (default 3.0)</li>
+ *     <li>{@code history.minRatio} / {@code history.minDeltaMs} - smallest slowdown reported (default 1.2 and 50)</li>
+ *     <li>{@code history.top} - regressions logged at the end of the run (default 10)</li>
+ *     <li>{@code history.reportFile} - all regressions (default {@code target/regression-report.txt})</li>
+ * </ul>
+ */
+public class RegressionAnalyser {
+    private static final Logger logger = LoggerFactory.getLogger(RegressionAnalyser.class);
+
+    private static final int baselineRuns = ConfigurationProperties.getInt("history.baselineRuns", 20);
+    private static final int minSamples = Math.max(2, ConfigurationProperties.getInt("history.minSamples", 5));
+    private static final double zThreshold = ConfigurationProperties.getDouble("history.zThreshold", 3.0);
+    private static final double minRatio = ConfigurationProperties.getDouble("history.minRatio", 1.2);
+    private static final long minDeltaMs = ConfigurationProperties.getLong("history.minDeltaMs", 50);
+    private static final int top = ConfigurationProperties.getInt("history.top", 10);
+
+    // Lower bound on the spread of a baseline (5% on the log scale), so a perfectly stable step
+    // does not turn a few milliseconds of jitter into a huge score
+    private static final double MIN_VARIANCE = Math.pow(Math.log(1.05), 2);
+
+    public static void main(String[] args) throws IOException {
+        List<RunHistoryStore.Run> runs = RunHistoryStore.read(RunHistoryPlugin.historyFile());
+        if (runs.isEmpty()) {
+            logger.info("No runs recorded in {}", RunHistoryPlugin.historyFile().toAbsolutePath());
+            return;
+        }
+        RunHistoryStore.Run latest = runs.get(runs.size() - 1);
+        report(analyse(runs.subList(0, runs.size() - 1), latest), latest);
+    }
+
+    /**
+     * Finds the scenarios and steps of a run that are significantly slower than in earlier runs.
+     *
+     * @param history The earlier runs, oldest first
+     * @param run     The run to analyse
+     * @return The regressions, largest added time first
+     */
+    static List<Regression> analyse(List<RunHistoryStore.Run> history, RunHistoryStore.Run run) {
+        Map<String, List<Double>> current = passedLogDurations(run);
+        Map<String, Boolean> isStep = new HashMap<>();
+        run.samples.forEach(sample -> isStep.put(sample.key, sample.step));
+
+        List<Regression> regressions = new ArrayList<>();
+        for (Map.Entry<String, List<Double>> entry : current.entrySet()) {
+            List<Double> baseline = baseline(history, run.environment, entry.getKey());
+            if (baseline.size() < minSamples) {
+                continue;
+            }
+            List<Double> values = entry.getValue();
+            double baselineMean = mean(baseline);
+            double baselineVariance = Math.max(MIN_VARIANCE, variance(baseline, baselineMean));
+            double currentMean = mean(values);
+            double score;
+            if (values.size() == 1) {
+                // How far the duration lies outside the spread expected of a new baseline duration
+                score = (currentMean - baselineMean) / Math.sqrt(baselineVariance * (1 + 1.0 / baseline.size()));
+            } else {
+                double currentVariance = Math.max(MIN_VARIANCE, variance(values, currentMean));
+                score = (currentMean - baselineMean)
+                        / Math.sqrt(baselineVariance / baseline.size() + currentVariance / values.size());
+            }
+            double baselineMs = Math.exp(baselineMean);
+            double currentMs = Math.exp(currentMean);
+            if (score >= zThreshold && currentMs / baselineMs >= minRatio && currentMs - baselineMs >= minDeltaMs) {
+                regressions.add(new Regression(entry.getKey(), isStep.get(entry.getKey()), baselineMs, currentMs,
+                        score, baseline.size(), (currentMs - baselineMs) * values.size()));
+            }
+        }
+        regressions.sort(Comparator.comparingDouble((Regression regression) -> regression.addedMs).reversed());
+        return regressions;
+    }
+
+    /**
+     * Logs the top regressions and writes all of them to the report file.
+     */
+    static void report(List<Regression> regressions, RunHistoryStore.Run run) {
+        Path file = Paths.get(ConfigurationProperties.getString("history.reportFile", "target/regression-report.txt"));
+        List<String> lines = new ArrayList<>();
+        lines.add("Run of commit " + run.commit + " against " + run.environment + ": "
+                + regressions.size() + " significant slowdown(s)");
+        regressions.forEach(regression -> lines.add(regression.toString()));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Failed to write regression report to '{}'", file, e);
+        }
+        if (regressions.isEmpty()) {
+            logger.info("No significant slowdowns against the run history");
+            return;
+        }
+        logger.warn("{} significant slowdown(s) against the run history, top {}:", regressions.size(),
+                Math.min(top, regressions.size()));
+        regressions.stream().limit(top).forEach(regression -> logger.warn("  {}", regression));
+        logger.warn("Full list in {}", file.toAbsolutePath());
+    }
+
+    private static Map<String, List<Double>> passedLogDurations(RunHistoryStore.Run run) {
+        Map<String, List<Double>> durations = new LinkedHashMap<>();
+        for (RunHistoryStore.Sample sample : run.samples) {
+            if (sample.passed) {
+                durations.computeIfAbsent(sample.key, key -> new ArrayList<>()).add(Math.log(Math.max(1, sample.millis)));
+            }
+        }
+        return durations;
+    }
+
+    /**
+     * Collects the passed durations of a key from the most recent runs against the environment.
+     */
+    private static List<Double> baseline(List<RunHistoryStore.Run> history, String environment, String key) {
+        List<Double> durations = new ArrayList<>();
+        int runs = 0;
+        for (int i = history.size() - 1; i >= 0 && runs < baselineRuns; i--) {
+            RunHistoryStore.Run run = history.get(i);
+            if (!run.environment.equals(environment)) {
+                continue;
+            }
+            boolean found = false;
+            for (RunHistoryStore.Sample sample : run.samples) {
+                if (sample.passed && sample.key.equals(key)) {
+                    durations.add(Math.log(Math.max(1, sample.millis)));
+                    found = true;
+                }
+            }
+            if (found) {
+                runs++;
+            }
+        }
+        return durations;
+    }
+
+    private static double mean(List<Double> values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.size();
+    }
+
+    private static double variance(List<Double> values, double mean) {
+        if (values.size() < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (double value : values) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (values.size() - 1);
+    }
+
+    /**
+     * A scenario or step that became slower.
+     */
+    static final class Regression {
+        final String key;
+        final boolean step;
+        final double baselineMs;
+        final double currentMs;
+        final double score;
+        final int baselineSamples;
+        final double addedMs;
+
+        Regression(String key, boolean step, double baselineMs, double currentMs, double score, int baselineSamples, double addedMs) {
+            this.key = key;
+            this.step = step;
+            this.baselineMs = baselineMs;
+            this.currentMs = currentMs;
+            this.score = score;
+            this.baselineSamples = baselineSamples;
+            this.addedMs = addedMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%.1fx %s %s: %.0f ms, baseline %.0f ms over %d samples (+%.0f ms, score %.1f)",
+                    currentMs / baselineMs, step ? "step" : "scenario", key, currentMs, baselineMs, baselineSamples, addedMs, score);
+        }
+    }
+}
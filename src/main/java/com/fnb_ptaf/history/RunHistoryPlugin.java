@@ -0,0 +1,154 @@
+package com.fnb_ptaf.history;
+
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.RunMetrics;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RunHistoryPlugin records the duration of every scenario and step in the run history, tagged
+ * with the commit and environment of the run, and reports significant slowdowns against earlier runs
+ * when the run finishes (see {@link RegressionAnalyser}). Register it with
+ * {@code @CucumberOptions(plugin = "com.fnb_ptaf.history.RunHistoryPlugin")}. Only passed and failed
+ * scenarios and steps are recorded, so a dry run leaves the history untouched. Configuration keys:
+ * <ul>
+ *     <li>{@code history.file} - history file (default {@code .ptaf/run-history.bin})</li>
+ *     <li>{@code history.maxRuns} - runs kept in the file (default 200)</li>
+ *     <li>{@code history.commit} - commit tag (default {@code GIT_COMMIT}, then {@code git rev-parse HEAD})</li>
+ *     <li>{@code history.environment} - environment tag (default the host of {@code baseUrl}); runs
+ *     are only compared with runs against the same environment</li>
+ * </ul>
+ */
+public class RunHistoryPlugin implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(RunHistoryPlugin.class);
+
+    private static final URI workingDirectory = Paths.get("").toAbsolutePath().toUri();
+
+    private final Queue<RunHistoryStore.Sample> samples = new ConcurrentLinkedQueue<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> onTestRunFinished());
+    }
+
+    static Path historyFile() {
+        return Paths.get(ConfigurationProperties.getString("history.file", ".ptaf/run-history.bin"));
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        if (!(event.getTestStep() instanceof PickleStepTestStep) || !isRecorded(event.getResult().getStatus())) {
+            return;
+        }
+        PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+        String key = scenarioKey(event.getTestCase()) + " > " + step.getStep().getKeyword() + step.getStep().getText();
+        samples.add(new RunHistoryStore.Sample(key, true, event.getResult().getStatus() == Status.PASSED,
+                event.getResult().getDuration().toMillis()));
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        if (!isRecorded(event.getResult().getStatus())) {
+            return;
+        }
+        samples.add(new RunHistoryStore.Sample(scenarioKey(event.getTestCase()), false,
+                event.getResult().getStatus() == Status.PASSED, event.getResult().getDuration().toMillis()));
+    }
+
+    private void onTestRunFinished() {
+        if (samples.isEmpty()) {
+            return;
+        }
+        RunHistoryStore.Run run = new RunHistoryStore.Run(startedAt, commit(), environment(), new ArrayList<>(samples));
+        Path file = historyFile();
+        try {
+            List<RunHistoryStore.Run> history = RunHistoryStore.read(file);
+            RunHistoryStore.append(file, run, Math.max(1, ConfigurationProperties.getInt("history.maxRuns", 200)));
+            List<RegressionAnalyser.Regression> regressions = RegressionAnalyser.analyse(history, run);
+            RunMetrics.increment("history.regressions", regressions.size());
+            RegressionAnalyser.report(regressions, run);
+        } catch (IOException e) {
+            logger.error("Failed to update run history '{}'", file, e);
+        }
+    }
+
+    private static boolean isRecorded(Status status) {
+        return status == Status.PASSED || status == Status.FAILED;
+    }
+
+    /**
+     * Identifies a scenario by its feature file, relative to the working directory so keys stay the
+     * same on every machine, and its name; line numbers are left out as they change with every edit.
+     * The rows of a Scenario Outline share its name, so they are told apart by the line of their
+     * Examples row, and their history restarts when the rows move.
+     */
+    private static String scenarioKey(TestCase testCase) {
+        String key = workingDirectory.relativize(testCase.getUri()) + " > " + testCase.getName();
+        return isPlainScenario(testCase.getKeyword()) ? key : key + " @ line " + testCase.getLocation().getLine();
+    }
+
+    /**
+     * @return False for outline rows, and for scenarios written with non-English keywords, which are
+     * then keyed by line as well
+     */
+    private static boolean isPlainScenario(String keyword) {
+        return "Scenario".equals(keyword) || "Example".equals(keyword);
+    }
+
+    private static String commit() {
+        String configured = ConfigurationProperties.getString("history.commit", System.getenv("GIT_COMMIT"));
+        if (configured != null) {
+            return configured;
+        }
+        try {
+            Process git = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").redirectErrorStream(true).start();
+            String output;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+                output = reader.readLine();
+            }
+            if (git.waitFor(5, TimeUnit.SECONDS) && git.exitValue() == 0 && output != null) {
+                return output.trim();
+            }
+        } catch (IOException e) {
+            logger.debug("Could not read the commit from git", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "unknown";
+    }
+
+    private static String environment() {
+        String configured = ConfigurationProperties.getString("history.environment", null);
+        if (configured != null) {
+            return configured;
+        }
+        try {
+            String host = URI.create(ConfigurationProperties.getBaseUrl("baseUrl")).getHost();
+            return host != null ? host : "default";
+        } catch (RuntimeException e) {
+            return "default";
+        }
+    }
+}
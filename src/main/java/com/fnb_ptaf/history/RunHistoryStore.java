@@ -0,0 +1,263 @@
+package com.fnb_ptaf.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The RunHistoryStore keeps the durations of past runs in a compact, append-only binary file. Every
+ * run is one self-contained block:
+ * <pre>
+ * int magic, int payload length, payload, long CRC-32 of the payload
+ * payload: long start time, UTF commit, UTF environment,
+ *          varint key count, UTF keys, varint sample count,
+ *          samples of (varint key index, byte flags, varint milliseconds)
+ * </pre>
+ * Keys (scenario and step names) are stored once per run and samples refer to them by index, so a
+ * step used many times costs a few bytes per use. Blocks are appended under a file lock, so
+ * concurrent runs may share the file, and a block cut short by a crash fails its checksum and is
+ * ignored with everything after it.
+ */
+final class RunHistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(RunHistoryStore.class);
+
+    private static final int MAGIC = 0x50524831; // "PRH1"
+    private static final int FLAG_STEP = 1;
+    private static final int FLAG_PASSED = 2;
+
+    private RunHistoryStore() {
+    }
+
+    /**
+     * Reads all complete runs from the file, oldest first.
+     *
+     * @param file The history file
+     * @return The runs, or an empty list if the file does not exist
+     */
+    static List<Run> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+            try {
+                return readBlocks(channel);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Appends a run to the file and drops the oldest runs once there are more than half as many
+     * again as the given maximum, so the file is rewritten only occasionally.
+     *
+     * @param file    The history file
+     * @param run     The run to append
+     * @param maxRuns The number of runs to keep
+     */
+    static void append(Path file, Run run, int maxRuns) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        byte[] block = encode(run);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                List<Run> runs = readBlocks(channel);
+                if (runs.size() + 1 > maxRuns + maxRuns / 2) {
+                    // Rewrite in place rather than replacing the file, so runs waiting for the lock keep
+                    // appending to the same file
+                    List<Run> kept = new ArrayList<>(runs.subList(runs.size() + 1 - maxRuns, runs.size()));
+                    channel.truncate(0);
+                    channel.position(0);
+                    for (Run keptRun : kept) {
+                        write(channel, encode(keptRun));
+                    }
+                    logger.info("Run history trimmed to the last {} runs", maxRuns);
+                } else {
+                    // Drop a damaged tail so the new block is readable
+                    channel.truncate(channel.position());
+                }
+                write(channel, block);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads blocks from the start of the channel, leaving its position after the last complete block.
+     */
+    private static List<Run> readBlocks(FileChannel channel) throws IOException {
+        List<Run> runs = new ArrayList<>();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        long validEnd = 0;
+        try {
+            while (true) {
+                if (in.readInt() != MAGIC) {
+                    logger.warn("Run history is damaged after {} runs, ignoring the rest", runs.size());
+                    break;
+                }
+                int length = in.readInt();
+                if (length < 0 || length > 64 * 1024 * 1024) {
+                    logger.warn("Run history is damaged after {} runs, ignoring the rest", runs.size());
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (in.readLong() != crc.getValue()) {
+                    logger.warn("Run history block {} fails its checksum, ignoring it and the rest", runs.size() + 1);
+                    break;
+                }
+                runs.add(decode(payload));
+                validEnd += 4 + 4 + length + 8;
+            }
+        } catch (EOFException e) {
+            // End of the file, or a block cut short
+        }
+        channel.position(validEnd);
+        return runs;
+    }
+
+    private static byte[] encode(Run run) throws IOException {
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        for (Sample sample : run.samples) {
+            keys.putIfAbsent(sample.key, keys.size());
+        }
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeLong(run.startedAt);
+        payload.writeUTF(run.commit);
+        payload.writeUTF(run.environment);
+        writeVarint(payload, keys.size());
+        for (String key : keys.keySet()) {
+            payload.writeUTF(key);
+        }
+        writeVarint(payload, run.samples.size());
+        for (Sample sample : run.samples) {
+            writeVarint(payload, keys.get(sample.key));
+            payload.writeByte((sample.step ? FLAG_STEP : 0) | (sample.passed ? FLAG_PASSED : 0));
+            writeVarint(payload, (int) Math.min(Integer.MAX_VALUE, Math.max(0, sample.millis)));
+        }
+        payload.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes.toByteArray());
+        ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(payloadBytes.size() + 16);
+        DataOutputStream block = new DataOutputStream(blockBytes);
+        block.writeInt(MAGIC);
+        block.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(block);
+        block.writeLong(crc.getValue());
+        block.flush();
+        return blockBytes.toByteArray();
+    }
+
+    private static Run decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long startedAt = in.readLong();
+        String commit = in.readUTF();
+        String environment = in.readUTF();
+        String[] keys = new String[readVarint(in)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readUTF();
+        }
+        int count = readVarint(in);
+        List<Sample> samples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String key = keys[readVarint(in)];
+            int flags = in.readByte();
+            samples.add(new Sample(key, (flags & FLAG_STEP) != 0, (flags & FLAG_PASSED) != 0, readVarint(in)));
+        }
+        return new Run(startedAt, commit, environment, samples);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in run history");
+    }
+
+    /**
+     * One run: when it started, what it ran against and how long each scenario and step took.
+     */
+    static final class Run {
+        final long startedAt;
+        final String commit;
+        final String environment;
+        final List<Sample> samples;
+
+        Run(long startedAt, String commit, String environment, List<Sample> samples) {
+            this.startedAt = startedAt;
+            this.commit = commit;
+            this.environment = environment;
+            this.samples = samples;
+        }
+    }
+
+    /**
+     * The duration of one scenario or step in a run.
+     */
+    static final class Sample {
+        final String key;
+        final boolean step;
+        final boolean passed;
+        final long millis;
+
+        Sample(String key, boolean step, boolean passed, long millis) {
+            this.key = key;
+            this.step = step;
+            this.passed = passed;
+            this.millis = millis;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.fnb_ptaf.hooks;
+
+import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.BrowserMatrix;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.RunMetrics;
+import com.fnb_ptaf.utils.YamlReader;
+import com.microsoft.playwright.Page;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestSourceRead;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The BackgroundCheckpointPlugin lets scenarios of a feature skip replaying the feature's
+ * {@code Background} through the UI. When the background of the first scenario of a feature has
+ * passed, the storage state (cookies, local storage) and URL of its page are captured. Later
+ * scenarios of the same feature start from a context restored from that checkpoint, and the
+ * actions of their background steps are skipped ({@link #isReplayingBackground()}).
+ *
+ * <p>Register it on the runner with
+ * {@code @CucumberOptions(plugin = "com.fnb_ptaf.hooks.BackgroundCheckpointPlugin")}. A checkpoint
+ * is keyed by the browser type and a fingerprint of the background steps and of the element
+ * configuration, so editing either invalidates it and matrix runs keep one checkpoint per browser.
+ * It is also dropped after {@code checkpoint.ttlSeconds} (default 900) and whenever a scenario
+ * restored from it fails, so the next scenario replays and captures it again.
+ *
+ * <p>Cucumber gives plugins and hooks no way to skip a step while letting the rest of the scenario
+ * run, so the background steps of a restored scenario still execute: only the actions that go
+ * through {@code CommonMethods} are skipped. Step definitions that drive the page directly must
+ * check {@link #isReplayingBackground()} themselves, and assertions in a background run against the
+ * restored page.
+ */
+public class BackgroundCheckpointPlugin implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundCheckpointPlugin.class);
+
+    private static final long ttlMillis = ConfigurationProperties.getLong("checkpoint.ttlSeconds", 900) * 1000;
+
+    // Background line ranges and text of each feature
+    private static final Map<URI, FeatureBackground> backgrounds = new ConcurrentHashMap<>();
+    // Captured checkpoints by background fingerprint
+    private static final Map<String, Checkpoint> checkpoints = new ConcurrentHashMap<>();
+    // Fingerprints whose capture is in progress on some worker
+    private static final Map<String, Boolean> capturing = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<ScenarioState> current = new ThreadLocal<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestSourceRead.class, this::onSourceRead);
+        publisher.registerHandlerFor(TestCaseStarted.class, this::onTestCaseStarted);
+        publisher.registerHandlerFor(TestStepStarted.class, this::onTestStepStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+    }
+
+    /**
+     * Returns the checkpoint the scenario on the current thread should start from, if any.
+     * Called by {@code Hooks.setUp} before the scenario's context is created.
+     *
+     * @return The checkpoint, or null to start from a blank page
+     */
+    public static Checkpoint restorableCheckpoint() {
+        ScenarioState state = current.get();
+        if (state == null || state.mode != Mode.RESTORE) {
+            return null;
+        }
+        return state.checkpoint;
+    }
+
+    /**
+     * Returns true while a background step of a scenario restored from a checkpoint is running.
+     * Step code should skip its UI actions in that case; {@code CommonMethods} does so automatically.
+     *
+     * @return True if the current step is a replayed background step
+     */
+    public static boolean isReplayingBackground() {
+        ScenarioState state = current.get();
+        return state != null && state.inBackgroundStep && state.mode == Mode.RESTORE;
+    }
+
+    private void onSourceRead(TestSourceRead event) {
+        backgrounds.put(event.getUri(), FeatureBackground.parse(event.getSource()));
+    }
+
+    private void onTestCaseStarted(TestCaseStarted event) {
+        TestCase testCase = event.getTestCase();
+        FeatureBackground background = backgrounds.get(testCase.getUri());
+        current.remove();
+        if (background == null || background.ranges.isEmpty()) {
+            return;
+        }
+
+        List<String> backgroundSteps = new ArrayList<>();
+        TestStep lastBackgroundStep = null;
+        for (TestStep step : testCase.getTestSteps()) {
+            if (step instanceof PickleStepTestStep && background.contains(((PickleStepTestStep) step).getStep().getLine())) {
+                backgroundSteps.add(((PickleStepTestStep) step).getStep().getLine() + ":" + ((PickleStepTestStep) step).getStep().getText());
+                lastBackgroundStep = step;
+            }
+        }
+        if (lastBackgroundStep == null) {
+            return;
+        }
+
+        ScenarioState state = new ScenarioState();
+        state.fingerprint = fingerprint(BrowserMatrix.current(), testCase.getUri(), background.text, backgroundSteps);
+        state.lastBackgroundStep = lastBackgroundStep;
+        Checkpoint checkpoint = checkpoints.get(state.fingerprint);
+        if (checkpoint != null && System.currentTimeMillis() - checkpoint.capturedAt < ttlMillis) {
+            state.mode = Mode.RESTORE;
+            state.checkpoint = checkpoint;
+            RunMetrics.increment("checkpoint.restored", 1);
+        } else if (capturing.putIfAbsent(state.fingerprint, Boolean.TRUE) == null) {
+            checkpoints.remove(state.fingerprint);
+            state.mode = Mode.CAPTURE;
+        } else {
+            state.mode = Mode.REPLAY;
+        }
+        current.set(state);
+    }
+
+    private void onTestStepStarted(TestStepStarted event) {
+        ScenarioState state = current.get();
+        if (state != null && event.getTestStep() instanceof PickleStepTestStep) {
+            FeatureBackground background = backgrounds.get(event.getTestCase().getUri());
+            state.inBackgroundStep = background.contains(((PickleStepTestStep) event.getTestStep()).getStep().getLine());
+        }
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        ScenarioState state = current.get();
+        if (state == null || !(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        state.inBackgroundStep = false;
+        if (state.mode != Mode.CAPTURE) {
+            return;
+        }
+        if (event.getResult().getStatus() != Status.PASSED) {
+            // The background did not pass; let another scenario capture it
+            capturing.remove(state.fingerprint);
+            state.mode = Mode.REPLAY;
+            return;
+        }
+        if (event.getTestStep().getId().equals(state.lastBackgroundStep.getId())) {
+            capture(state);
+        }
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        ScenarioState state = current.get();
+        current.remove();
+        if (state == null) {
+            return;
+        }
+        if (state.mode == Mode.CAPTURE) {
+            capturing.remove(state.fingerprint);
+        }
+        if (state.mode == Mode.RESTORE && event.getResult().getStatus() == Status.FAILED) {
+            // The checkpoint may be stale (e.g. an expired session); replay the background next time
+            checkpoints.remove(state.fingerprint, state.checkpoint);
+            logger.warn("Scenario '{}' restored from a background checkpoint failed, checkpoint invalidated", event.getTestCase().getName());
+        }
+    }
+
+    private void capture(ScenarioState state) {
+        Page page = Hooks.getPage();
+        try {
+            if (page != null) {
+                checkpoints.put(state.fingerprint, new Checkpoint(page.context().storageState(), page.url()));
+                logger.info("Captured background checkpoint at {}", page.url());
+                RunMetrics.increment("checkpoint.captured", 1);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to capture background checkpoint", e);
+        } finally {
+            capturing.remove(state.fingerprint);
+            state.mode = Mode.REPLAY;
+        }
+    }
+
+    private static String fingerprint(BrowserFactory.BrowserTypeEnum browserType, URI uri, String backgroundText, List<String> backgroundSteps) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            // Storage state does not carry over between browser engines
+            digest.update(browserType.name().getBytes(StandardCharsets.UTF_8));
+            digest.update(uri.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(backgroundText.getBytes(StandardCharsets.UTF_8));
+            digest.update(String.join("\n", backgroundSteps).getBytes(StandardCharsets.UTF_8));
+            // The background's data comes from the element configuration as well
+            digest.update(String.valueOf(YamlReader.getOrDefault("elements", "")).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Storage state and URL of a page right after its feature's background passed.
+     */
+    public static final class Checkpoint {
+        private final String storageState;
+        private final String url;
+        private final long capturedAt = System.currentTimeMillis();
+
+        Checkpoint(String storageState, String url) {
+            this.storageState = storageState;
+            this.url = url;
+        }
+
+        public String getStorageState() {
+            return storageState;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    private enum Mode {
+        // Start from the checkpoint and skip the background's actions
+        RESTORE,
+        // Run the background and capture a checkpoint after it
+        CAPTURE,
+        // Run the background normally
+        REPLAY
+    }
+
+    /**
+     * Checkpoint state of the scenario running on the current thread.
+     */
+    private static class ScenarioState {
+        private String fingerprint;
+        private TestStep lastBackgroundStep;
+        private Mode mode;
+        private Checkpoint checkpoint;
+        private boolean inBackgroundStep;
+    }
+
+    /**
+     * Line ranges of the Background blocks (feature and rule level) of a feature file.
+     */
+    private static class FeatureBackground {
+        private final List<int[]> ranges = new ArrayList<>();
+        private String text = "";
+
+        static FeatureBackground parse(String source) {
+            FeatureBackground background = new FeatureBackground();
+            StringBuilder text = new StringBuilder();
+            String[] lines = source.split("\r?\n", -1);
+            int start = -1;
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i].trim();
+                int lineNumber = i + 1;
+                if (line.startsWith("Background:")) {
+                    start = lineNumber;
+                } else if (start != -1 && (line.startsWith("Scenario") || line.startsWith("Example:")
+                        || line.startsWith("Examples:") || line.startsWith("Rule:") || line.startsWith("@"))) {
+                    background.ranges.add(new int[]{start, lineNumber - 1});
+                    start = -1;
+                }
+                if (start != -1) {
+                    text.append(line).append('\n');
+                }
+            }
+            if (start != -1) {
+                background.ranges.add(new int[]{start, lines.length});
+            }
+            background.text = text.toString();
+            return background;
+        }
+
+        boolean contains(int line) {
+            for (int[] range : ranges) {
+                if (line >= range[0] && line <= range[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.fnb_ptaf.hooks;
+
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.RunMetrics;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.SkipException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The EnvironmentCircuitBreaker stops a run from grinding through every remaining scenario once the
+ * environment under test is down. Failed scenarios are classified from their errors: connection
+ * errors (refused, reset, unresolvable host), navigation timeouts on the base URL, and the same
+ * navigation of another page of the base URL's origin timing out in consecutive scenarios count as
+ * environment failures. Other timeouts, such as waiting for an element, are left to the application. After
+ * {@code circuit.failureThreshold} consecutive environment failures the circuit opens and
+ * {@code Hooks.setUp} skips (or fails) the following scenarios immediately, without a browser.
+ *
+ * <p>While open, the base URL is probed over HTTP every {@code circuit.probeIntervalMs}; once it
+ * answers, the next scenario runs as a trial (half-open) and closes the circuit if it does not fail
+ * on the environment again. Register it with
+ * {@code @CucumberOptions(plugin = "com.fnb_ptaf.hooks.EnvironmentCircuitBreaker")}. Configuration keys:
+ * <ul>
+ *     <li>{@code circuit.enabled} - turns the breaker on (default false)</li>
+ *     <li>{@code circuit.baseUrlKey} - key of the base URL (default {@code baseUrl})</li>
+ *     <li>{@code circuit.failureThreshold} - consecutive environment failures that open the circuit (default 3)</li>
+ *     <li>{@code circuit.probeIntervalMs} / {@code circuit.probeTimeoutMs} - probing while open
+ *     (default 30000 and 5000)</li>
+ *     <li>{@code circuit.mode} - {@code skip} (default) or {@code fail} the scenarios while open</li>
+ *     <li>{@code circuit.reportFile} - skipped scenarios and reasons (default
+ *     {@code target/circuit-breaker-report.txt})</li>
+ * </ul>
+ */
+public class EnvironmentCircuitBreaker implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(EnvironmentCircuitBreaker.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("circuit.enabled", false);
+    private static final int failureThreshold = Math.max(1, ConfigurationProperties.getInt("circuit.failureThreshold", 3));
+    private static final long probeIntervalMs = ConfigurationProperties.getLong("circuit.probeIntervalMs", 30000);
+    private static final long probeTimeoutMs = ConfigurationProperties.getLong("circuit.probeTimeoutMs", 5000);
+    private static final boolean failWhenOpen = "fail".equalsIgnoreCase(ConfigurationProperties.getString("circuit.mode", "skip"));
+    private static final String baseUrl = baseUrl();
+
+    // Browser error texts meaning the server could not be reached at all
+    private static final List<String> CONNECTION_ERRORS = Arrays.asList(
+            "ERR_CONNECTION_REFUSED", "ERR_CONNECTION_RESET", "ERR_CONNECTION_CLOSED", "ERR_CONNECTION_TIMED_OUT",
+            "ERR_NAME_NOT_RESOLVED", "ERR_ADDRESS_UNREACHABLE", "ERR_INTERNET_DISCONNECTED", "ERR_EMPTY_RESPONSE",
+            "NS_ERROR_CONNECTION_REFUSED", "NS_ERROR_NET_RESET", "NS_ERROR_UNKNOWN_HOST",
+            "Could not connect to server", "Connection refused");
+
+    // The URL of a navigation in Playwright's call log, and the origin of a URL
+    private static final Pattern NAVIGATION = Pattern.compile("navigating to \"([^\"]+)\"");
+    private static final Pattern ORIGIN = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/?#]+");
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final Object lock = new Object();
+    private static final List<String> skipped = new ArrayList<>();
+    private static State state = State.CLOSED;
+    private static int consecutiveFailures;
+    private static String lastTimeoutSignature;
+    private static String openReason;
+    private static long lastProbeAt;
+    private static boolean trialRunning;
+    private static String trialScenario;
+
+    static {
+        if (enabled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(EnvironmentCircuitBreaker::writeReport, "ptaf-circuit-report"));
+        }
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+    }
+
+    /**
+     * Called before a scenario acquires any resources. Skips (or fails) the scenario while the
+     * circuit is open.
+     *
+     * @param scenarioId   The feature file and line of the scenario about to start
+     * @param scenarioName The name of the scenario about to start
+     * @throws SkipException while the circuit is open in {@code skip} mode
+     * @throws CircuitOpenException while the circuit is open in {@code fail} mode
+     */
+    public static void beforeScenario(String scenarioId, String scenarioName) {
+        if (!enabled) {
+            return;
+        }
+        boolean probeDue;
+        synchronized (lock) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            probeDue = state == State.OPEN && System.currentTimeMillis() - lastProbeAt >= probeIntervalMs;
+            if (probeDue) {
+                lastProbeAt = System.currentTimeMillis();
+            }
+        }
+        // Probed outside the lock, so other scenarios are skipped meanwhile instead of queueing behind it
+        boolean answered = probeDue && probe();
+        String reason;
+        synchronized (lock) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            if (answered && state == State.OPEN) {
+                logger.info("Environment answered the probe, running '{}' as a trial", scenarioName);
+                state = State.HALF_OPEN;
+                trialRunning = false;
+            }
+            if (state == State.HALF_OPEN && !trialRunning) {
+                trialRunning = true;
+                trialScenario = scenarioId;
+                return;
+            }
+            reason = openReason;
+            skipped.add(scenarioName + " - " + reason);
+        }
+        RunMetrics.increment("circuit.skipped", 1);
+        String message = "Environment circuit open (" + reason + "), scenario '" + scenarioName + "' not run";
+        logger.warn(message);
+        if (failWhenOpen) {
+            throw new CircuitOpenException(message);
+        }
+        throw new SkipException(message);
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        if (!enabled) {
+            return;
+        }
+        Status status = event.getResult().getStatus();
+        if (isCircuitOpen(event.getResult().getError())) {
+            // Failed by this breaker without running, says nothing about the environment
+            return;
+        }
+        String reason = status == Status.FAILED ? classify(event.getResult().getError()) : null;
+        String scenarioId = event.getTestCase().getUri() + ":" + event.getTestCase().getLocation().getLine();
+        synchronized (lock) {
+            if (state == State.HALF_OPEN && trialRunning && status != Status.FAILED && scenarioId.equals(trialScenario)) {
+                // A trial that was skipped or pending proved nothing, the next scenario is the trial
+                trialRunning = false;
+            }
+            if (reason == null) {
+                // A pass, or a failure of the application rather than the environment, shows the
+                // environment is reachable; failures of scenarios still running when the circuit
+                // opened do not close it again
+                if (status == Status.PASSED || status == Status.FAILED && state != State.OPEN) {
+                    if (state != State.CLOSED) {
+                        logger.info("Environment recovered, circuit closed");
+                    }
+                    state = State.CLOSED;
+                    consecutiveFailures = 0;
+                    if (status == Status.PASSED) {
+                        lastTimeoutSignature = null;
+                    }
+                }
+                return;
+            }
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    RunMetrics.increment("circuit.opened", 1);
+                }
+                state = State.OPEN;
+                openReason = reason;
+                lastProbeAt = System.currentTimeMillis();
+                logger.error("Environment circuit opened after {} environment failure(s): {}", consecutiveFailures, reason);
+            }
+        }
+    }
+
+    private static boolean isCircuitOpen(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CircuitOpenException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Classifies a scenario error as an environment failure.
+     *
+     * @return The reason, or null if the failure is not attributed to the environment
+     */
+    private static String classify(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException) {
+                return "connection refused: " + cause.getMessage();
+            }
+            String message = String.valueOf(cause.getMessage());
+            for (String connectionError : CONNECTION_ERRORS) {
+                if (message.contains(connectionError)) {
+                    return "navigation error " + connectionError;
+                }
+            }
+            if (cause.getClass().getSimpleName().equals("TimeoutError") || message.contains("Timeout ")) {
+                // Only navigations of the environment count; a slow element is the application's problem
+                Matcher navigation = NAVIGATION.matcher(message);
+                if (baseUrl == null || !navigation.find() || !origin(navigation.group(1)).equalsIgnoreCase(origin(baseUrl))) {
+                    return null;
+                }
+                String url = navigation.group(1);
+                if (stripSlash(url).equals(stripSlash(baseUrl))) {
+                    return "navigation timeout on " + baseUrl;
+                }
+                // The same page of the environment (ignoring numbers) timing out in consecutive
+                // scenarios points at the environment rather than at that page
+                String signature = "navigation timeout on " + url.replaceAll("\\d+", "#");
+                synchronized (lock) {
+                    boolean repeated = signature.equals(lastTimeoutSignature);
+                    lastTimeoutSignature = signature;
+                    return repeated ? "repeated " + signature : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The scheme, host and port of a URL
+     */
+    private static String origin(String url) {
+        Matcher origin = ORIGIN.matcher(url);
+        return origin.find() ? origin.group() : url;
+    }
+
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static boolean probe() {
+        if (baseUrl == null) {
+            return true;
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(probeTimeoutMs))
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                    .timeout(Duration.ofMillis(probeTimeoutMs))
+                    .GET()
+                    .build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status < 500;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.info("Environment probe of {} failed: {}", baseUrl, e.toString());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String baseUrl() {
+        try {
+            return ConfigurationProperties.getBaseUrl(ConfigurationProperties.getString("circuit.baseUrlKey", "baseUrl"));
+        } catch (RuntimeException e) {
+            logger.debug("No base URL configured for the circuit breaker probe", e);
+            return null;
+        }
+    }
+
+    private static void writeReport() {
+        List<String> lines;
+        synchronized (lock) {
+            if (skipped.isEmpty()) {
+                return;
+            }
+            lines = new ArrayList<>(skipped);
+        }
+        Path file = Paths.get(ConfigurationProperties.getString("circuit.reportFile", "target/circuit-breaker-report.txt"));
+        logger.warn("{} scenario(s) not run because the environment was down, see {}", lines.size(), file.toAbsolutePath());
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Failed to write circuit breaker report to '{}'", file, e);
+        }
+    }
+
+    /**
+     * Fails a scenario that is not run because the circuit is open in {@code fail} mode. Its own
+     * failures are not counted as environment failures, so they do not restart the probe interval.
+     */
+    public static class CircuitOpenException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
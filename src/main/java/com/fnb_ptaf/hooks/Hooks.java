@@ -1,18 +1,45 @@
 package com.fnb_ptaf.hooks;
 
+import com.fnb_ptaf.utils.AdaptiveScheduler;
+import com.fnb_ptaf.utils.AssetCache;
 import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.BrowserMatrix;
+import com.fnb_ptaf.utils.BrowserWatchdog;
+import com.fnb_ptaf.utils.DownloadVerifier;
+import com.fnb_ptaf.utils.NetworkSettle;
+import com.fnb_ptaf.utils.PerformanceCapture;
+import com.fnb_ptaf.utils.RollingTracer;
+import com.fnb_ptaf.utils.RunMetrics;
+import com.fnb_ptaf.utils.SpeedMode;
 import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
 import io.cucumber.java.After;
+import io.cucumber.java.AfterStep;
 import io.cucumber.java.Before;
 import io.cucumber.java.Scenario;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 public class Hooks {
-    // Static variables for browser and page instances
-    private static Browser browser;
-    private static Page page;
+    // Per-worker browser, context and page instances; the browsers (one per browser type the worker
+    // runs) are reused across scenarios until the watchdog decides to recycle them, and closed by
+    // BrowserFactory at the end of the run; the context and page are fresh for each scenario
+    private static final ThreadLocal<Map<BrowserFactory.BrowserTypeEnum, Browser>> browsers =
+            ThreadLocal.withInitial(() -> new EnumMap<>(BrowserFactory.BrowserTypeEnum.class));
+    private static final ThreadLocal<BrowserFactory.BrowserTypeEnum> browserType = new ThreadLocal<>();
+    private static final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+    private static final ThreadLocal<BrowserContext> context = new ThreadLocal<>();
+    private static final ThreadLocal<Page> page = new ThreadLocal<>();
+    // Pre-warmed slot the current scenario runs in, if any
+    private static final ThreadLocal<PrewarmPool.Slot> slot = new ThreadLocal<>();
 
     // Logger for logging information
     private static final Logger logger = LoggerFactory.getLogger(Hooks.class);
@@ -20,34 +47,166 @@ public class Hooks {
     /**
      * Method annotated with @Before to indicate it runs before each scenario.
      * Sets up the browser and page instances.
+     *
+     * @param scenario The scenario about to run
      */
     @Before
-    public void setUp() {
-        // Default to using Chrome browser, can be changed to other supported browsers
-        BrowserFactory.BrowserTypeEnum browserTypeEnum = BrowserFactory.BrowserTypeEnum.CHROME;
+    public void setUp(Scenario scenario) {
+        // Skip the scenario right away while the environment circuit is open
+        EnvironmentCircuitBreaker.beforeScenario(scenario.getUri() + ":" + scenario.getLine(), scenario.getName());
+
+        // Use the browser selected by the matrix runner, or the configured browser (default chrome)
+        BrowserFactory.BrowserTypeEnum browserTypeEnum = BrowserMatrix.current();
 
-        // Create a new browser instance with headless mode
-        browser = BrowserFactory.createBrowser(browserTypeEnum);
+        // Wait for a free slot when the adaptive scheduler limits concurrency; tearDown releases it
+        // even if the rest of the set-up fails
+        AdaptiveScheduler.acquire(scenario.getUri() + ":" + scenario.getLine() + ":" + browserTypeEnum);
+        browserType.set(browserTypeEnum);
+        startedAt.set(System.currentTimeMillis());
 
-        // Create a new page in the browser
-        page = browser.newPage();
+        // Take a context prepared in the background when pre-warming is enabled; a scenario restored
+        // from a background checkpoint needs a context created with the checkpoint's storage state
+        BackgroundCheckpointPlugin.Checkpoint checkpoint = BackgroundCheckpointPlugin.restorableCheckpoint();
+        PrewarmPool.Slot prewarmed = checkpoint == null ? PrewarmPool.take(browserTypeEnum) : null;
+        if (prewarmed != null) {
+            slot.set(prewarmed);
+            context.set(prewarmed.getContext());
+            page.set(prewarmed.getPage());
+            RollingTracer.start(context.get());
+        } else {
+            // Create a new browser instance of this type for this worker unless a live one can be reused
+            Browser browser = browsers.get().get(browserTypeEnum);
+            if (browser == null || !browser.isConnected()) {
+                browser = BrowserFactory.createBrowser(browserTypeEnum);
+                browsers.get().put(browserTypeEnum, browser);
+                BrowserWatchdog.watch(browser);
+            }
+
+            // Create a new context and page in the browser, restored from the feature's background
+            // checkpoint when the checkpoint plugin has one for this scenario
+            context.set(newScenarioContext(browser, checkpoint != null ? checkpoint.getStorageState() : null));
+            RollingTracer.start(context.get());
+            page.set(newScenarioPage(context.get()));
+            if (checkpoint != null) {
+                page.get().navigate(checkpoint.getUrl());
+                logger.info("Scenario restored from background checkpoint: {}", checkpoint.getUrl());
+            }
+        }
+        // Skip animations and app-side delays when speed mode is enabled for the feature
+        SpeedMode.install(context.get(), page.get(), scenario.getUri());
+        RunMetrics.record("hooks.setUpMs", System.currentTimeMillis() - startedAt.get());
 
         // Log that the browser setup is complete
         logger.info("Browser setup completed: {}", browserTypeEnum);
     }
 
+    /**
+     * Creates the context of a scenario with the framework's routes and init scripts installed.
+     * Also used by the pre-warm pool to prepare contexts ahead of their scenarios.
+     *
+     * @param browser      The browser to create the context in
+     * @param storageState The storage state to apply as JSON, or null for a blank context
+     * @return The new context
+     */
+    static BrowserContext newScenarioContext(Browser browser, String storageState) {
+        BrowserContext newContext = storageState != null
+                ? browser.newContext(new Browser.NewContextOptions().setStorageState(storageState))
+                : browser.newContext();
+        AssetCache.install(newContext);
+        PerformanceCapture.install(newContext);
+        return newContext;
+    }
+
+    /**
+     * Creates the page of a scenario with network tracking installed.
+     *
+     * @param scenarioContext The context of the scenario
+     * @return The new page
+     */
+    static Page newScenarioPage(BrowserContext scenarioContext) {
+        Page newPage = scenarioContext.newPage();
+        NetworkSettle.track(newPage);
+        return newPage;
+    }
+
+    /**
+     * Method annotated with @AfterStep to indicate it runs after each step.
+     * Rotates the rolling trace buffer and attaches the page's performance data to the step.
+     *
+     * @param scenario The current scenario being executed
+     */
+    @AfterStep
+    public void afterStep(Scenario scenario) {
+        RollingTracer.afterStep(context.get());
+        SpeedMode.collect(page.get());
+        String performance = PerformanceCapture.collect(page.get());
+        if (performance != null) {
+            scenario.attach(performance, "application/json", "performance");
+        }
+    }
+
     /**
      * Method annotated with @After to indicate it runs after each scenario.
-     * Cleans up by closing the page and browser instances, and takes a screenshot if the scenario fails.
+     * Cleans up by closing the page and context, and takes a screenshot if the scenario fails.
+     * The browser is closed only when the watchdog asks for it to be recycled.
      *
      * @param scenario The current scenario being executed
      */
     @After
     public void tearDown(Scenario scenario) {
+        List<String> downloadFailures = Collections.emptyList();
+        try {
+            if (page.get() == null) {
+                // setUp did not get as far as creating the page, e.g. the scenario was skipped or the
+                // browser failed to start
+                if (context.get() != null) {
+                    try {
+                        context.get().close();
+                    } finally {
+                        context.remove();
+                    }
+                }
+                return;
+            }
+
+            // Wait for the downloads of the scenario still being verified in the background
+            downloadFailures = DownloadVerifier.awaitVerifications();
+            try {
+                report(scenario, downloadFailures);
+            } finally {
+                closeScenario();
+            }
+        } finally {
+            // Group the result under the browser the scenario ran against, and let the next waiting
+            // scenario start, however far set-up and clean-up got
+            BrowserFactory.BrowserTypeEnum browserTypeEnum = browserType.get();
+            if (browserTypeEnum != null) {
+                boolean failed = scenario.isFailed() || !downloadFailures.isEmpty();
+                BrowserMatrix.recordResult(browserTypeEnum, failed, System.currentTimeMillis() - startedAt.get());
+            }
+            browserType.remove();
+            startedAt.remove();
+            AdaptiveScheduler.release();
+        }
+
+        // Fail the scenario only now, so the page, context and slot are cleaned up first
+        if (!downloadFailures.isEmpty()) {
+            throw new AssertionError("Download verification failed: " + String.join("; ", downloadFailures));
+        }
+    }
+
+    /**
+     * Attaches the screenshot, performance data and traces of a finished scenario.
+     */
+    private void report(Scenario scenario, List<String> downloadFailures) {
+        if (!downloadFailures.isEmpty()) {
+            scenario.attach(String.join("\n", downloadFailures), "text/plain", "download verification");
+        }
+
         // Check if the scenario has failed
         if (scenario.isFailed()) {
             // Take a screenshot of the full page
-            byte[] screenshot = page.screenshot(new Page.ScreenshotOptions().setFullPage(true));
+            byte[] screenshot = page.get().screenshot(new Page.ScreenshotOptions().setFullPage(true));
 
             // Attach the screenshot to the scenario
             scenario.attach(screenshot, "image/png", scenario.getName());
@@ -56,13 +215,58 @@ public class Hooks {
             logger.error("Scenario failed, screenshot taken: {}", scenario.getName());
         }
 
-        // Close the page
-        page.close();
+        // Add the final performance data of the page to the history
+        String performance = PerformanceCapture.finish(page.get());
+        if (performance != null) {
+            scenario.attach(performance, "application/json", "performance");
+        }
 
-        // Close the browser
-        browser.close();
-        // Log that the browser has been closed
-        logger.info("Browser closed");
+        // Add the waiting skipped by speed mode to the report
+        SpeedMode.finish(page.get(), scenario.getName());
+
+        // Keep the rolling trace of the last steps only if the scenario failed
+        List<Path> traces = RollingTracer.finish(context.get(), scenario.getName(), scenario.isFailed());
+        for (Path trace : traces) {
+            logger.error("Scenario failed, trace written: {}", trace.toAbsolutePath());
+            // Attached by reference, so the trace is not read into memory and copied into every report;
+            // reports that keep artifacts copy or link the file itself
+            scenario.attach(trace.toAbsolutePath().toUri() + "\r\n", "text/uri-list", "trace " + trace.getFileName());
+        }
+    }
+
+    /**
+     * Closes the page and context of the scenario, and hands back or recycles its browser.
+     */
+    private void closeScenario() {
+        BrowserFactory.BrowserTypeEnum browserTypeEnum = browserType.get();
+        PrewarmPool.Slot prewarmed = slot.get();
+        Browser browser = prewarmed != null ? prewarmed.getBrowser() : browsers.get().get(browserTypeEnum);
+        boolean recycle = BrowserWatchdog.shouldRecycle(browser, page.get());
+
+        // Close the page and its context; a browser that cannot close them is broken and recycled
+        try {
+            page.get().close();
+            context.get().close();
+        } catch (PlaywrightException e) {
+            logger.warn("Failed to close the page and context of the scenario", e);
+            recycle = true;
+        } finally {
+            page.remove();
+            context.remove();
+        }
+
+        if (prewarmed != null) {
+            // Hand the slot back so its next context is prepared while the next scenario starts
+            slot.remove();
+            PrewarmPool.release(prewarmed, recycle);
+        } else if (recycle) {
+            // Close the browser so the next scenario of this worker starts a fresh one
+            BrowserWatchdog.unwatch(browser);
+            BrowserFactory.closeBrowser(browser);
+            browsers.get().remove(browserTypeEnum);
+            // Log that the browser has been closed
+            logger.info("Browser closed: {}", browserTypeEnum);
+        }
     }
 
     /**
@@ -71,6 +275,6 @@ public class Hooks {
      * @return The current page instance
      */
     public static Page getPage() {
-        return page;
+        return page.get();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,19 @@
+package com.fnb_ptaf.hooks;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+
+/**
+ * The PrewarmPlugin starts the {@link PrewarmPool} as soon as Cucumber creates its plugins, so
+ * browsers launch while features are still being parsed rather than when the first scenario
+ * starts. Register it with
+ * {@code @CucumberOptions(plugin = "com.fnb_ptaf.hooks.PrewarmPlugin")}; without it the pool
+ * starts with the first scenario.
+ */
+public class PrewarmPlugin implements ConcurrentEventListener {
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        PrewarmPool.start();
+    }
+}
@@ -0,0 +1,235 @@
+package com.fnb_ptaf.hooks;
+
+import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.BrowserMatrix;
+import com.fnb_ptaf.utils.BrowserWatchdog;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.RunMetrics;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The PrewarmPool keeps browser contexts ready before scenarios ask for them. Browsers are launched
+ * in the background as soon as the pool starts (from {@link PrewarmPlugin}, while Cucumber is still
+ * discovering features), and while a worker runs its scenario the pool prepares the next context and
+ * page: context routes installed, storage state applied and the start URL loaded. {@code Hooks.setUp}
+ * then only takes a ready slot.
+ *
+ * <p>Playwright objects may move between threads as long as one thread uses them at a time, so every
+ * slot has a browser (and Playwright driver) of its own and is owned either by a preparing pool thread
+ * or by the worker running a scenario in it, never by both. Configuration keys:
+ * <ul>
+ *     <li>{@code prewarm.enabled} - use pre-warmed contexts (default false)</li>
+ *     <li>{@code prewarm.slots} - slots per browser type; one per worker plus spares (default threads + 1)</li>
+ *     <li>{@code prewarm.threads} - threads preparing slots (default 2)</li>
+ *     <li>{@code prewarm.url} - URL loaded into each prepared page (optional)</li>
+ *     <li>{@code prewarm.storageState} - storage state file applied to each prepared context (optional)</li>
+ *     <li>{@code prewarm.takeTimeoutMs} - time to wait for a ready slot before creating the context
+ *     in the scenario (default 60000); not waited at all while no slot of the browser is being prepared</li>
+ *     <li>{@code prewarm.maxFailures} - failed preparations in a row after which a slot is given up
+ *     (default 3)</li>
+ * </ul>
+ */
+public class PrewarmPool {
+    private static final Logger logger = LoggerFactory.getLogger(PrewarmPool.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("prewarm.enabled", false);
+    private static final int slotsPerType = Math.max(1, ConfigurationProperties.getInt("prewarm.slots",
+            Integer.getInteger("ptaf.threads", Runtime.getRuntime().availableProcessors()) + 1));
+    private static final int threads = Math.max(1, ConfigurationProperties.getInt("prewarm.threads", 2));
+    private static final String url = ConfigurationProperties.getString("prewarm.url", null);
+    private static final String storageStateFile = ConfigurationProperties.getString("prewarm.storageState", null);
+    private static final long takeTimeoutMs = ConfigurationProperties.getLong("prewarm.takeTimeoutMs", 60000);
+    private static final int maxFailures = Math.max(1, ConfigurationProperties.getInt("prewarm.maxFailures", 3));
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private static final Map<BrowserFactory.BrowserTypeEnum, BlockingQueue<Slot>> ready =
+            new EnumMap<>(BrowserFactory.BrowserTypeEnum.class);
+    // Slots of each browser type queued or running on a preparing thread
+    private static final Map<BrowserFactory.BrowserTypeEnum, AtomicInteger> preparing =
+            new EnumMap<>(BrowserFactory.BrowserTypeEnum.class);
+    private static final AtomicInteger threadIndex = new AtomicInteger();
+    private static ExecutorService preparers;
+    private static String storageState;
+
+    /**
+     * Starts launching browsers and preparing slots for every browser of the matrix. Safe to call
+     * more than once; only the first call has an effect.
+     */
+    public static synchronized void start() {
+        if (!enabled || preparers != null) {
+            return;
+        }
+        if (storageStateFile != null) {
+            try {
+                storageState = new String(Files.readAllBytes(Paths.get(storageStateFile)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                logger.warn("Failed to read storage state '{}', preparing contexts without it", storageStateFile, e);
+            }
+        }
+        preparers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ptaf-prewarm-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<BrowserFactory.BrowserTypeEnum> browserTypes = BrowserMatrix.browsers();
+        for (BrowserFactory.BrowserTypeEnum browserType : browserTypes) {
+            ready.put(browserType, new LinkedBlockingQueue<>());
+            preparing.put(browserType, new AtomicInteger());
+        }
+        for (int i = 0; i < slotsPerType; i++) {
+            for (BrowserFactory.BrowserTypeEnum browserType : browserTypes) {
+                prepare(new Slot(browserType));
+            }
+        }
+        logger.info("Pre-warming {} context(s) per browser for {}", slotsPerType, browserTypes);
+    }
+
+    /**
+     * Takes a prepared slot of the given browser type for the scenario on the current thread. Waits
+     * only while a slot of the type is being prepared, so a type whose preparations keep failing does
+     * not hold up its scenarios.
+     *
+     * @param browserType The browser type of the scenario
+     * @return The slot, or null if pre-warming is disabled, nothing is being prepared or no slot became
+     * ready in time
+     */
+    static Slot take(BrowserFactory.BrowserTypeEnum browserType) {
+        start();
+        BlockingQueue<Slot> queue = ready.get(browserType);
+        if (queue == null) {
+            return null;
+        }
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(takeTimeoutMs);
+        try {
+            Slot slot = queue.poll();
+            while (slot == null && preparing.get(browserType).get() > 0 && System.nanoTime() < deadline) {
+                slot = queue.poll(Math.min(POLL_INTERVAL_MS, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) + 1),
+                        TimeUnit.MILLISECONDS);
+            }
+            RunMetrics.record("prewarm.waitMs", (System.nanoTime() - started) / 1_000_000.0);
+            if (slot == null) {
+                if (preparing.get(browserType).get() == 0) {
+                    logger.warn("No pre-warmed {} context ready and none being prepared", browserType);
+                } else {
+                    logger.warn("No pre-warmed {} context ready within {} ms", browserType, takeTimeoutMs);
+                }
+            }
+            return slot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Hands a slot back after its scenario; the pool prepares a fresh context in it, in a new
+     * browser if the previous one is to be recycled. The scenario's context must already be closed.
+     *
+     * @param slot    The slot taken by {@link #take}
+     * @param recycle Whether the slot's browser should be replaced
+     */
+    static void release(Slot slot, boolean recycle) {
+        slot.context = null;
+        slot.page = null;
+        if (recycle) {
+            BrowserWatchdog.unwatch(slot.browser);
+            BrowserFactory.closeBrowser(slot.browser);
+            slot.browser = null;
+        }
+        prepare(slot);
+    }
+
+    /**
+     * Prepares a slot on a pool thread. A failed preparation is retried after a pause, up to
+     * {@code prewarm.maxFailures} times in a row; then the slot is given up and the pool shrinks.
+     */
+    private static void prepare(Slot slot) {
+        AtomicInteger inProgress = preparing.get(slot.browserType);
+        inProgress.incrementAndGet();
+        preparers.submit(() -> {
+            try {
+                if (slot.browser == null || !slot.browser.isConnected()) {
+                    slot.browser = BrowserFactory.createStandaloneBrowser(slot.browserType);
+                    BrowserWatchdog.watch(slot.browser);
+                }
+                slot.context = Hooks.newScenarioContext(slot.browser, storageState);
+                slot.page = Hooks.newScenarioPage(slot.context);
+                if (url != null) {
+                    slot.page.navigate(url);
+                }
+                slot.failures = 0;
+                ready.get(slot.browserType).add(slot);
+            } catch (Exception e) {
+                slot.failures++;
+                if (slot.browser != null) {
+                    BrowserWatchdog.unwatch(slot.browser);
+                    BrowserFactory.closeBrowser(slot.browser);
+                    slot.browser = null;
+                }
+                if (slot.failures >= maxFailures) {
+                    logger.error("Failed to prepare a {} context {} times in a row, giving up the slot", slot.browserType, slot.failures, e);
+                    RunMetrics.increment("prewarm.abandonedSlots", 1);
+                    return;
+                }
+                logger.warn("Failed to prepare a {} context, retrying", slot.browserType, e);
+                // Back off so a broken environment does not spin
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                prepare(slot);
+            } finally {
+                // After a retry has been queued, so the count does not drop to zero in between
+                inProgress.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * A browser with a context and page prepared for the next scenario.
+     */
+    static final class Slot {
+        private final BrowserFactory.BrowserTypeEnum browserType;
+        private Browser browser;
+        private BrowserContext context;
+        private Page page;
+        private int failures;
+
+        Slot(BrowserFactory.BrowserTypeEnum browserType) {
+            this.browserType = browserType;
+        }
+
+        Browser getBrowser() {
+            return browser;
+        }
+
+        BrowserContext getContext() {
+            return context;
+        }
+
+        Page getPage() {
+            return page;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.fnb_ptaf.load;
+
+import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.google.gson.GsonBuilder;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+import io.cucumber.testng.TestNGCucumberRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LoadRunner class replays a Cucumber scenario as a number of concurrent virtual users, so the
+ * existing features and {@code CommonMethods} steps double as a lightweight load test. Each virtual
+ * user is a thread that runs the scenario in a loop until the test duration has elapsed; users are
+ * started evenly over the ramp-up period. A virtual user keeps its browser between iterations (see
+ * {@code Hooks}) and only opens a fresh context per iteration. Features and glue are parsed once
+ * for the whole test, so an iteration costs only the scenario itself.
+ *
+ * <p>Run it with {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.load.LoadRunner
+ * -Dexec.args="<scenario name regex> <feature path>..."}. Configuration keys:
+ * <ul>
+ *     <li>{@code load.scenario} / {@code load.features} - defaults for the arguments</li>
+ *     <li>{@code load.glue} - glue package (default {@code com.fnb_ptaf})</li>
+ *     <li>{@code load.users} - number of virtual users (default 5)</li>
+ *     <li>{@code load.rampUpSeconds} - time over which the users are started (default 10)</li>
+ *     <li>{@code load.durationSeconds} - test duration including ramp-up (default 60)</li>
+ *     <li>{@code load.thinkTimeMs} - mean pause after each step, varied by +/-50% (default 1000)</li>
+ *     <li>{@code load.reportFile} - report location (default {@code target/load-report.json})</li>
+ * </ul>
+ * The report holds latency percentiles per step and the iterations completed per second.
+ */
+public class LoadRunner {
+    private static final Logger logger = LoggerFactory.getLogger(LoadRunner.class);
+
+    private static final long thinkTimeMs = ConfigurationProperties.getLong("load.thinkTimeMs", 1000);
+
+    // Step latencies in milliseconds by step text, and completed iterations by second of the test
+    private static final Map<String, StepStats> steps = new ConcurrentHashMap<>();
+    private static final Map<Long, long[]> throughput = new ConcurrentHashMap<>();
+    private static final AtomicLong passedIterations = new AtomicLong();
+    private static final AtomicLong failedIterations = new AtomicLong();
+    private static volatile long startedAt;
+
+    public static void main(String[] args) throws InterruptedException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        String scenario = !arguments.isEmpty() ? arguments.remove(0) : ConfigurationProperties.getString("load.scenario", null);
+        List<String> features = !arguments.isEmpty() ? arguments : ConfigurationProperties.getList("load.features");
+        if (scenario == null || features.isEmpty()) {
+            throw new IllegalArgumentException("Usage: LoadRunner <scenario name regex> <feature path>...");
+        }
+        Map<String, Object> report = run(scenario, features, ConfigurationProperties.getString("load.glue", "com.fnb_ptaf"),
+                ConfigurationProperties.getInt("load.users", 5),
+                ConfigurationProperties.getLong("load.rampUpSeconds", 10) * 1000,
+                ConfigurationProperties.getLong("load.durationSeconds", 60) * 1000);
+        if ((long) report.get("passedIterations") + (long) report.get("failedIterations") == 0) {
+            throw new IllegalStateException("No scenario iteration completed, see the log of the virtual users");
+        }
+    }
+
+    /**
+     * Runs the load test and writes its report.
+     *
+     * @param scenario   Regular expression matched against scenario names
+     * @param features   Feature paths
+     * @param glue       Glue package
+     * @param users      Number of virtual users
+     * @param rampUpMs   Time over which the users are started
+     * @param durationMs Test duration including ramp-up
+     * @return The report
+     * @throws IllegalArgumentException if no scenario matches
+     */
+    static Map<String, Object> run(String scenario, List<String> features, String glue, int users, long rampUpMs, long durationMs)
+            throws InterruptedException {
+        steps.clear();
+        throughput.clear();
+        passedIterations.set(0);
+        failedIterations.set(0);
+
+        // Parse features and glue once; every virtual user replays the parsed pickles
+        TestNGCucumberRunner runner = createRunner(scenario, features, glue);
+        List<Pickle> pickles = new ArrayList<>();
+        for (Object[] row : runner.provideScenarios()) {
+            pickles.add(((PickleWrapper) row[0]).getPickle());
+        }
+        if (pickles.isEmpty()) {
+            runner.finish();
+            throw new IllegalArgumentException("No scenario named '" + scenario + "' in " + features);
+        }
+
+        logger.info("Starting {} virtual users over {} s for {} s: {} scenario(s) matching '{}'",
+                users, rampUpMs / 1000, durationMs / 1000, pickles.size(), scenario);
+        startedAt = System.currentTimeMillis();
+        long deadline = startedAt + durationMs;
+        List<Thread> virtualUsers = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            long startDelay = users > 1 ? rampUpMs * i / (users - 1) : 0;
+            Thread user = new Thread(() -> runVirtualUser(runner, pickles, startDelay, deadline), "ptaf-vu-" + (i + 1));
+            virtualUsers.add(user);
+            user.start();
+        }
+        for (Thread user : virtualUsers) {
+            user.join();
+        }
+        runner.finish();
+        // The virtual users have ended, so the browsers they reused can be closed now
+        BrowserFactory.closeAll();
+        return writeReport();
+    }
+
+    private static TestNGCucumberRunner createRunner(String scenario, List<String> features, String glue) {
+        // TestNGCucumberRunner reads its options from system properties when there is no annotation
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("cucumber.features", String.join(",", features));
+        options.put("cucumber.glue", glue);
+        options.put("cucumber.filter.name", scenario);
+        options.put("cucumber.plugin", StepLatencyPlugin.class.getName());
+        options.put("cucumber.publish.quiet", "true");
+        Map<String, String> previous = new LinkedHashMap<>();
+        options.forEach((key, value) -> previous.put(key, System.setProperty(key, value)));
+        try {
+            return new TestNGCucumberRunner(LoadRunner.class);
+        } finally {
+            previous.forEach((key, value) -> {
+                if (value != null) {
+                    System.setProperty(key, value);
+                } else {
+                    System.clearProperty(key);
+                }
+            });
+        }
+    }
+
+    private static void runVirtualUser(TestNGCucumberRunner runner, List<Pickle> pickles, long startDelay, long deadline) {
+        try {
+            Thread.sleep(startDelay);
+            while (System.currentTimeMillis() < deadline) {
+                for (Pickle pickle : pickles) {
+                    try {
+                        runner.runScenario(pickle);
+                    } catch (RuntimeException | AssertionError e) {
+                        // A failed iteration is recorded by StepLatencyPlugin; keep the load going
+                        logger.debug("Iteration of '{}' failed", pickle.getName(), e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Virtual user {} stopped", Thread.currentThread().getName(), e);
+        }
+    }
+
+    /**
+     * Records the latency of a step.
+     *
+     * @param step      The step keyword and text
+     * @param latencyMs The step duration
+     * @param passed    Whether the step passed
+     */
+    static void recordStep(String step, long latencyMs, boolean passed) {
+        steps.computeIfAbsent(step, key -> new StepStats()).add(latencyMs, passed);
+    }
+
+    /**
+     * Records a completed scenario iteration in the throughput timeline.
+     *
+     * @param passed Whether the iteration passed
+     */
+    static void recordIteration(boolean passed) {
+        (passed ? passedIterations : failedIterations).incrementAndGet();
+        long second = (System.currentTimeMillis() - startedAt) / 1000;
+        long[] bucket = throughput.computeIfAbsent(second, key -> new long[2]);
+        synchronized (bucket) {
+            bucket[passed ? 0 : 1]++;
+        }
+    }
+
+    /**
+     * Pauses the current virtual user for the think time, varied by +/-50%.
+     */
+    static void thinkTime() {
+        if (thinkTimeMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(thinkTimeMs / 2, thinkTimeMs * 3 / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> writeReport() {
+        long elapsedMs = System.currentTimeMillis() - startedAt;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("durationMs", elapsedMs);
+        report.put("passedIterations", passedIterations.get());
+        report.put("failedIterations", failedIterations.get());
+        report.put("iterationsPerSecond", elapsedMs > 0 ? (passedIterations.get() + failedIterations.get()) * 1000.0 / elapsedMs : 0);
+
+        Map<String, Object> stepReport = new TreeMap<>();
+        steps.forEach((step, stats) -> stepReport.put(step, stats.toMap()));
+        report.put("steps", stepReport);
+
+        List<Map<String, Object>> timeline = new ArrayList<>();
+        new TreeMap<>(throughput).forEach((second, bucket) -> {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("second", second);
+            point.put("passed", bucket[0]);
+            point.put("failed", bucket[1]);
+            timeline.add(point);
+        });
+        report.put("throughput", timeline);
+
+        steps.forEach((step, stats) -> logger.info("{}: {}", step, stats.toMap()));
+        Path file = Paths.get(ConfigurationProperties.getString("load.reportFile", "target/load-report.json"));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            }
+            logger.info("Load report written to {}", file.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to write load report to '{}'", file, e);
+        }
+        return report;
+    }
+
+    /**
+     * Latencies of one step across all virtual users.
+     */
+    private static class StepStats {
+        private final List<Long> latencies = new ArrayList<>();
+        private long failures;
+
+        synchronized void add(long latencyMs, boolean passed) {
+            latencies.add(latencyMs);
+            if (!passed) {
+                failures++;
+            }
+        }
+
+        synchronized Map<String, Object> toMap() {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", sorted.size());
+            map.put("failures", failures);
+            map.put("p50", percentile(sorted, 50));
+            map.put("p90", percentile(sorted, 90));
+            map.put("p95", percentile(sorted, 95));
+            map.put("p99", percentile(sorted, 99));
+            map.put("max", sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1));
+            return map;
+        }
+
+        private static long percentile(List<Long> sorted, int percentile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            // Nearest-rank percentile
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+            return sorted.get(Math.max(0, rank - 1));
+        }
+    }
+}
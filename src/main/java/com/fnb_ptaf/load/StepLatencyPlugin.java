@@ -0,0 +1,37 @@
+package com.fnb_ptaf.load;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestStepFinished;
+
+/**
+ * The StepLatencyPlugin feeds the duration of every step and the outcome of every scenario
+ * iteration into the {@link LoadRunner} statistics, and pauses for the configured think time
+ * after each step. Event handlers run on the thread executing the scenario, so the pause
+ * delays that virtual user only.
+ */
+public class StepLatencyPlugin implements ConcurrentEventListener {
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        if (!(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+        LoadRunner.recordStep(step.getStep().getKeyword() + step.getStep().getText(), event.getResult().getDuration().toMillis(),
+                event.getResult().getStatus() == Status.PASSED);
+        LoadRunner.thinkTime();
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        LoadRunner.recordIteration(event.getResult().getStatus() == Status.PASSED);
+    }
+}
@@ -1,16 +1,25 @@
 package com.fnb_ptaf.pages;
 
+import com.fnb_ptaf.ElementLocator;
 import com.fnb_ptaf.HandleAction;
 import com.fnb_ptaf.WaitAction;
+import com.fnb_ptaf.hooks.BackgroundCheckpointPlugin;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.DownloadVerifier;
+import com.fnb_ptaf.utils.EventJournal;
+import com.fnb_ptaf.utils.SpeedMode;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fnb_ptaf.GetTargetLocator;
 
+import java.nio.file.Path;
+
 public class CommonMethods implements HandleAction, WaitAction {
     private final Page page;
     private static final Logger logger = LoggerFactory.getLogger(CommonMethods.class);
+    private static final boolean settleAfterActions = ConfigurationProperties.getBoolean("settle.afterActions", false);
 
     /**
      * Constructor to initialize the CommonMethods with a Page instance.
@@ -41,6 +50,24 @@ public class CommonMethods implements HandleAction, WaitAction {
         }
     }
 
+    /**
+     * Waits until the page has had no network activity for the configured quiet period.
+     * Use this instead of fixed sleeps after navigation or actions that trigger XHR refreshes.
+     */
+    public void waitForNetworkIdle() {
+        WaitAction.SETTLE(page);
+    }
+
+    /**
+     * Moves the page's virtual clock forward, firing the timers that become due, e.g. to skip a
+     * debounce or the next poll. Requires speed mode with fake timers for the feature.
+     *
+     * @param millis How far to move the clock
+     */
+    public void fastForward(long millis) {
+        SpeedMode.fastForward(page, millis);
+    }
+
     /**
      * Public method to perform a click action on an element within a specific context.
      * This method is designed for external use, allowing other parts of the code to
@@ -144,6 +171,96 @@ public class CommonMethods implements HandleAction, WaitAction {
         performAction("dblclick", element, locator, null);
     }
 
+    /**
+     * Performs a click action on an element using its generated locator (e.g. {@code Elements.Login.SUBMIT}).
+     *
+     * @param locator The generated element locator.
+     */
+    public void clickOnLocator(ElementLocator locator) {
+        performAction("click", locator, null);
+    }
+
+    /**
+     * Performs a fill action on an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     * @param value   The value to fill into the input field.
+     */
+    public void fillOnLocator(ElementLocator locator, String value) {
+        performAction("fill", locator, value);
+    }
+
+    /**
+     * Performs a select option action on an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     * @param value   The option to select from the dropdown or selection element.
+     */
+    public void selectOptionOnLocator(ElementLocator locator, String value) {
+        performAction("select", locator, value);
+    }
+
+    /**
+     * Performs a check action on an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     */
+    public void check(ElementLocator locator) {
+        performAction("check", locator, null);
+    }
+
+    /**
+     * Performs an uncheck action on an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     */
+    public void uncheck(ElementLocator locator) {
+        performAction("uncheck", locator, null);
+    }
+
+    /**
+     * Performs a hover action over an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     */
+    public void hover(ElementLocator locator) {
+        performAction("hover", locator, null);
+    }
+
+    /**
+     * Performs a dblclick action on an element using its generated locator.
+     *
+     * @param locator The generated element locator.
+     */
+    public void dblclick(ElementLocator locator) {
+        performAction("dblclick", locator, null);
+    }
+
+    /**
+     * Clicks an element that starts a download and saves the downloaded file.
+     *
+     * @param element The name of the element as defined in the YAML configuration.
+     * @param locator The key to locate the element's selector.
+     * @return The downloaded file.
+     */
+    public Path download(String element, String locator) {
+        return DownloadVerifier.download(page, () -> performAction("click", element, locator, null));
+    }
+
+    /**
+     * Clicks an element that starts a download and verifies the downloaded file in the background
+     * while the scenario continues; the scenario fails at its end if the file does not satisfy the
+     * expectation.
+     *
+     * @param element     The name of the element as defined in the YAML configuration.
+     * @param locator     The key to locate the element's selector.
+     * @param expectation What the downloaded file must satisfy.
+     * @return The downloaded file.
+     */
+    public Path downloadAndVerify(String element, String locator, DownloadVerifier.Expectation expectation) {
+        return DownloadVerifier.downloadAndVerify(page, () -> performAction("click", element, locator, null), expectation);
+    }
+
     /**
      * A wrapper method to perform actions within a specific context, with additional error handling.
      * This method simplifies the interaction with elements across different contexts (e.g., frames, windows).
@@ -161,12 +278,45 @@ public class CommonMethods implements HandleAction, WaitAction {
         }
     }
     private void performAction(String action, String element, String key, String value) {
+        if (BackgroundCheckpointPlugin.isReplayingBackground()) {
+            // The page was restored from the background checkpoint, the action already happened
+            logger.debug("Skipping '{}' on '{}' of a checkpointed background", action, element + key);
+            return;
+        }
+        performTimedAction(action, element, key, null, value);
+    }
+
+    private void performAction(String action, ElementLocator locator, String value) {
+        if (BackgroundCheckpointPlugin.isReplayingBackground()) {
+            logger.debug("Skipping '{}' on '{}' of a checkpointed background", action, locator);
+            return;
+        }
+        performTimedAction(action, locator.getElement(), locator.getKey(), locator, value);
+    }
+
+    /**
+     * Waits for the element, performs the action and lets the page settle, recording the time of each
+     * part in the event journal.
+     */
+    private void performTimedAction(String action, String element, String key, ElementLocator locator, String value) {
+        long started = System.nanoTime();
         try {
-            Locator targetLocator = GetTargetLocator.getTargetLocator(page, element, key);
+            Locator targetLocator = locator != null
+                    ? GetTargetLocator.getTargetLocator(page, locator)
+                    : GetTargetLocator.getTargetLocator(page, element, key);
             WaitAction.WAIT(targetLocator);
+            long waited = System.nanoTime();
+            EventJournal.record(EventJournal.Event.WAIT, element, key, EventJournal.TRUE, waited - started);
             HandleAction.ACTION(targetLocator, action, value);
+            long acted = System.nanoTime();
+            EventJournal.record(EventJournal.Event.ACTION, element, action, EventJournal.TRUE, acted - waited);
+            if (settleAfterActions) {
+                WaitAction.SETTLE(page);
+                EventJournal.record(EventJournal.Event.SETTLE, element, action, EventJournal.TRUE, System.nanoTime() - acted);
+            }
         } catch (Exception e) {
-            logger.error("Failed to perform '{}' action on element by Locator '{}'", action, element + key, e);
+            EventJournal.record(EventJournal.Event.ACTION, element, action, EventJournal.FAILED, System.nanoTime() - started);
+            logger.error("Failed to perform '{}' action on element by Locator '{}'", action, locator != null ? locator : element + key, e);
         }
     }
 }
@@ -0,0 +1,206 @@
+package com.fnb_ptaf.report;
+
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * The StreamingReportBuilder builds {@code index.html} from the {@code results.jsonl} written by the
+ * {@link StreamingReportPlugin}. It reads the file one line at a time, once for the totals, once for
+ * the failed scenarios and once for all scenarios, and writes the page as it goes, so memory use is
+ * the same for ten scenarios and for ten thousand. Attachments are not inlined: images are shown from
+ * the artifact files and everything else is linked.
+ *
+ * <p>Run it with {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.report.StreamingReportBuilder
+ * [-Dexec.args="<report dir>"]} to build the report of a run that did not finish; the report
+ * directory defaults to {@code report.dir}.
+ */
+public class StreamingReportBuilder {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingReportBuilder.class);
+
+    private static final Gson gson = new Gson();
+
+    private static final String STYLE = "body{font-family:sans-serif;margin:2em;color:#222}"
+            + "table{border-collapse:collapse}td,th{padding:4px 10px;border-bottom:1px solid #ddd;text-align:left}"
+            + "details{margin:4px 0;border-left:4px solid #ccc;padding-left:8px}"
+            + ".PASSED{border-color:#2e7d32}.FAILED{border-color:#c62828}.SKIPPED,.PENDING,.UNDEFINED,.AMBIGUOUS{border-color:#f9a825}"
+            + "summary{cursor:pointer}.status{font-weight:bold}.muted{color:#777}"
+            + "pre{background:#f6f6f6;padding:6px;overflow:auto;max-height:300px}img{max-width:480px;border:1px solid #ccc}";
+
+    public static void main(String[] args) throws IOException {
+        Path reportDir = Paths.get(args.length > 0 ? args[0] : ConfigurationProperties.getString("report.dir", "target/ptaf-report"));
+        Path html = build(reportDir);
+        logger.info("Report written to {}", html.toAbsolutePath());
+    }
+
+    /**
+     * Builds the HTML report from the results in the report directory.
+     *
+     * @param reportDir The report directory
+     * @return The HTML file
+     */
+    static Path build(Path reportDir) throws IOException {
+        Path resultsFile = reportDir.resolve(StreamingReportPlugin.RESULTS_FILE);
+        Path html = reportDir.resolve("index.html");
+
+        Map<String, Integer> counts = new TreeMap<>();
+        long[] totals = new long[2];
+        forEachScenario(resultsFile, scenario -> {
+            counts.merge(scenario.status, 1, Integer::sum);
+            totals[0]++;
+            totals[1] += scenario.durationMs;
+        });
+
+        try (BufferedWriter out = Files.newBufferedWriter(html, StandardCharsets.UTF_8)) {
+            out.write("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Test report</title><style>");
+            out.write(STYLE);
+            out.write("</style></head><body><h1>Test report</h1><table><tr><th>Scenarios</th><td>");
+            out.write(Long.toString(totals[0]));
+            out.write("</td></tr>");
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                out.write("<tr><th>" + escape(count.getKey()) + "</th><td>" + count.getValue() + "</td></tr>");
+            }
+            out.write("<tr><th>Scenario time</th><td>" + formatDuration(totals[1]) + "</td></tr></table>");
+
+            if (counts.containsKey("FAILED")) {
+                out.write("<h2>Failed scenarios</h2>");
+                writeScenarios(out, resultsFile, scenario -> "FAILED".equals(scenario.status));
+            }
+            out.write("<h2>All scenarios</h2>");
+            writeScenarios(out, resultsFile, scenario -> true);
+            out.write("</body></html>");
+        }
+        return html;
+    }
+
+    private static void writeScenarios(Writer out, Path resultsFile, Predicate<StreamingReportPlugin.ScenarioResult> filter) throws IOException {
+        forEachScenario(resultsFile, scenario -> {
+            if (filter.test(scenario)) {
+                writeScenario(out, scenario);
+            }
+        });
+    }
+
+    private static void writeScenario(Writer out, StreamingReportPlugin.ScenarioResult scenario) throws IOException {
+        out.write("<details class=\"" + escape(scenario.status) + "\"><summary><span class=\"status\">" + escape(scenario.status)
+                + "</span> " + escape(scenario.name) + " <span class=\"muted\">" + escape(scenario.browser) + ", "
+                + formatDuration(scenario.durationMs) + ", " + escape(scenario.feature) + ":" + scenario.line + "</span></summary>");
+        if (scenario.tags != null && !scenario.tags.isEmpty()) {
+            out.write("<div class=\"muted\">" + escape(String.join(" ", scenario.tags)) + "</div>");
+        }
+        out.write("<table>");
+        int attachment = 0;
+        for (int i = 0; i <= scenario.steps.size(); i++) {
+            // Attachments made before step i finished, then step i itself
+            while (attachment < scenario.attachments.size() && scenario.attachments.get(attachment).step <= i) {
+                writeAttachment(out, scenario.attachments.get(attachment++));
+            }
+            if (i < scenario.steps.size()) {
+                StreamingReportPlugin.StepResult step = scenario.steps.get(i);
+                out.write("<tr class=\"" + escape(step.status) + "\"><td>" + escape(step.status) + "</td><td>" + escape(step.text)
+                        + "</td><td class=\"muted\">" + formatDuration(step.durationMs) + "</td></tr>");
+                if (step.error != null) {
+                    out.write("<tr><td></td><td colspan=\"2\"><pre>" + escape(step.error) + "</pre></td></tr>");
+                }
+            }
+        }
+        out.write("</table>");
+        if (scenario.error != null) {
+            out.write("<pre>" + escape(scenario.error) + "</pre>");
+        }
+        if (!scenario.log.isEmpty()) {
+            out.write("<pre>" + escape(String.join("\n", scenario.log)) + "</pre>");
+        }
+        out.write("</details>\n");
+    }
+
+    private static void writeAttachment(Writer out, StreamingReportPlugin.Attachment attachment) throws IOException {
+        String label = escape(attachment.name != null ? attachment.name : attachment.path);
+        out.write("<tr><td></td><td colspan=\"2\">");
+        if (attachment.mediaType != null && attachment.mediaType.startsWith("image/")) {
+            out.write("<a href=\"" + escape(attachment.path) + "\"><img loading=\"lazy\" src=\"" + escape(attachment.path)
+                    + "\" alt=\"" + label + "\"></a>");
+        } else {
+            out.write("<a href=\"" + escape(attachment.path) + "\">" + label + "</a>");
+        }
+        out.write("</td></tr>");
+    }
+
+    /**
+     * Reads the results file one scenario at a time; lines that are not valid JSON (a line cut short
+     * by a crash) are skipped.
+     */
+    private static void forEachScenario(Path resultsFile, ScenarioHandler handler) throws IOException {
+        if (!Files.exists(resultsFile)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(resultsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                StreamingReportPlugin.ScenarioResult scenario;
+                try {
+                    scenario = gson.fromJson(line, StreamingReportPlugin.ScenarioResult.class);
+                } catch (JsonSyntaxException e) {
+                    logger.warn("Skipping a damaged line in '{}'", resultsFile);
+                    continue;
+                }
+                if (scenario != null) {
+                    handler.handle(scenario);
+                }
+            }
+        }
+    }
+
+    private static String formatDuration(long millis) {
+        return millis < 1000 ? millis + " ms" : String.format(Locale.ROOT, "%.1f s", millis / 1000.0);
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private interface ScenarioHandler {
+        void handle(StreamingReportPlugin.ScenarioResult scenario) throws IOException;
+    }
+}
@@ -0,0 +1,301 @@
+package com.fnb_ptaf.report;
+
+import com.fnb_ptaf.utils.BrowserMatrix;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.google.gson.Gson;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EmbedEvent;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Result;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.WriteEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The StreamingReportPlugin writes the report of a run while it runs, for suites too large for
+ * report models kept in memory until the end. Every scenario is appended to
+ * {@code results.jsonl} in the report directory as one JSON line as soon as it finishes, and every
+ * attachment (screenshots, traces, performance data) is written to {@code artifacts/} the moment it
+ * is attached and referenced from the line by its path. Files attached by reference, as
+ * {@code text/uri-list} (traces), are hard-linked into {@code artifacts/}, or copied where links are not
+ * supported, rather than read through the event. Only the scenarios currently running are
+ * held in memory, so heap use depends on the number of workers, not on the size of the suite, and a
+ * run that dies part-way leaves the results of every finished scenario on disk.
+ *
+ * <p>When the run finishes, {@link StreamingReportBuilder} turns the lines into {@code index.html};
+ * it can also be run on its own to build the report of a run that did not finish. Register it with
+ * {@code @CucumberOptions(plugin = "com.fnb_ptaf.report.StreamingReportPlugin")} in place of the
+ * Extent adapter. Configuration keys:
+ * <ul>
+ *     <li>{@code report.dir} - report directory (default {@code target/ptaf-report})</li>
+ *     <li>{@code report.append} - keep the results of earlier runs in the directory, e.g. for runs
+ *     split over several JVMs (default false)</li>
+ * </ul>
+ */
+public class StreamingReportPlugin implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingReportPlugin.class);
+
+    static final String RESULTS_FILE = "results.jsonl";
+    static final String ARTIFACTS_DIR = "artifacts";
+    private static final String URI_LIST = "text/uri-list";
+
+    private static final Map<String, String> EXTENSIONS = new HashMap<>();
+
+    static {
+        EXTENSIONS.put("image/png", "png");
+        EXTENSIONS.put("image/jpeg", "jpg");
+        EXTENSIONS.put("image/gif", "gif");
+        EXTENSIONS.put("application/json", "json");
+        EXTENSIONS.put("text/plain", "txt");
+        EXTENSIONS.put("text/html", "html");
+        EXTENSIONS.put("application/zip", "zip");
+        EXTENSIONS.put("video/webm", "webm");
+    }
+
+    private final Path reportDir = Paths.get(ConfigurationProperties.getString("report.dir", "target/ptaf-report"));
+    private final boolean append = ConfigurationProperties.getBoolean("report.append", false);
+    private final Gson gson = new Gson();
+    private final Map<UUID, ScenarioResult> running = new ConcurrentHashMap<>();
+    private final AtomicInteger artifactIndex = new AtomicInteger();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private BufferedWriter results;
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> open());
+        publisher.registerHandlerFor(TestCaseStarted.class, this::onTestCaseStarted);
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(EmbedEvent.class, this::onEmbed);
+        publisher.registerHandlerFor(WriteEvent.class, this::onWrite);
+        publisher.registerHandlerFor(TestCaseFinished.class, this::onTestCaseFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> close());
+    }
+
+    private synchronized void open() {
+        try {
+            Files.createDirectories(reportDir.resolve(ARTIFACTS_DIR));
+            StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            results = Files.newBufferedWriter(reportDir.resolve(RESULTS_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        } catch (IOException e) {
+            logger.error("Failed to open the streaming report in '{}'", reportDir, e);
+        }
+    }
+
+    private void onTestCaseStarted(TestCaseStarted event) {
+        TestCase testCase = event.getTestCase();
+        ScenarioResult scenario = new ScenarioResult();
+        scenario.feature = testCase.getUri().toString();
+        scenario.name = testCase.getName();
+        scenario.line = testCase.getLocation().getLine();
+        scenario.tags = testCase.getTags();
+        // Event handlers run on the scenario's thread, which has the scenario's browser selected
+        scenario.browser = BrowserMatrix.current().name().toLowerCase(Locale.ROOT);
+        scenario.startedAt = event.getInstant().toEpochMilli();
+        running.put(testCase.getId(), scenario);
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        ScenarioResult scenario = running.get(event.getTestCase().getId());
+        if (scenario == null || !(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        PickleStepTestStep testStep = (PickleStepTestStep) event.getTestStep();
+        StepResult step = new StepResult();
+        step.text = testStep.getStep().getKeyword() + testStep.getStep().getText();
+        step.status = event.getResult().getStatus().name();
+        step.durationMs = event.getResult().getDuration().toMillis();
+        step.error = errorMessage(event.getResult());
+        scenario.steps.add(step);
+    }
+
+    private void onEmbed(EmbedEvent event) {
+        ScenarioResult scenario = running.get(event.getTestCase().getId());
+        if (scenario == null) {
+            return;
+        }
+        if (URI_LIST.equals(event.getMediaType())) {
+            for (String uri : new String(event.getData(), StandardCharsets.UTF_8).split("\r?\n")) {
+                if (!uri.trim().isEmpty() && !uri.startsWith("#")) {
+                    addReference(scenario, event.getName(), uri.trim());
+                }
+            }
+            return;
+        }
+        String extension = EXTENSIONS.getOrDefault(event.getMediaType(), "bin");
+        String fileName = runId + "-" + artifactIndex.incrementAndGet() + "." + extension;
+        Path file = reportDir.resolve(ARTIFACTS_DIR).resolve(fileName);
+        try {
+            Files.write(file, event.getData());
+        } catch (IOException e) {
+            logger.error("Failed to write attachment '{}' of '{}'", event.getName(), scenario.name, e);
+            return;
+        }
+        addAttachment(scenario, event.getName(), event.getMediaType(), ARTIFACTS_DIR + "/" + fileName);
+    }
+
+    /**
+     * Adds a file attached by reference to the artifacts, linked where the file system allows it and
+     * copied otherwise. References that are not local files are kept as links.
+     */
+    private void addReference(ScenarioResult scenario, String name, String uri) {
+        Path source;
+        try {
+            source = Paths.get(URI.create(uri));
+        } catch (IllegalArgumentException | FileSystemNotFoundException e) {
+            addAttachment(scenario, name, null, uri);
+            return;
+        }
+        String sourceName = source.getFileName().toString();
+        String extension = sourceName.contains(".") ? sourceName.substring(sourceName.lastIndexOf('.') + 1) : "bin";
+        String fileName = runId + "-" + artifactIndex.incrementAndGet() + "." + extension;
+        Path file = reportDir.resolve(ARTIFACTS_DIR).resolve(fileName);
+        try {
+            try {
+                Files.createLink(file, source);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(source, file);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to add '{}' of '{}' to the artifacts, linking it in place", source, scenario.name, e);
+            addAttachment(scenario, name, null, uri);
+            return;
+        }
+        String mediaType = EXTENSIONS.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(extension))
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+        addAttachment(scenario, name, mediaType, ARTIFACTS_DIR + "/" + fileName);
+    }
+
+    private static void addAttachment(ScenarioResult scenario, String name, String mediaType, String path) {
+        Attachment attachment = new Attachment();
+        attachment.name = name;
+        attachment.mediaType = mediaType;
+        attachment.path = path;
+        attachment.step = scenario.steps.size();
+        scenario.attachments.add(attachment);
+    }
+
+    private void onWrite(WriteEvent event) {
+        ScenarioResult scenario = running.get(event.getTestCase().getId());
+        if (scenario != null) {
+            scenario.log.add(event.getText());
+        }
+    }
+
+    private void onTestCaseFinished(TestCaseFinished event) {
+        ScenarioResult scenario = running.remove(event.getTestCase().getId());
+        if (scenario == null) {
+            return;
+        }
+        scenario.status = event.getResult().getStatus().name();
+        scenario.durationMs = event.getResult().getDuration().toMillis();
+        if (scenario.steps.stream().noneMatch(step -> step.error != null)) {
+            // Failed in a hook; a failed step already carries the error
+            scenario.error = errorMessage(event.getResult());
+        }
+        String line = gson.toJson(scenario);
+        synchronized (this) {
+            if (results == null) {
+                return;
+            }
+            try {
+                // Flushed per scenario so a run that dies keeps everything finished so far
+                results.write(line);
+                results.newLine();
+                results.flush();
+            } catch (IOException e) {
+                logger.error("Failed to write the result of '{}' to the streaming report", scenario.name, e);
+            }
+        }
+    }
+
+    private synchronized void close() {
+        if (results == null) {
+            return;
+        }
+        try {
+            results.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the streaming report", e);
+        }
+        results = null;
+        try {
+            Path html = StreamingReportBuilder.build(reportDir);
+            logger.info("Report written to {}", html.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to build the HTML report in '{}'", reportDir, e);
+        }
+    }
+
+    private static String errorMessage(Result result) {
+        if (result.getError() == null) {
+            return null;
+        }
+        StringWriter stackTrace = new StringWriter();
+        result.getError().printStackTrace(new PrintWriter(stackTrace));
+        return stackTrace.toString();
+    }
+
+    /**
+     * The line written for a scenario; field names are the JSON keys read by the report builder.
+     */
+    static final class ScenarioResult {
+        String feature;
+        String name;
+        Integer line;
+        List<String> tags;
+        String browser;
+        long startedAt;
+        String status;
+        long durationMs;
+        String error;
+        List<StepResult> steps = new ArrayList<>();
+        List<Attachment> attachments = new ArrayList<>();
+        List<String> log = new ArrayList<>();
+    }
+
+    static final class StepResult {
+        String text;
+        String status;
+        long durationMs;
+        String error;
+    }
+
+    static final class Attachment {
+        String name;
+        String mediaType;
+        String path;
+        // Number of steps finished when the attachment was made
+        int step;
+    }
+}
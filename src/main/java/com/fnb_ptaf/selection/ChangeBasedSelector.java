@@ -0,0 +1,264 @@
+package com.fnb_ptaf.selection;
+
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The ChangeBasedSelector selects the scenarios affected by the changes since a git base ref, so a
+ * change to one page's YAML does not require the whole regression suite. It builds the
+ * {@link UsageIndex} of the features, compares the working tree, including files git does not track
+ * yet, with the base ref and selects:
+ * <ul>
+ *     <li>for a changed {@code element.key} entry of a YAML file under {@code elements/}, the scenarios
+ *     whose step arguments, glue or page classes refer to it (a changed {@code context} counts as every
+ *     key of its element)</li>
+ *     <li>for a changed class of {@code com.fnb_ptaf.pages}, the scenarios whose step definitions use it</li>
+ *     <li>for a changed glue class, the scenarios with steps defined in it</li>
+ *     <li>for a changed feature file, all of its scenarios</li>
+ * </ul>
+ * Changes the index cannot attribute (other YAML settings, other framework classes, the build file,
+ * and changed {@code element.key} entries no indexed scenario uses) select every scenario unless
+ * {@code selection.unmappedChanges} is {@code ignore}.
+ *
+ * <p>The selection is written in Cucumber's rerun format, so the run is started with
+ * {@code mvn test -Dcucumber.features=@target/selected-scenarios.txt}. Run the selector with
+ * {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.selection.ChangeBasedSelector
+ * -Dexec.args="<base ref> [<feature path>...]"}. Configuration keys:
+ * <ul>
+ *     <li>{@code selection.baseRef} - default base ref (default {@code origin/main})</li>
+ *     <li>{@code selection.features} - default feature paths (default {@code src/test/resources/features})</li>
+ *     <li>{@code selection.glue} - glue package (default {@code com.fnb_ptaf})</li>
+ *     <li>{@code selection.unmappedChanges} - {@code all} (default) or {@code ignore}</li>
+ *     <li>{@code selection.rerunFile} - selection (default {@code target/selected-scenarios.txt}); the
+ *     index is written next to it as {@code usage-index.json}</li>
+ * </ul>
+ */
+public class ChangeBasedSelector {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeBasedSelector.class);
+
+    private static final String PAGES_PATH = UsageIndex.PAGES_PACKAGE.replace('.', '/') + "/";
+
+    public static void main(String[] args) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        String baseRef = !arguments.isEmpty() ? arguments.remove(0) : ConfigurationProperties.getString("selection.baseRef", "origin/main");
+        List<String> features = !arguments.isEmpty() ? arguments : ConfigurationProperties.getList("selection.features");
+        if (features.isEmpty()) {
+            features = Collections.singletonList("src/test/resources/features");
+        }
+        boolean selectAllOnUnmapped = !"ignore".equalsIgnoreCase(ConfigurationProperties.getString("selection.unmappedChanges", "all"));
+        Path rerunFile = Paths.get(ConfigurationProperties.getString("selection.rerunFile", "target/selected-scenarios.txt"));
+
+        UsageIndex index = UsageIndex.build(ConfigurationProperties.getString("selection.glue", "com.fnb_ptaf"), features);
+        writeIndex(index, rerunFile.resolveSibling("usage-index.json"));
+
+        Set<String> changedElementKeys = new TreeSet<>();
+        Set<String> changedClasses = new TreeSet<>();
+        Set<String> changedFeatures = new TreeSet<>();
+        List<String> unmapped = new ArrayList<>();
+        // New files are not in the diff until they are added to the index
+        Set<String> changedFiles = new TreeSet<>(git("diff", "--name-only", baseRef));
+        changedFiles.addAll(git("ls-files", "--others", "--exclude-standard", "--full-name"));
+        for (String file : changedFiles) {
+            if (file.endsWith(".yml") && (file.startsWith("elements/") || file.contains("/elements/"))) {
+                unmapped.addAll(changedYamlKeys(baseRef, file, changedElementKeys));
+            } else if (file.endsWith(".feature")) {
+                changedFeatures.add(file);
+            } else if (file.endsWith(".java") && file.contains("/java/")) {
+                String className = file.substring(file.indexOf("/java/") + "/java/".length(), file.length() - ".java".length()).replace('/', '.');
+                changedClasses.add(className);
+                if (!file.contains(PAGES_PATH) && !isGlue(index, className)) {
+                    unmapped.add(file);
+                }
+            } else {
+                unmapped.add(file);
+            }
+        }
+        logger.info("Changes since {}: {} element key(s) {}, {} class(es) {}, {} feature(s)", baseRef,
+                changedElementKeys.size(), changedElementKeys, changedClasses.size(), changedClasses, changedFeatures.size());
+
+        // A changed entry no scenario is known to use may still be used in a way the index cannot see
+        for (String elementKey : changedElementKeys) {
+            if (index.scenarios().values().stream().noneMatch(usage -> usage.usesElementKey(elementKey))) {
+                unmapped.add("elements." + elementKey + " (no scenario known to use it)");
+            }
+        }
+        boolean selectAll = selectAllOnUnmapped && !unmapped.isEmpty();
+        if (selectAll) {
+            logger.info("Selecting every scenario for changes the index cannot attribute: {}", unmapped);
+        }
+        Map<String, Set<Integer>> selected = new TreeMap<>();
+        for (Map.Entry<String, UsageIndex.Usage> scenario : index.scenarios().entrySet()) {
+            String location = scenario.getKey();
+            String feature = location.substring(0, location.lastIndexOf(':'));
+            UsageIndex.Usage usage = scenario.getValue();
+            if (selectAll || changedFeatures.stream().anyMatch(feature::endsWith)
+                    || changedElementKeys.stream().anyMatch(usage::usesElementKey)
+                    || usage.usesAnyClass(changedClasses)) {
+                selected.computeIfAbsent(feature, key -> new TreeSet<>())
+                        .add(Integer.parseInt(location.substring(location.lastIndexOf(':') + 1)));
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<String, Set<Integer>> feature : selected.entrySet()) {
+            StringBuilder line = new StringBuilder(feature.getKey());
+            for (int scenarioLine : feature.getValue()) {
+                line.append(':').append(scenarioLine);
+                count++;
+            }
+            lines.add(line.toString());
+        }
+        if (rerunFile.getParent() != null) {
+            Files.createDirectories(rerunFile.getParent());
+        }
+        Files.write(rerunFile, lines, StandardCharsets.UTF_8);
+        logger.info("Selected {} of {} scenario(s), written to {}; run them with -Dcucumber.features=@{}",
+                count, index.scenarios().size(), rerunFile.toAbsolutePath(), rerunFile);
+    }
+
+    /**
+     * Collects the {@code element.key} entries that differ between the base ref and the working tree.
+     *
+     * @return The other settings of the file that differ, which the index cannot attribute
+     */
+    private static List<String> changedYamlKeys(String baseRef, String file, Set<String> changedElementKeys) throws IOException {
+        Map<String, Object> before = flatten(loadYaml(gitShow(baseRef + ":" + file)));
+        Path current = Paths.get(file);
+        Map<String, Object> after = flatten(loadYaml(Files.exists(current) ? new String(Files.readAllBytes(current), StandardCharsets.UTF_8) : null));
+        Set<String> keys = new HashSet<>(before.keySet());
+        keys.addAll(after.keySet());
+        List<String> unmapped = new ArrayList<>();
+        for (String key : keys) {
+            if (Objects.equals(before.get(key), after.get(key))) {
+                continue;
+            }
+            String[] parts = key.split("\\.");
+            if (parts.length >= 3 && "elements".equals(parts[0])) {
+                changedElementKeys.add(parts[1] + "." + ("context".equals(parts[2]) ? "*" : parts[2]));
+            } else {
+                unmapped.add(file + ": " + key);
+            }
+        }
+        return unmapped;
+    }
+
+    /**
+     * Flattens YAML maps to dot-separated keys; below {@code elements.<element>.<key>} values are
+     * compared whole, so a changed list of candidate locators is one changed key.
+     */
+    private static Map<String, Object> flatten(Map<?, ?> yaml) {
+        Map<String, Object> flat = new LinkedHashMap<>();
+        flatten("", yaml, flat);
+        return flat;
+    }
+
+    private static void flatten(String prefix, Object value, Map<String, Object> flat) {
+        boolean elementKeyLevel = prefix.startsWith("elements.") && prefix.split("\\.").length >= 3;
+        if (value instanceof Map && !elementKeyLevel) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                flatten(prefix.isEmpty() ? String.valueOf(entry.getKey()) : prefix + "." + entry.getKey(), entry.getValue(), flat);
+            }
+        } else if (!prefix.isEmpty()) {
+            flat.put(prefix, value);
+        }
+    }
+
+    private static Map<?, ?> loadYaml(String content) {
+        if (content == null) {
+            return Collections.emptyMap();
+        }
+        Object yaml = new Yaml().load(content);
+        return yaml instanceof Map ? (Map<?, ?>) yaml : Collections.emptyMap();
+    }
+
+    private static boolean isGlue(UsageIndex index, String className) {
+        for (UsageIndex.Usage usage : index.scenarios().values()) {
+            if (usage.usesAnyClass(Collections.singletonList(className))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeIndex(UsageIndex index, Path file) {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(index.scenarios(), writer);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write the usage index to '{}'", file, e);
+        }
+    }
+
+    /**
+     * @return The content of a file at a ref, or null if the file did not exist there
+     */
+    private static String gitShow(String refAndPath) throws IOException {
+        Process git = new ProcessBuilder("git", "show", refAndPath).redirectErrorStream(false).start();
+        String output = read(git.getInputStream());
+        return waitFor(git) == 0 ? output : null;
+    }
+
+    private static List<String> git(String... args) throws IOException {
+        List<String> command = new ArrayList<>(Collections.singletonList("git"));
+        command.addAll(Arrays.asList(args));
+        Process git = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = read(git.getInputStream());
+        if (waitFor(git) != 0) {
+            throw new IllegalStateException("'" + String.join(" ", command) + "' failed: " + output.trim());
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            if (!line.trim().isEmpty()) {
+                lines.add(line.trim());
+            }
+        }
+        return lines;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static int waitFor(Process process) throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for git", e);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.fnb_ptaf.selection;
+
+import com.fnb_ptaf.ElementLocator;
+import com.fnb_ptaf.elements.Elements;
+import com.fnb_ptaf.validation.DryRun;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestStepFinished;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The UsageIndex maps every scenario to what it depends on: the {@code element.key} entries its step
+ * arguments refer to, the step definitions its steps match and the classes of
+ * {@code com.fnb_ptaf.pages} those step definitions use. It is built without a browser: Cucumber runs
+ * the features with {@code --dry-run} (no hooks, no step bodies) and this class, registered as a
+ * plugin, records the step definition and arguments of every step; the page classes are then found
+ * in the source of each glue class and, transitively, of each page class.
+ *
+ * <p>Element entries are found in two places. Arguments are read by the conventions of the step
+ * definitions: an argument naming a registered element followed by one of its keys is an
+ * {@code element.key} entry, an element name alone counts as all of its keys. The sources of the glue
+ * and page classes a scenario uses are scanned for generated constants ({@code Elements.Login.SUBMIT})
+ * and for string literal pairs naming a registered entry ({@code ("Login", "submit")}); those entries
+ * count for every scenario using the class.
+ *
+ * <p>Building fails if the dry run fails or finds no scenarios, so a wrong feature path or glue
+ * package cannot produce an empty selection.
+ */
+public class UsageIndex implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(UsageIndex.class);
+
+    static final String PAGES_PACKAGE = "com.fnb_ptaf.pages";
+    private static final List<Path> SOURCE_ROOTS = Arrays.asList(Paths.get("src/main/java"), Paths.get("src/test/java"));
+    private static final URI workingDirectory = Paths.get("").toAbsolutePath().toUri();
+    private static final Pattern GENERATED_CONSTANT = Pattern.compile("\\bElements\\.(\\w+)\\.(\\w+)");
+    private static final Pattern LITERAL_PAIR = Pattern.compile("\"([^\"\\\\]+)\"(?=\\s*,\\s*\"([^\"\\\\]+)\")");
+
+    // Scenarios of the dry run in progress, by feature file and line
+    private static final Map<String, Usage> collected = new ConcurrentHashMap<>();
+
+    private final Map<String, Usage> scenarios;
+
+    private UsageIndex(Map<String, Usage> scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * Public for Cucumber, which creates the plugin; use {@link #build} to build an index.
+     */
+    public UsageIndex() {
+        this(Collections.emptyMap());
+    }
+
+    /**
+     * Builds the index of the given features.
+     *
+     * @param glue     The glue package of the step definitions
+     * @param features Feature files or directories
+     * @return The index
+     * @throws IllegalStateException if the dry run fails or finds no scenarios
+     */
+    static UsageIndex build(String glue, List<String> features) {
+        collected.clear();
+        byte status = DryRun.run(glue, UsageIndex.class, features);
+        if (status != 0) {
+            throw new IllegalStateException("The dry run of " + features + " failed with status " + status);
+        }
+        if (collected.isEmpty()) {
+            throw new IllegalStateException("The dry run of " + features + " with glue '" + glue + "' found no scenarios");
+        }
+
+        Map<String, Set<String>> pagesByClass = new HashMap<>();
+        Map<String, Set<String>> elementKeysByClass = new HashMap<>();
+        Map<String, String> constants = generatedConstants();
+        Map<String, Usage> scenarios = new TreeMap<>(collected);
+        for (Usage usage : scenarios.values()) {
+            Set<String> classes = new TreeSet<>();
+            for (String stepDefinition : usage.stepDefinitions) {
+                classes.add(declaringClass(stepDefinition));
+                usage.pages.addAll(pagesByClass.computeIfAbsent(declaringClass(stepDefinition), UsageIndex::pagesUsedBy));
+            }
+            classes.addAll(usage.pages);
+            for (String className : classes) {
+                usage.elementKeys.addAll(elementKeysByClass.computeIfAbsent(className, name -> elementKeysIn(name, constants)));
+            }
+        }
+        logger.info("Usage index built for {} scenario(s)", scenarios.size());
+        return new UsageIndex(scenarios);
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        TestCase testCase = event.getTestCase();
+        Usage usage = collected.computeIfAbsent(workingDirectory.relativize(testCase.getUri()) + ":" + testCase.getLocation().getLine(),
+                location -> new Usage(testCase.getName()));
+        if (!(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+        if (step.getCodeLocation() == null) {
+            // Undefined step, nothing to depend on
+            return;
+        }
+        synchronized (usage) {
+            usage.stepDefinitions.add(step.getCodeLocation());
+            for (DryRun.StepArgument argument : DryRun.stepArguments(step.getDefinitionArgument())) {
+                if (!argument.isElement()) {
+                    continue;
+                }
+                String element = argument.getValue();
+                boolean isKey = argument.getKey() != null && DryRun.isKey(element, argument.getKey());
+                usage.elementKeys.add(element + "." + (isKey ? argument.getKey() : "*"));
+            }
+        }
+    }
+
+    /**
+     * @return The scenarios by feature file and line
+     */
+    Map<String, Usage> scenarios() {
+        return scenarios;
+    }
+
+    /**
+     * @return The class of a step definition's code location, e.g. {@code com.fnb_ptaf.steps.Steps}
+     */
+    static String declaringClass(String codeLocation) {
+        String method = codeLocation.contains("(") ? codeLocation.substring(0, codeLocation.indexOf('(')) : codeLocation;
+        return method.contains(".") ? method.substring(0, method.lastIndexOf('.')) : method;
+    }
+
+    /**
+     * Finds the page classes a class uses by their simple names in its source, following page
+     * classes that use other page classes.
+     */
+    private static Set<String> pagesUsedBy(String className) {
+        Set<String> pageClasses = pageClasses();
+        Set<String> used = new TreeSet<>();
+        List<String> pending = new ArrayList<>(Collections.singletonList(className));
+        while (!pending.isEmpty()) {
+            String source = source(pending.remove(pending.size() - 1));
+            if (source == null) {
+                continue;
+            }
+            for (String pageClass : pageClasses) {
+                String simpleName = pageClass.substring(pageClass.lastIndexOf('.') + 1);
+                if (!used.contains(pageClass) && Pattern.compile("\\b" + simpleName + "\\b").matcher(source).find()) {
+                    used.add(pageClass);
+                    pending.add(pageClass);
+                }
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Finds the {@code element.key} entries a class refers to in its source by generated constant or
+     * by a pair of string literals.
+     */
+    private static Set<String> elementKeysIn(String className, Map<String, String> constants) {
+        Set<String> keys = new TreeSet<>();
+        String source = source(className);
+        if (source == null) {
+            return keys;
+        }
+        Matcher constant = GENERATED_CONSTANT.matcher(source);
+        while (constant.find()) {
+            String elementKey = constants.get(constant.group(1) + "." + constant.group(2));
+            if (elementKey != null) {
+                keys.add(elementKey);
+            }
+        }
+        Matcher literals = LITERAL_PAIR.matcher(source);
+        while (literals.find()) {
+            String element = literals.group(1);
+            String key = literals.group(2);
+            if (DryRun.isKey(element, key)) {
+                keys.add(element + "." + key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return The {@code element.key} entry of each generated constant, by {@code Class.CONSTANT}
+     */
+    private static Map<String, String> generatedConstants() {
+        Map<String, String> constants = new HashMap<>();
+        for (Class<?> element : Elements.class.getDeclaredClasses()) {
+            for (Field field : element.getFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != ElementLocator.class) {
+                    continue;
+                }
+                try {
+                    ElementLocator locator = (ElementLocator) field.get(null);
+                    constants.put(element.getSimpleName() + "." + field.getName(), locator.getElement() + "." + locator.getKey());
+                } catch (IllegalAccessException e) {
+                    logger.warn("Failed to read generated constant {}.{}", element.getSimpleName(), field.getName(), e);
+                }
+            }
+        }
+        return constants;
+    }
+
+    private static Set<String> pageClasses() {
+        Set<String> classes = new TreeSet<>();
+        for (Path root : SOURCE_ROOTS) {
+            Path dir = root.resolve(PAGES_PACKAGE.replace('.', '/'));
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.java")) {
+                for (Path file : files) {
+                    String fileName = file.getFileName().toString();
+                    classes.add(PAGES_PACKAGE + "." + fileName.substring(0, fileName.length() - ".java".length()));
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to list page classes in '{}'", dir, e);
+            }
+        }
+        return classes;
+    }
+
+    private static String source(String className) {
+        // Nested classes live in the source of their top-level class
+        String topLevel = className.contains("$") ? className.substring(0, className.indexOf('$')) : className;
+        for (Path root : SOURCE_ROOTS) {
+            Path file = root.resolve(topLevel.replace('.', '/') + ".java");
+            if (Files.isRegularFile(file)) {
+                try {
+                    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    logger.warn("Failed to read '{}'", file, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What a scenario depends on.
+     */
+    static final class Usage {
+        final String name;
+        final Set<String> elementKeys = new TreeSet<>();
+        final Set<String> stepDefinitions = new TreeSet<>();
+        final Set<String> pages = new TreeSet<>();
+
+        Usage(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param elementKey An {@code element.key} entry, or {@code element.*} for every key of the element
+         * @return Whether the scenario uses the entry
+         */
+        boolean usesElementKey(String elementKey) {
+            String element = elementKey.substring(0, elementKey.indexOf('.') + 1);
+            if (elementKey.endsWith(".*")) {
+                return elementKeys.stream().anyMatch(used -> used.startsWith(element));
+            }
+            return elementKeys.contains(elementKey) || elementKeys.contains(element + "*");
+        }
+
+        boolean usesAnyClass(Collection<String> classNames) {
+            for (String className : classNames) {
+                if (pages.contains(className)) {
+                    return true;
+                }
+                for (String stepDefinition : stepDefinitions) {
+                    if (declaringClass(stepDefinition).equals(className)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.fnb_ptaf.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AdaptiveScheduler class limits how many scenarios (and therefore browser contexts) run at
+ * once, and adjusts that limit while the run progresses. The test runner is given a generous thread
+ * pool ({@code -Dptaf.threads}); each scenario acquires a slot in {@code Hooks.setUp} and releases it
+ * in {@code Hooks.tearDown}, so workers beyond the current limit simply wait for a slot.
+ *
+ * <p>The limit grows by one while the host has spare CPU and memory and scenarios are waiting, and
+ * shrinks by a quarter when CPU load is high, free memory is low or scenario latency degrades.
+ * Configuration keys:
+ * <ul>
+ *     <li>{@code scheduler.mode} - {@code fixed} (default, no limit) or {@code adaptive}</li>
+ *     <li>{@code scheduler.minWorkers} / {@code scheduler.maxWorkers} - bounds of the limit
+ *     (default 1 and the number of processors)</li>
+ *     <li>{@code scheduler.initialWorkers} - limit at the start of the run (default half the maximum)</li>
+ *     <li>{@code scheduler.cpuHigh} / {@code scheduler.cpuLow} - system CPU load (0..1) above which the
+ *     limit shrinks and below which it may grow (default 0.85 and 0.6)</li>
+ *     <li>{@code scheduler.minFreeMemoryMb} - free memory below which the limit shrinks (default 1024)</li>
+ *     <li>{@code scheduler.latencyFactor} - shrink when recent scenarios take this many times longer
+ *     than their own fastest run so far (default 2.0)</li>
+ *     <li>{@code scheduler.adjustIntervalMs} - interval between adjustments (default 5000)</li>
+ * </ul>
+ * Scenarios differ widely in length, so the latency signal compares each scenario with its own
+ * baseline: the fastest duration observed for the same scenario in this JVM. It engages for
+ * scenarios that run more than once, as in matrix, load and rerun runs; the first run of a scenario
+ * only sets its baseline. The chosen limit is recorded over time as {@code scheduler.concurrency}
+ * in the run metrics.
+ */
+public class AdaptiveScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveScheduler.class);
+
+    private static final boolean enabled = "adaptive".equalsIgnoreCase(ConfigurationProperties.getString("scheduler.mode", "fixed"));
+    private static final int minWorkers = Math.max(1, ConfigurationProperties.getInt("scheduler.minWorkers", 1));
+    private static final int maxWorkers = Math.max(minWorkers,
+            ConfigurationProperties.getInt("scheduler.maxWorkers", Runtime.getRuntime().availableProcessors()));
+    private static final double cpuHigh = ConfigurationProperties.getDouble("scheduler.cpuHigh", 0.85);
+    private static final double cpuLow = ConfigurationProperties.getDouble("scheduler.cpuLow", 0.6);
+    private static final long minFreeMemoryMb = ConfigurationProperties.getLong("scheduler.minFreeMemoryMb", 1024);
+    private static final double latencyFactor = ConfigurationProperties.getDouble("scheduler.latencyFactor", 2.0);
+    private static final long adjustIntervalMs = ConfigurationProperties.getLong("scheduler.adjustIntervalMs", 5000);
+
+    // Weight of the newest scenario in the moving average of slowdowns
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private static final Object lock = new Object();
+    // Slot held by the scenario running on the current thread, if any
+    private static final ThreadLocal<Acquired> acquired = new ThreadLocal<>();
+    // Fastest duration observed per scenario, the baseline its later runs are compared with
+    private static final Map<String, Long> baselineMs = new ConcurrentHashMap<>();
+    private static int limit = Math.max(minWorkers, Math.min(maxWorkers,
+            ConfigurationProperties.getInt("scheduler.initialWorkers", maxWorkers / 2)));
+    private static int active;
+    private static int waiting;
+    // Moving average of scenario duration divided by the scenario's baseline
+    private static double slowdownAverage;
+
+    static {
+        if (enabled) {
+            ScheduledExecutorService controller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ptaf-adaptive-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            controller.scheduleAtFixedRate(AdaptiveScheduler::adjust, adjustIntervalMs, adjustIntervalMs, TimeUnit.MILLISECONDS);
+            RunMetrics.record("scheduler.concurrency", limit);
+            logger.info("Adaptive scheduling enabled: {} to {} concurrent scenarios", minWorkers, maxWorkers);
+        }
+    }
+
+    /**
+     * Blocks until the current thread may start a scenario.
+     *
+     * @param scenarioKey Identifies the scenario (e.g. its location and browser), so its duration is
+     *                    compared with earlier runs of the same scenario
+     */
+    public static void acquire(String scenarioKey) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            waiting++;
+            try {
+                while (active >= limit) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                waiting--;
+            }
+            active++;
+        }
+        acquired.set(new Acquired(scenarioKey, System.currentTimeMillis()));
+    }
+
+    /**
+     * Releases the slot acquired by the current thread, if it holds one, and feeds the scenario
+     * duration into the latency signal. Safe to call when no slot was acquired.
+     */
+    public static void release() {
+        Acquired slot = acquired.get();
+        if (slot == null) {
+            return;
+        }
+        acquired.remove();
+        long durationMs = Math.max(1, System.currentTimeMillis() - slot.startedAt);
+        long baseline = baselineMs.merge(slot.scenarioKey, durationMs, Math::min);
+        double slowdown = (double) durationMs / baseline;
+        synchronized (lock) {
+            active--;
+            slowdownAverage = slowdownAverage == 0 ? slowdown
+                    : LATENCY_SMOOTHING * slowdown + (1 - LATENCY_SMOOTHING) * slowdownAverage;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Samples the host and moves the limit up or down.
+     */
+    private static void adjust() {
+        double cpuLoad = systemCpuLoad();
+        long freeMemoryMb = freeMemoryMb();
+        synchronized (lock) {
+            boolean latencyDegraded = slowdownAverage > latencyFactor;
+            boolean overloaded = cpuLoad > cpuHigh || (freeMemoryMb >= 0 && freeMemoryMb < minFreeMemoryMb) || latencyDegraded;
+            int previous = limit;
+            if (overloaded) {
+                limit = Math.max(minWorkers, limit - Math.max(1, limit / 4));
+            } else if (waiting > 0 && cpuLoad >= 0 && cpuLoad < cpuLow) {
+                limit = Math.min(maxWorkers, limit + 1);
+            }
+            if (limit != previous) {
+                logger.info("Concurrency {} -> {} (cpu {}%, free memory {} MB, latency {}x baseline)", previous, limit,
+                        Math.round(cpuLoad * 100), freeMemoryMb, String.format("%.2f", slowdownAverage));
+                lock.notifyAll();
+            }
+            RunMetrics.record("scheduler.concurrency", limit);
+        }
+        RunMetrics.record("scheduler.cpuLoad", cpuLoad);
+        RunMetrics.record("scheduler.freeMemoryMb", freeMemoryMb);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static double systemCpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            double load = ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad();
+            if (load >= 0) {
+                return load;
+            }
+        }
+        // Fall back to the load average spread over the available processors
+        double loadAverage = os.getSystemLoadAverage();
+        return loadAverage >= 0 ? loadAverage / os.getAvailableProcessors() : -1;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long freeMemoryMb() {
+        // MemAvailable counts reclaimable page cache, which free physical memory does not
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/meminfo"))) {
+                if (line.startsWith("MemAvailable:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not on Linux; use the platform MXBean below
+        }
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getFreePhysicalMemorySize() / (1024 * 1024);
+        }
+        return -1;
+    }
+
+    /**
+     * A slot held by a running scenario.
+     */
+    private static class Acquired {
+        private final String scenarioKey;
+        private final long startedAt;
+
+        Acquired(String scenarioKey, long startedAt) {
+            this.scenarioKey = scenarioKey;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.fnb_ptaf.utils;
 
+import com.fnb_ptaf.GetElement;
+import com.fnb_ptaf.GetLocatorForType;
+import com.fnb_ptaf.GetTargetLocator;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.options.AriaRole;
 import com.microsoft.playwright.options.WaitForSelectorState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 import static com.microsoft.playwright.assertions.PlaywrightAssertions.assertThat;
 
 public class AssertionUtil {
@@ -38,6 +42,51 @@ public class AssertionUtil {
         }
     }
 
+    /**
+     * Asserts that a page is within the performance budget declared under {@code perf.budgets.<pageName>},
+     * e.g. that the 75th percentile of its LCP across runs is under 2500 ms. The current page's data is
+     * collected first and counts as one more sample when the page matches the budget, so the assertion
+     * also works on the first run, before any history exists.
+     *
+     * @param pageName The name of the budget in the YAML configuration.
+     */
+    public void assertPerformanceBudget(String pageName) {
+        PerformanceCapture.collect(page);
+        List<String> violations = PerformanceCapture.checkBudget(pageName);
+        if (!violations.isEmpty()) {
+            throw new AssertionError("Performance budget of '" + pageName + "' exceeded: " + String.join("; ", violations));
+        }
+    }
+
+    /**
+     * Asserts that a full-page screenshot matches the named visual baseline.
+     *
+     * @param baselineName The name of the baseline; recorded from this capture if it does not exist yet.
+     */
+    public void assertPageMatchesBaseline(String baselineName) {
+        assertVisualMatch(VisualComparator.comparePage(page, baselineName), baselineName);
+    }
+
+    /**
+     * Asserts that a screenshot of an element matches the named visual baseline.
+     *
+     * @param element      The name of the element as defined in the YAML configuration.
+     * @param key          The key to locate the element's selector.
+     * @param baselineName The name of the baseline; recorded from this capture if it does not exist yet.
+     */
+    public void assertElementMatchesBaseline(String element, String key, String baselineName) {
+        Locator targetLocator = GetTargetLocator.getTargetLocator(page, element, key);
+        waitForElementToBeDisplayed(targetLocator);
+        assertVisualMatch(VisualComparator.compareElement(targetLocator, baselineName), baselineName);
+    }
+
+    private void assertVisualMatch(VisualComparator.Result result, String baselineName) {
+        if (!result.isMatch()) {
+            throw new AssertionError("Screenshot does not match baseline '" + baselineName + "': " + result
+                    + (result.getDiffImage() != null ? ", diff written to " + result.getDiffImage().toAbsolutePath() : ""));
+        }
+    }
+
     /**
      * Asserts that an element is visible on the page.
      *
@@ -85,46 +134,7 @@ public class AssertionUtil {
      * @return True if the element's value matches the expected value, false otherwise.
      */
     private boolean doesElementValueMatch(String locatorType, String locator, String expectedValue) {
-        String actualValue;
-        switch (locatorType) {
-            case "XPATH":
-            case "CSS":
-            case "Tag":
-                actualValue = page.locator(locator).inputValue();
-                break;
-            case "Text":
-                actualValue = page.getByText(locator).inputValue();
-                break;
-            case "Placeholder":
-                actualValue = page.getByPlaceholder(locator).inputValue();
-                break;
-            case "Label":
-                actualValue = page.getByLabel(locator).inputValue();
-                break;
-            case "TestId":
-                actualValue = page.getByTestId(locator).inputValue();
-                break;
-            case "Id":
-                actualValue = page.locator("#" + locator).inputValue();
-                break;
-            case "Name":
-                actualValue = page.locator("[name='" + locator + "']").inputValue();
-                break;
-            case "Class":
-                actualValue = page.locator("." + locator).inputValue();
-                break;
-            case "Role":
-                actualValue = page.getByRole(AriaRole.valueOf(locator)).inputValue();
-                break;
-            case "AltText":
-                actualValue = page.getByAltText(locator).inputValue();
-                break;
-            case "Title":
-                actualValue = page.getByTitle(locator).inputValue();
-                break;
-            default:
-                throw new IllegalArgumentException("Unknown locator type: " + locatorType);
-        }
+        String actualValue = getLocatorByType(locatorType, locator).inputValue();
         return actualValue.equals(expectedValue);
     }
 
@@ -137,7 +147,7 @@ public class AssertionUtil {
      */
     private String getElement(String element, String key) {
         try {
-            return (String) YamlReader.get("elements." + element + "." + key);
+            return GetElement.getElement(element, key);
         } catch (Exception e) {
             logger.error("Failed to retrieve selector for element '{}'", element + key, e);
             throw e;
@@ -152,34 +162,7 @@ public class AssertionUtil {
      * @return The text content of the element.
      */
     private String getElementText(String locatorType, String locator) {
-        switch (locatorType) {
-            case "XPATH":
-            case "CSS":
-            case "Tag":
-                return page.locator(locator).innerText();
-            case "Text":
-                return page.getByText(locator).innerText();
-            case "Placeholder":
-                return page.getByPlaceholder(locator).innerText();
-            case "Label":
-                return page.getByLabel(locator).innerText();
-            case "TestId":
-                return page.getByTestId(locator).innerText();
-            case "Id":
-                return page.locator("#" + locator).innerText();
-            case "Name":
-                return page.locator("[name='" + locator + "']").innerText();
-            case "Class":
-                return page.locator("." + locator).innerText();
-            case "Role":
-                return page.getByRole(AriaRole.valueOf(locator)).innerText();
-            case "AltText":
-                return page.getByAltText(locator).innerText();
-            case "Title":
-                return page.getByTitle(locator).innerText();
-            default:
-                throw new IllegalArgumentException("Unknown locator type: " + locatorType);
-        }
+        return getLocatorByType(locatorType, locator).innerText();
     }
 
     /**
@@ -188,46 +171,10 @@ public class AssertionUtil {
      * @param locatorType The type of locator (e.g., XPATH, CSS).
      * @param locator     The locator string used to identify the element.
      * @return The Locator object.
+     * @throws IllegalArgumentException if the locator type is unknown.
      */
     private Locator getLocatorByType(String locatorType, String locator) {
-        switch (locatorType) {
-            case "XPATH":
-            case "CSS":
-            case "Tag":
-                return page.locator(locator);
-            case "Text":
-                return page.getByText(locator);
-            case "Button":
-                return page.getByRole(AriaRole.BUTTON, new Page.GetByRoleOptions().setName(locator));
-            case "LinkText":
-                return page.getByRole(AriaRole.LINK, new Page.GetByRoleOptions().setName(locator));
-            case "Link":
-                return page.getByRole(AriaRole.LINK, new Page.GetByRoleOptions().setName(locator).setExact(true));
-            case "Heading":
-                return page.getByRole(AriaRole.HEADING, new Page.GetByRoleOptions().setName(locator));
-            case "Heading1":
-                return page.getByRole(AriaRole.HEADING, new Page.GetByRoleOptions().setName(locator).setExact(true));
-            case "Role":
-                return page.getByRole(AriaRole.valueOf(locator));
-            case "AltText":
-                return page.getByAltText(locator);
-            case "Title":
-                return page.getByTitle(locator);
-            case "Placeholder":
-                return page.getByPlaceholder(locator);
-            case "Label":
-                return page.getByLabel(locator);
-            case "TestId":
-                return page.getByTestId(locator);
-            case "Id":
-                return page.locator("#" + locator);
-            case "Name":
-                return page.locator("[name='" + locator + "']");
-            case "Class":
-                return page.locator("." + locator);
-            default:
-                throw new IllegalArgumentException("Unknown locator type: " + locatorType);
-        }
+        return GetLocatorForType.getLocatorForType(locatorType, page, locator);
     }
 
     /**
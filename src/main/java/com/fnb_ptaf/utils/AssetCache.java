@@ -0,0 +1,415 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Route;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The AssetCache class serves static resources (JS bundles, CSS, fonts, images) of the application
+ * under test from a shared cache on local disk, so fresh browser contexts do not download them again
+ * for every scenario. Requests are intercepted with a context route; a cached response is served
+ * directly while it is fresh according to its {@code Cache-Control}, and revalidated with its
+ * {@code ETag} / {@code Last-Modified} validators once it is stale. Responses marked
+ * {@code no-store} or {@code private} are never cached.
+ *
+ * <p>Entries are written to a temporary file and moved into place, so concurrent workers (and
+ * concurrent runs sharing the directory) never see a partial entry. The cache is bounded in size
+ * and evicts the least recently used entries. The bound applies to the directory, not to one JVM:
+ * after storing an entry the size is recomputed from the files on disk under a lock file, and a
+ * hit touches the body file so recency is shared between runs too. Configuration keys:
+ * <ul>
+ *     <li>{@code assetCache.enabled} - install the cache on every context (default false)</li>
+ *     <li>{@code assetCache.patterns} - list of regular expressions matched against request URLs
+ *     (default scripts, stylesheets, fonts and images)</li>
+ *     <li>{@code assetCache.dir} - cache directory (default {@code .ptaf/asset-cache})</li>
+ *     <li>{@code assetCache.maxSizeMb} - maximum size of the cache (default 512)</li>
+ * </ul>
+ * Hits, misses, revalidations and bytes saved are reported as {@code assetCache.*} in the run metrics.
+ */
+public class AssetCache {
+    private static final Logger logger = LoggerFactory.getLogger(AssetCache.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("assetCache.enabled", false);
+    private static final Path cacheDir = Paths.get(ConfigurationProperties.getString("assetCache.dir", ".ptaf/asset-cache"));
+    private static final long maxSizeBytes = ConfigurationProperties.getLong("assetCache.maxSizeMb", 512) * 1024 * 1024;
+    private static final List<Pattern> patterns = new ArrayList<>();
+
+    private static final String DEFAULT_PATTERN = "\\.(js|mjs|css|woff2?|ttf|otf|eot|png|jpe?g|gif|svg|webp|ico)(\\?|$)";
+    private static final Pattern MAX_AGE = Pattern.compile("(?:s-)?max-age=(\\d+)");
+    // Headers that describe the transfer rather than the resource; the body is stored decoded
+    private static final Set<String> TRANSFER_HEADERS = new HashSet<>(Arrays.asList(
+            "content-length", "content-encoding", "transfer-encoding", "connection", "keep-alive", "set-cookie", "date"));
+
+    private static final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private static final Object evictionLock = new Object();
+    private static long lookups;
+    private static long hits;
+    private static long bytesSaved;
+
+    static {
+        List<String> configured = ConfigurationProperties.getList("assetCache.patterns");
+        for (String pattern : configured.isEmpty() ? Arrays.asList(DEFAULT_PATTERN) : configured) {
+            patterns.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+        }
+        if (enabled) {
+            loadIndex();
+            Runtime.getRuntime().addShutdownHook(new Thread(AssetCache::logSummary, "ptaf-asset-cache-summary"));
+        }
+    }
+
+    /**
+     * Installs the cache on a browser context. Does nothing unless {@code assetCache.enabled} is set.
+     *
+     * @param context The browser context of the scenario
+     */
+    public static void install(BrowserContext context) {
+        if (!enabled) {
+            return;
+        }
+        context.route(AssetCache::isCacheable, AssetCache::handle);
+    }
+
+    private static boolean isCacheable(String url) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(url).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void handle(Route route) {
+        if (!"GET".equals(route.request().method()) || route.request().headers().containsKey("range")) {
+            route.resume();
+            return;
+        }
+        String url = route.request().url();
+        String key = key(url);
+        try {
+            Entry entry = index.get(key);
+            if (entry != null && !url.equals(entry.url)) {
+                entry = null;
+            }
+            if (entry != null && !Files.isRegularFile(bodyPath(key))) {
+                // Evicted by another run sharing the directory
+                index.remove(key, entry);
+                entry = null;
+            }
+            if (entry != null && entry.isFresh()) {
+                fulfillFromCache(route, entry, key);
+                return;
+            }
+
+            Map<String, String> headers = new HashMap<>(route.request().headers());
+            if (entry != null) {
+                // Stale: ask the server whether the cached copy is still valid
+                if (entry.etag != null) {
+                    headers.put("if-none-match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    headers.put("if-modified-since", entry.lastModified);
+                }
+            }
+            APIResponse response = route.fetch(new Route.FetchOptions().setHeaders(headers));
+            if (entry != null && response.status() == 304) {
+                entry.storedAt = System.currentTimeMillis();
+                entry.maxAgeMillis = maxAgeMillis(response.headers().getOrDefault("cache-control", entry.cacheControl));
+                writeMeta(key, entry);
+                RunMetrics.increment("assetCache.revalidated", 1);
+                fulfillFromCache(route, entry, key);
+                return;
+            }
+
+            byte[] body = response.body();
+            countLookup(false, 0);
+            route.fulfill(new Route.FulfillOptions().setResponse(response));
+            store(key, url, response, body);
+        } catch (Exception e) {
+            logger.warn("Asset cache failed for '{}', loading it from the network", url, e);
+            try {
+                route.resume();
+            } catch (Exception resumeFailure) {
+                logger.debug("Failed to resume request '{}'", url, resumeFailure);
+            }
+        }
+    }
+
+    private static void fulfillFromCache(Route route, Entry entry, String key) throws IOException {
+        Path bodyPath = bodyPath(key);
+        byte[] body = Files.readAllBytes(bodyPath);
+        // The modification time of the body is the recency eviction goes by
+        Files.setLastModifiedTime(bodyPath, FileTime.fromMillis(System.currentTimeMillis()));
+        countLookup(true, body.length);
+        route.fulfill(new Route.FulfillOptions().setStatus(entry.status).setHeaders(entry.headers).setBodyBytes(body));
+    }
+
+    private static void store(String key, String url, APIResponse response, byte[] body) {
+        if (response.status() != 200) {
+            return;
+        }
+        Map<String, String> responseHeaders = response.headers();
+        String cacheControl = responseHeaders.getOrDefault("cache-control", "").toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || cacheControl.contains("private")) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.url = url;
+        entry.status = response.status();
+        entry.etag = responseHeaders.get("etag");
+        entry.lastModified = responseHeaders.get("last-modified");
+        entry.cacheControl = cacheControl;
+        entry.maxAgeMillis = maxAgeMillis(cacheControl);
+        if (entry.maxAgeMillis == 0 && entry.etag == null && entry.lastModified == null) {
+            // Could neither be served fresh nor revalidated
+            return;
+        }
+        entry.storedAt = System.currentTimeMillis();
+        entry.size = body.length;
+        for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+            if (!TRANSFER_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                entry.headers.put(header.getKey(), header.getValue());
+            }
+        }
+        try {
+            Files.createDirectories(cacheDir);
+            writeAtomically(bodyPath(key), body);
+            writeMeta(key, entry);
+        } catch (IOException e) {
+            logger.warn("Failed to store '{}' in the asset cache", url, e);
+            return;
+        }
+        index.put(key, entry);
+        synchronized (evictionLock) {
+            evict();
+        }
+    }
+
+    /**
+     * Removes least recently used entries until the cache directory fits its size limit. The size is
+     * taken from the files on disk under an exclusive lock on {@code .lock}, so runs sharing the
+     * directory see each other's entries and do not evict concurrently.
+     */
+    private static void evict() {
+        try (FileChannel channel = FileChannel.open(cacheDir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.lock();
+            try {
+                List<Path> bodies = new ArrayList<>();
+                Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+                long totalBytes = 0;
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, "*.body")) {
+                    for (Path body : files) {
+                        BasicFileAttributes attribute = Files.readAttributes(body, BasicFileAttributes.class);
+                        bodies.add(body);
+                        attributes.put(body, attribute);
+                        totalBytes += attribute.size();
+                    }
+                }
+                if (totalBytes <= maxSizeBytes) {
+                    return;
+                }
+                bodies.sort((a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+                for (Path body : bodies) {
+                    if (totalBytes <= maxSizeBytes) {
+                        break;
+                    }
+                    String key = body.getFileName().toString().replace(".body", "");
+                    Files.deleteIfExists(body);
+                    Files.deleteIfExists(metaPath(key));
+                    index.remove(key);
+                    totalBytes -= attributes.get(body).size();
+                    RunMetrics.increment("assetCache.evictions", 1);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to evict entries from the asset cache in '{}'", cacheDir, e);
+        }
+    }
+
+    private static void countLookup(boolean hit, long savedBytes) {
+        RunMetrics.increment(hit ? "assetCache.hits" : "assetCache.misses", 1);
+        if (hit) {
+            RunMetrics.increment("assetCache.bytesSaved", savedBytes);
+        }
+        synchronized (evictionLock) {
+            lookups++;
+            if (hit) {
+                hits++;
+                bytesSaved += savedBytes;
+            }
+        }
+    }
+
+    private static long maxAgeMillis(String cacheControl) {
+        if (cacheControl == null || cacheControl.contains("no-cache")) {
+            return 0;
+        }
+        Matcher matcher = MAX_AGE.matcher(cacheControl);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) * 1000 : 0;
+    }
+
+    private static void loadIndex() {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        long totalBytes = 0;
+        try (DirectoryStream<Path> metas = Files.newDirectoryStream(cacheDir, "*.meta")) {
+            for (Path meta : metas) {
+                String key = meta.getFileName().toString().replace(".meta", "");
+                Entry entry = readMeta(meta);
+                if (entry != null && Files.exists(bodyPath(key))) {
+                    index.put(key, entry);
+                    totalBytes += entry.size;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to load the asset cache index from '{}'", cacheDir, e);
+        }
+        logger.info("Asset cache: {} entries, {} MB in '{}'", index.size(), totalBytes / (1024 * 1024), cacheDir);
+    }
+
+    private static void writeMeta(String key, Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", entry.url);
+        properties.setProperty("status", String.valueOf(entry.status));
+        properties.setProperty("size", String.valueOf(entry.size));
+        properties.setProperty("storedAt", String.valueOf(entry.storedAt));
+        properties.setProperty("maxAgeMillis", String.valueOf(entry.maxAgeMillis));
+        properties.setProperty("cacheControl", entry.cacheControl);
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            properties.setProperty("lastModified", entry.lastModified);
+        }
+        for (Map.Entry<String, String> header : entry.headers.entrySet()) {
+            properties.setProperty("header." + header.getKey(), header.getValue());
+        }
+        Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        moveIntoPlace(temp, metaPath(key));
+    }
+
+    private static Entry readMeta(Path meta) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(meta)) {
+            properties.load(in);
+            Entry entry = new Entry();
+            entry.url = properties.getProperty("url");
+            entry.status = Integer.parseInt(properties.getProperty("status"));
+            entry.size = Long.parseLong(properties.getProperty("size"));
+            entry.storedAt = Long.parseLong(properties.getProperty("storedAt"));
+            entry.maxAgeMillis = Long.parseLong(properties.getProperty("maxAgeMillis"));
+            entry.cacheControl = properties.getProperty("cacheControl", "");
+            entry.etag = properties.getProperty("etag");
+            entry.lastModified = properties.getProperty("lastModified");
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith("header.")) {
+                    entry.headers.put(name.substring("header.".length()), properties.getProperty(name));
+                }
+            }
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Ignoring unreadable asset cache entry '{}'", meta, e);
+            return null;
+        }
+    }
+
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(cacheDir, target.getFileName().toString(), ".tmp");
+        Files.write(temp, content);
+        moveIntoPlace(temp, target);
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path bodyPath(String key) {
+        return cacheDir.resolve(key + ".body");
+    }
+
+    private static Path metaPath(String key) {
+        return cacheDir.resolve(key + ".meta");
+    }
+
+    private static String key(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void logSummary() {
+        synchronized (evictionLock) {
+            if (lookups > 0) {
+                logger.info("Asset cache hit rate {}% ({} of {} requests), {} KB saved", Math.round(100.0 * hits / lookups),
+                        hits, lookups, bytesSaved / 1024);
+            }
+        }
+    }
+
+    /**
+     * Metadata of a cached response; the body is stored next to it.
+     */
+    private static class Entry {
+        private final Map<String, String> headers = new HashMap<>();
+        private String url;
+        private int status;
+        private long size;
+        private String etag;
+        private String lastModified;
+        private String cacheControl = "";
+        private volatile long storedAt;
+        private volatile long maxAgeMillis;
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - storedAt < maxAgeMillis;
+        }
+    }
+}
@@ -3,17 +3,110 @@ package com.fnb_ptaf.utils;
 import com.microsoft.playwright.Browser;
 import com.microsoft.playwright.BrowserType;
 import com.microsoft.playwright.Playwright;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class BrowserFactory {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserFactory.class);
+
+    // Playwright instance and driver process id owning each browser created by this factory
+    private static final Map<Browser, Playwright> playwrights = new ConcurrentHashMap<>();
+    private static final Map<Browser, Long> driverPids = new ConcurrentHashMap<>();
+
+    // Playwright instance of each worker, shared by all browser types the worker runs, and the
+    // number of open browsers using it; Playwright objects must stay on the thread that created them
+    private static final ThreadLocal<Playwright> workerPlaywright = new ThreadLocal<>();
+    private static final ThreadLocal<Long> workerDriverPid = new ThreadLocal<>();
+    private static final Map<Playwright, Integer> openBrowsers = new ConcurrentHashMap<>();
+
+    static {
+        // Workers reuse their browsers across scenarios and end without closing them
+        Runtime.getRuntime().addShutdownHook(new Thread(BrowserFactory::closeAll, "ptaf-browser-close"));
+    }
 
     public enum BrowserTypeEnum {
         CHROME,
         FIREFOX,
-        WEBKIT
+        WEBKIT;
+
+        /**
+         * Parses a browser name from the configuration, e.g. {@code chrome}, {@code chromium},
+         * {@code firefox} or {@code webkit}.
+         *
+         * @param name The browser name, case-insensitive
+         * @return The browser type
+         */
+        public static BrowserTypeEnum fromName(String name) {
+            String normalized = name.trim().toUpperCase();
+            if ("CHROMIUM".equals(normalized)) {
+                return CHROME;
+            }
+            try {
+                return valueOf(normalized);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported browser type: " + name);
+            }
+        }
     }
 
     public static Browser createBrowser(BrowserTypeEnum browserTypeEnum) {
-        Playwright playwright = Playwright.create();
+        Playwright playwright = workerPlaywright.get();
+        if (playwright == null) {
+            long[] driverPid = new long[1];
+            playwright = createPlaywright(driverPid);
+            workerPlaywright.set(playwright);
+            workerDriverPid.set(driverPid[0]);
+        }
+        try {
+            return launch(browserTypeEnum, playwright, workerDriverPid.get());
+        } catch (RuntimeException e) {
+            // Do not keep a worker Playwright instance around that no browser uses
+            if (!openBrowsers.containsKey(playwright)) {
+                closePlaywright(playwright);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a browser with a Playwright instance of its own rather than the worker's. Such a
+     * browser can be prepared on one thread and handed over to another, as long as only one thread
+     * uses it at a time.
+     *
+     * @param browserTypeEnum The browser type
+     * @return The browser; close it with {@link #closeBrowser(Browser)}
+     */
+    public static Browser createStandaloneBrowser(BrowserTypeEnum browserTypeEnum) {
+        long[] driverPid = new long[1];
+        Playwright playwright = createPlaywright(driverPid);
+        try {
+            return launch(browserTypeEnum, playwright, driverPid[0]);
+        } catch (RuntimeException e) {
+            closePlaywright(playwright);
+            throw e;
+        }
+    }
+
+    private static Playwright createPlaywright(long[] driverPid) {
+        // Creating the Playwright instance starts a driver process; remember its id so the
+        // browser processes spawned underneath it can be found again through /proc.
+        synchronized (BrowserFactory.class) {
+            Set<Long> before = childPids();
+            Playwright playwright = Playwright.create();
+            driverPid[0] = childPids().stream().filter(pid -> !before.contains(pid)).findFirst().orElse(-1L);
+            return playwright;
+        }
+    }
+
+    private static Browser launch(BrowserTypeEnum browserTypeEnum, Playwright playwright, long driverPid) {
         BrowserType browserType;
         switch (browserTypeEnum) {
             case CHROME:
@@ -29,8 +122,93 @@ public class BrowserFactory {
                 throw new IllegalArgumentException("Unsupported browser type");
         }
 
-        // Configure the browser to run in headless mode
-        Browser browser = browserType.launch(new BrowserType.LaunchOptions().setHeadless(false));
+        Browser browser;
+        if (BrowserServerPool.isRemoteMode()) {
+            // Use a browser hosted by the least-loaded server of the remote fleet; on failure the
+            // caller decides whether the Playwright instance is still needed
+            browser = BrowserServerPool.connect(browserType);
+        } else {
+            // Configure the browser to run in headless mode; downloads are written straight into the
+            // scratch directory of DownloadVerifier instead of a temporary directory
+            browser = browserType.launch(new BrowserType.LaunchOptions().setHeadless(false)
+                    .setDownloadsPath(DownloadVerifier.downloadsPath()));
+        }
+        playwrights.put(browser, playwright);
+        driverPids.put(browser, driverPid);
+        openBrowsers.merge(playwright, 1, Integer::sum);
         return browser;
     }
+
+    /**
+     * Closes a browser created by this factory, and the Playwright instance that owns it once no
+     * other browser of the worker uses it. Must be called on the thread that created the browser.
+     *
+     * @param browser The browser to close
+     */
+    public static void closeBrowser(Browser browser) {
+        Playwright playwright = playwrights.remove(browser);
+        driverPids.remove(browser);
+        try {
+            browser.close();
+        } catch (Exception e) {
+            logger.warn("Failed to close browser cleanly", e);
+        }
+        if (playwright != null && openBrowsers.merge(playwright, -1, Integer::sum) <= 0) {
+            closePlaywright(playwright);
+        }
+    }
+
+    /**
+     * Closes every browser created by this factory that is still open, and the Playwright instances
+     * (driver processes) owning them. Runs when the JVM exits; call it earlier only once no thread
+     * uses its browsers any more, e.g. after the virtual users of a load test have ended.
+     */
+    public static void closeAll() {
+        Set<Playwright> instances = new HashSet<>(playwrights.values());
+        instances.addAll(openBrowsers.keySet());
+        List<Browser> browsers = new ArrayList<>(playwrights.keySet());
+        for (Browser browser : browsers) {
+            playwrights.remove(browser);
+            driverPids.remove(browser);
+            try {
+                browser.close();
+            } catch (Exception e) {
+                logger.debug("Failed to close browser cleanly", e);
+            }
+        }
+        for (Playwright playwright : instances) {
+            openBrowsers.remove(playwright);
+            try {
+                playwright.close();
+            } catch (Exception e) {
+                logger.debug("Failed to close Playwright cleanly", e);
+            }
+        }
+        if (!browsers.isEmpty()) {
+            logger.info("Closed {} browser(s) still open at the end of the run", browsers.size());
+        }
+    }
+
+    private static void closePlaywright(Playwright playwright) {
+        openBrowsers.remove(playwright);
+        if (workerPlaywright.get() == playwright) {
+            workerPlaywright.remove();
+            workerDriverPid.remove();
+        }
+        playwright.close();
+    }
+
+    /**
+     * Returns the process id of the Playwright driver that launched the given browser.
+     *
+     * @param browser The browser created by this factory
+     * @return The driver process id, or -1 if it is unknown
+     */
+    public static long getDriverPid(Browser browser) {
+        return driverPids.getOrDefault(browser, -1L);
+    }
+
+    private static Set<Long> childPids() {
+        return ProcessHandle.current().children().map(ProcessHandle::pid).collect(Collectors.toSet());
+    }
 }
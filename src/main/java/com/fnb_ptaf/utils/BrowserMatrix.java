@@ -0,0 +1,115 @@
+package com.fnb_ptaf.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The BrowserMatrix class decides which browser type each scenario runs against. Without a matrix,
+ * every scenario uses the browser configured under {@code browser} (default chrome). With a matrix,
+ * the runner crosses every scenario with every browser of {@code matrix.browsers} and runs the
+ * combinations in parallel, selecting the browser of the current combination with {@link #select};
+ * {@code Hooks.setUp} then reads it through {@link #current()}.
+ *
+ * <p>Results are grouped per browser in the run metrics as {@code matrix.<browser>.passed},
+ * {@code matrix.<browser>.failed} and {@code matrix.<browser>.scenarioMs}.
+ */
+public class BrowserMatrix {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserMatrix.class);
+
+    private static final BrowserFactory.BrowserTypeEnum defaultBrowser =
+            BrowserFactory.BrowserTypeEnum.fromName(ConfigurationProperties.getString("browser", "chrome"));
+    private static final List<BrowserFactory.BrowserTypeEnum> browsers;
+
+    private static final ThreadLocal<BrowserFactory.BrowserTypeEnum> selected = new ThreadLocal<>();
+    private static final Map<String, int[]> results = new TreeMap<>();
+
+    static {
+        List<BrowserFactory.BrowserTypeEnum> configured = new ArrayList<>();
+        for (String name : ConfigurationProperties.getList("matrix.browsers")) {
+            BrowserFactory.BrowserTypeEnum type = BrowserFactory.BrowserTypeEnum.fromName(name);
+            if (!configured.contains(type)) {
+                configured.add(type);
+            }
+        }
+        if (configured.isEmpty()) {
+            configured.add(defaultBrowser);
+        }
+        browsers = Collections.unmodifiableList(configured);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(BrowserMatrix::logSummary, "ptaf-matrix-summary"));
+    }
+
+    /**
+     * Returns the browsers every scenario runs against.
+     *
+     * @return The configured matrix, or the single default browser
+     */
+    public static List<BrowserFactory.BrowserTypeEnum> browsers() {
+        return browsers;
+    }
+
+    /**
+     * Returns true if scenarios run against more than one browser.
+     *
+     * @return True if a matrix is configured
+     */
+    public static boolean isMatrix() {
+        return browsers.size() > 1;
+    }
+
+    /**
+     * Selects the browser for the scenarios run next on the current thread.
+     *
+     * @param browserType The browser type
+     */
+    public static void select(BrowserFactory.BrowserTypeEnum browserType) {
+        selected.set(browserType);
+    }
+
+    /**
+     * Clears the browser selected for the current thread.
+     */
+    public static void clear() {
+        selected.remove();
+    }
+
+    /**
+     * Returns the browser the scenario on the current thread runs against.
+     *
+     * @return The selected browser, or the configured default
+     */
+    public static BrowserFactory.BrowserTypeEnum current() {
+        BrowserFactory.BrowserTypeEnum browserType = selected.get();
+        return browserType != null ? browserType : defaultBrowser;
+    }
+
+    /**
+     * Records the outcome of a scenario for the browser it ran against.
+     *
+     * @param browserType The browser the scenario ran against
+     * @param failed      Whether the scenario failed
+     * @param durationMs  The duration of the scenario
+     */
+    public static void recordResult(BrowserFactory.BrowserTypeEnum browserType, boolean failed, long durationMs) {
+        String name = browserType.name().toLowerCase();
+        RunMetrics.increment("matrix." + name + (failed ? ".failed" : ".passed"), 1);
+        RunMetrics.record("matrix." + name + ".scenarioMs", durationMs);
+        synchronized (results) {
+            results.computeIfAbsent(name, key -> new int[2])[failed ? 1 : 0]++;
+        }
+    }
+
+    private static void logSummary() {
+        synchronized (results) {
+            for (Map.Entry<String, int[]> entry : results.entrySet()) {
+                logger.info("{}: {} passed, {} failed", entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+}
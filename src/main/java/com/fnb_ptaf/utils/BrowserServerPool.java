@@ -0,0 +1,227 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.CLI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The BrowserServerPool class connects workers to a fleet of remote Playwright browser servers
+ * instead of launching browsers locally. Each new browser goes to the healthy server with the
+ * fewest active sessions; servers that refuse connections are taken out of rotation and probed
+ * in the background until they come back.
+ *
+ * <p>Configuration keys:
+ * <ul>
+ *     <li>{@code browserServers.mode} - {@code local} (default) or {@code remote}</li>
+ *     <li>{@code browserServers.endpoints} - list of web socket endpoints, e.g. {@code ws://agent-1:3000/}</li>
+ *     <li>{@code browserServers.maxSessionsPerServer} - upper bound of sessions per server (0 = unbounded)</li>
+ *     <li>{@code browserServers.connectTimeoutMs} - timeout of a single connection attempt (default 30000)</li>
+ *     <li>{@code browserServers.healthCheckIntervalMs} - interval of the background health probe (default 10000)</li>
+ * </ul>
+ */
+public class BrowserServerPool {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserServerPool.class);
+
+    private static final int maxSessionsPerServer = ConfigurationProperties.getInt("browserServers.maxSessionsPerServer", 0);
+    private static final long connectTimeoutMs = ConfigurationProperties.getLong("browserServers.connectTimeoutMs", 30000);
+    private static final long healthCheckIntervalMs = ConfigurationProperties.getLong("browserServers.healthCheckIntervalMs", 10000);
+
+    private static final List<Endpoint> endpoints = new ArrayList<>();
+    private static final Map<Browser, Endpoint> sessions = new ConcurrentHashMap<>();
+
+    static {
+        for (String url : ConfigurationProperties.getList("browserServers.endpoints")) {
+            endpoints.add(new Endpoint(url));
+        }
+        if (!endpoints.isEmpty()) {
+            ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ptaf-browser-server-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleAtFixedRate(BrowserServerPool::checkHealth, healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns true when browsers should be obtained from the remote server fleet.
+     *
+     * @return True if {@code browserServers.mode} is {@code remote}
+     */
+    public static boolean isRemoteMode() {
+        return "remote".equalsIgnoreCase(ConfigurationProperties.getString("browserServers.mode", "local"));
+    }
+
+    /**
+     * Connects to the least-loaded healthy browser server, failing over to the next one when a
+     * connection attempt is refused.
+     *
+     * @param browserType The browser type to request from the server
+     * @return A connected browser
+     * @throws IllegalStateException if no server accepts the connection
+     */
+    public static Browser connect(BrowserType browserType) {
+        List<Endpoint> candidates;
+        synchronized (endpoints) {
+            candidates = new ArrayList<>(endpoints);
+        }
+        candidates.removeIf(endpoint -> !endpoint.healthy
+                || (maxSessionsPerServer > 0 && endpoint.activeSessions.get() >= maxSessionsPerServer));
+        Collections.shuffle(candidates);
+        candidates.sort(Comparator.comparingInt(endpoint -> endpoint.activeSessions.get()));
+
+        for (Endpoint endpoint : candidates) {
+            // Reserve the slot before connecting so concurrent workers spread across servers
+            endpoint.activeSessions.incrementAndGet();
+            try {
+                Browser browser = browserType.connect(endpoint.url, new BrowserType.ConnectOptions().setTimeout(connectTimeoutMs));
+                sessions.put(browser, endpoint);
+                browser.onDisconnected(BrowserServerPool::release);
+                logger.info("Connected {} to browser server {} ({} active sessions)", browserType.name(), endpoint.url, endpoint.activeSessions.get());
+                RunMetrics.increment("browserServers." + endpoint.url + ".sessions", 1);
+                return browser;
+            } catch (Exception e) {
+                endpoint.activeSessions.decrementAndGet();
+                endpoint.healthy = false;
+                RunMetrics.increment("browserServers.failovers", 1);
+                logger.warn("Browser server {} is unavailable, trying the next one", endpoint.url, e);
+            }
+        }
+        throw new IllegalStateException("No healthy browser server available out of " + endpoints.size() + " configured");
+    }
+
+    /**
+     * Replaces the configured endpoints, e.g. to point tests at servers started on free ports. The
+     * background health probe only runs for endpoints configured in YAML.
+     *
+     * @param urls The web socket endpoints
+     */
+    static void setEndpoints(List<String> urls) {
+        synchronized (endpoints) {
+            endpoints.clear();
+            for (String url : urls) {
+                endpoints.add(new Endpoint(url));
+            }
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Releases the session slot held by a browser obtained from {@link #connect(BrowserType)}.
+     *
+     * @param browser The browser whose session ended
+     */
+    public static void release(Browser browser) {
+        Endpoint endpoint = sessions.remove(browser);
+        if (endpoint != null) {
+            endpoint.activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a local Playwright browser server through the public {@code com.microsoft.playwright.CLI}
+     * entry point, in a child JVM on the current class path. This is the local stand-in for a fleet
+     * member: point {@code browserServers.endpoints} at {@code ws://localhost:<port>/}.
+     *
+     * @param port The port the server listens on
+     * @return The server process; stop it with {@link #stopLocalServer(Process)}
+     * @throws IOException if the server process cannot be started
+     */
+    public static Process launchLocalServer(int port) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CLI.class.getName(), "run-server", "--port", String.valueOf(port));
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        Process process = processBuilder.start();
+
+        // Wait until the server accepts connections
+        long deadline = System.currentTimeMillis() + connectTimeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (isReachable(URI.create("ws://localhost:" + port + "/"))) {
+                return process;
+            }
+            if (!process.isAlive()) {
+                throw new IOException("Browser server exited with code " + process.exitValue());
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        stopLocalServer(process);
+        throw new IOException("Browser server did not start on port " + port);
+    }
+
+    /**
+     * Stops a server started with {@link #launchLocalServer(int)}, including the driver process the
+     * CLI runs underneath it.
+     *
+     * @param process The server process
+     */
+    public static void stopLocalServer(Process process) {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
+    }
+
+    /**
+     * Probes every configured server and brings recovered ones back into rotation.
+     */
+    private static void checkHealth() {
+        List<Endpoint> snapshot;
+        synchronized (endpoints) {
+            snapshot = new ArrayList<>(endpoints);
+        }
+        for (Endpoint endpoint : snapshot) {
+            boolean reachable = isReachable(URI.create(endpoint.url));
+            if (reachable != endpoint.healthy) {
+                logger.info("Browser server {} is now {}", endpoint.url, reachable ? "healthy" : "unhealthy");
+            }
+            endpoint.healthy = reachable;
+        }
+    }
+
+    private static boolean isReachable(URI uri) {
+        int port = uri.getPort() != -1 ? uri.getPort() : ("wss".equals(uri.getScheme()) ? 443 : 80);
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(uri.getHost(), port), (int) Math.min(connectTimeoutMs, 2000));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A browser server of the fleet and its current load.
+     */
+    private static class Endpoint {
+        private final String url;
+        private final AtomicInteger activeSessions = new AtomicInteger();
+        private volatile boolean healthy = true;
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+    }
+}
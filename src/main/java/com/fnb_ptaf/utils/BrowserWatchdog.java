@@ -0,0 +1,193 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BrowserWatchdog class keeps track of the resources used by each worker's browser and
+ * decides, between scenarios, when a browser should be recycled.
+ *
+ * <p>Resident memory of the browser process tree is sampled in the background from {@code /proc};
+ * the JS heap of Chromium pages is sampled when a scenario finishes. Configuration
+ * keys (all optional):
+ * <ul>
+ *     <li>{@code watchdog.enabled} - turns the watchdog on or off (default true)</li>
+ *     <li>{@code watchdog.maxScenariosPerBrowser} - recycle after this many scenarios (0 = never)</li>
+ *     <li>{@code watchdog.maxRssMb} - recycle when the browser processes use more resident memory (0 = off)</li>
+ *     <li>{@code watchdog.maxJsHeapMb} - recycle when the page JS heap grows beyond this (0 = off)</li>
+ *     <li>{@code watchdog.sampleIntervalMs} - interval of the background memory sampler (default 5000)</li>
+ * </ul>
+ */
+public class BrowserWatchdog {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserWatchdog.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("watchdog.enabled", true);
+    private static final int maxScenarios = ConfigurationProperties.getInt("watchdog.maxScenariosPerBrowser", 0);
+    private static final long maxRssMb = ConfigurationProperties.getLong("watchdog.maxRssMb", 0);
+    private static final long maxJsHeapMb = ConfigurationProperties.getLong("watchdog.maxJsHeapMb", 0);
+    private static final long sampleIntervalMs = ConfigurationProperties.getLong("watchdog.sampleIntervalMs", 5000);
+
+    private static final Map<Browser, BrowserStats> watched = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService sampler;
+
+    /**
+     * Starts watching a browser created for the current worker thread.
+     *
+     * @param browser The browser to watch
+     */
+    public static void watch(Browser browser) {
+        if (!enabled) {
+            return;
+        }
+        watched.put(browser, new BrowserStats(Thread.currentThread().getName(), BrowserFactory.getDriverPid(browser)));
+        startSampler();
+    }
+
+    /**
+     * Stops watching a browser, typically because it is about to be closed.
+     *
+     * @param browser The browser to forget
+     */
+    public static void unwatch(Browser browser) {
+        watched.remove(browser);
+    }
+
+    /**
+     * Called after each scenario, before its context is closed. Samples the JS heap of the page and
+     * decides whether the browser has to be recycled before the next scenario starts. This never
+     * throws, so a failing sample cannot fail the scenario that just ran.
+     *
+     * @param browser The browser used by the scenario
+     * @param page    The page used by the scenario
+     * @return True if the browser should be closed and replaced
+     */
+    public static boolean shouldRecycle(Browser browser, Page page) {
+        BrowserStats stats = watched.get(browser);
+        if (stats == null) {
+            return false;
+        }
+        stats.scenarios++;
+        try {
+            sampleJsHeap(page).ifPresent(heapMb -> {
+                stats.jsHeapMb = heapMb;
+                RunMetrics.record("watchdog." + stats.worker + ".jsHeapMb", heapMb);
+            });
+        } catch (Exception e) {
+            logger.debug("Failed to sample JS heap for worker '{}'", stats.worker, e);
+        }
+
+        String reason = null;
+        if (maxScenarios > 0 && stats.scenarios >= maxScenarios) {
+            reason = "scenario limit " + maxScenarios + " reached";
+        } else if (maxRssMb > 0 && stats.rssMb > maxRssMb) {
+            reason = "resident memory " + Math.round(stats.rssMb) + " MB above " + maxRssMb + " MB";
+        } else if (maxJsHeapMb > 0 && stats.jsHeapMb > maxJsHeapMb) {
+            reason = "JS heap " + Math.round(stats.jsHeapMb) + " MB above " + maxJsHeapMb + " MB";
+        }
+        if (reason == null) {
+            return false;
+        }
+        logger.info("Recycling browser of worker '{}' after {} scenarios: {}", stats.worker, stats.scenarios, reason);
+        RunMetrics.increment("watchdog.recycles", 1);
+        return true;
+    }
+
+    private static synchronized void startSampler() {
+        if (sampler != null) {
+            return;
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ptaf-browser-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(BrowserWatchdog::sampleResidentMemory, sampleIntervalMs, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Samples the resident memory of every watched browser. Runs on the sampler thread and only
+     * reads {@code /proc}, so it never touches the (single-threaded) Playwright objects.
+     */
+    private static void sampleResidentMemory() {
+        for (BrowserStats stats : watched.values()) {
+            if (stats.driverPid <= 0) {
+                continue;
+            }
+            Optional<ProcessHandle> driver = ProcessHandle.of(stats.driverPid);
+            if (!driver.isPresent()) {
+                continue;
+            }
+            long rssKb = driver.get().descendants().mapToLong(handle -> readRssKb(handle.pid())).sum();
+            if (rssKb > 0) {
+                stats.rssMb = rssKb / 1024.0;
+                RunMetrics.record("watchdog." + stats.worker + ".rssMb", stats.rssMb);
+            }
+        }
+    }
+
+    /**
+     * Reads the resident set size of a process from {@code /proc/<pid>/status}.
+     *
+     * @param pid The process id
+     * @return The resident set size in kB, or 0 if it cannot be read (e.g. not on Linux)
+     */
+    private static long readRssKb(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        try {
+            List<String> lines = Files.readAllLines(status);
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // The process may have exited between listing and reading
+        }
+        return 0;
+    }
+
+    /**
+     * Samples the used JS heap of a page. Chromium exposes the same JSHeapUsedSize value as the CDP
+     * Performance domain through {@code performance.memory}; other engines report nothing.
+     */
+    private static Optional<Double> sampleJsHeap(Page page) {
+        if (page == null || page.isClosed()) {
+            return Optional.empty();
+        }
+        Object usedBytes = page.evaluate("() => window.performance.memory ? performance.memory.usedJSHeapSize : null");
+        if (!(usedBytes instanceof Number)) {
+            return Optional.empty();
+        }
+        return Optional.of(((Number) usedBytes).doubleValue() / (1024 * 1024));
+    }
+
+    /**
+     * Resource usage of a single worker's browser.
+     */
+    private static class BrowserStats {
+        private final String worker;
+        private final long driverPid;
+        private volatile int scenarios;
+        private volatile double rssMb;
+        private volatile double jsHeapMb;
+
+        BrowserStats(String worker, long driverPid) {
+            this.worker = worker;
+            this.driverPid = driverPid;
+        }
+    }
+}
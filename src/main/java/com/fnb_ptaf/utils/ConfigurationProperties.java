@@ -1,5 +1,9 @@
 package com.fnb_ptaf.utils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 public class ConfigurationProperties {
 
     /**
@@ -22,4 +26,88 @@ public class ConfigurationProperties {
         // Retrieve and return the browser type from the YAML file
         return (String) YamlReader.get("browser");
     }
+
+    /**
+     * Retrieves a string property from the YAML configuration.
+     *
+     * @param key          The dot-separated key of the property
+     * @param defaultValue The value returned when the property is not configured
+     * @return The configured value as a string
+     */
+    public static String getString(String key, String defaultValue) {
+        Object value = YamlReader.getOrDefault(key, defaultValue);
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    /**
+     * Retrieves a boolean property from the YAML configuration.
+     *
+     * @param key          The dot-separated key of the property
+     * @param defaultValue The value returned when the property is not configured
+     * @return The configured value as a boolean
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(String.valueOf(YamlReader.getOrDefault(key, defaultValue)));
+    }
+
+    /**
+     * Retrieves a numeric property from the YAML configuration.
+     *
+     * @param key          The dot-separated key of the property
+     * @param defaultValue The value returned when the property is not configured
+     * @return The configured value as a long
+     */
+    public static long getLong(String key, long defaultValue) {
+        Object value = YamlReader.getOrDefault(key, defaultValue);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(String.valueOf(value).trim());
+    }
+
+    /**
+     * Retrieves an integer property from the YAML configuration.
+     *
+     * @param key          The dot-separated key of the property
+     * @param defaultValue The value returned when the property is not configured
+     * @return The configured value as an int
+     */
+    public static int getInt(String key, int defaultValue) {
+        return (int) getLong(key, defaultValue);
+    }
+
+    /**
+     * Retrieves a decimal property from the YAML configuration.
+     *
+     * @param key          The dot-separated key of the property
+     * @param defaultValue The value returned when the property is not configured
+     * @return The configured value as a double
+     */
+    public static double getDouble(String key, double defaultValue) {
+        Object value = YamlReader.getOrDefault(key, defaultValue);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(String.valueOf(value).trim());
+    }
+
+    /**
+     * Retrieves a list property from the YAML configuration. A single scalar value is returned
+     * as a one-element list so that short configurations stay readable.
+     *
+     * @param key The dot-separated key of the property
+     * @return The configured values as strings, or an empty list when the property is not configured
+     */
+    public static List<String> getList(String key) {
+        Object value = YamlReader.getOrDefault(key, null);
+        List<String> values = new ArrayList<>();
+        if (value instanceof Collection) {
+            for (Object item : (Collection<?>) value) {
+                values.add(String.valueOf(item));
+            }
+        } else if (value != null) {
+            values.add(String.valueOf(value));
+        }
+        return values;
+    }
 }
@@ -0,0 +1,559 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Download;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * The DownloadVerifier captures files downloaded by a scenario and checks their content without
+ * reading them onto the heap. Local browsers are launched with the scratch directory as their
+ * downloads path, so Playwright writes each download straight into it and the file is only renamed;
+ * a browser of the remote fleet streams the download over with {@code saveAs}. The file is then read
+ * through memory-mapped windows of the file, in a single pass that feeds the
+ * checksum and scans the bytes for records. Only the records an expectation has to look at (the
+ * header, and every row when rows are matched against patterns) are decoded, one at a time, so a
+ * CSV export of several hundred megabytes costs the same heap as a small one. A record longer than
+ * {@code download.maxRecordBytes}, usually the rest of the file after an unbalanced double quote, fails
+ * the verification instead of being buffered.
+ *
+ * <p>Verification runs on a background thread while the scenario carries on with its next steps.
+ * Hooks waits for the verifications of a scenario in {@code tearDown} and fails the scenario with
+ * their failures. Configuration keys:
+ * <ul>
+ *     <li>{@code download.dir} - scratch directory of downloads (default {@code target/downloads})</li>
+ *     <li>{@code download.keep} - keep downloads that passed verification (default false; failed
+ *     downloads are always kept)</li>
+ *     <li>{@code download.threads} - verification threads (default 2)</li>
+ *     <li>{@code download.timeoutMs} - how long to wait for a download to start (default 30000)</li>
+ *     <li>{@code download.maxRecordBytes} - longest record accepted (default 1048576)</li>
+ * </ul>
+ */
+public class DownloadVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadVerifier.class);
+
+    private static final Path scratchDir = Paths.get(ConfigurationProperties.getString("download.dir", "target/downloads"));
+    private static final boolean keep = ConfigurationProperties.getBoolean("download.keep", false);
+    private static final double timeoutMs = ConfigurationProperties.getLong("download.timeoutMs", 30000);
+    private static final long maxRecordBytes = ConfigurationProperties.getLong("download.maxRecordBytes", 1024 * 1024);
+
+    // Mapped window size; a mapping cannot exceed 2 GB and smaller windows are released sooner
+    private static final long WINDOW = 64L * 1024 * 1024;
+    private static final int MAX_REPORTED_ROWS = 5;
+
+    private static final AtomicInteger threadIndex = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, ConfigurationProperties.getInt("download.threads", 2)), runnable -> {
+                Thread thread = new Thread(runnable, "ptaf-download-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Verifications started by the scenario running on this thread
+    private static final ThreadLocal<List<Future<List<String>>>> pending = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * @return The directory local browsers are launched with as their downloads path
+     */
+    static Path downloadsPath() {
+        return scratchDir;
+    }
+
+    /**
+     * Runs an action that starts a download and saves the download to the scratch directory.
+     *
+     * @param page    The page the download starts from
+     * @param trigger The action that starts the download, e.g. a click
+     * @return The downloaded file
+     * @throws IllegalStateException if the download fails
+     */
+    public static Path download(Page page, Runnable trigger) {
+        long startedAt = System.currentTimeMillis();
+        Download download = page.waitForDownload(new Page.WaitForDownloadOptions().setTimeout(timeoutMs), trigger);
+        String failure = download.failure();
+        if (failure != null) {
+            throw new IllegalStateException("Download of '" + download.suggestedFilename() + "' failed: " + failure);
+        }
+        Path file = scratchDir.resolve(UUID.randomUUID().toString().substring(0, 8) + "-" + download.suggestedFilename());
+        try {
+            Files.createDirectories(scratchDir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create the download directory '" + scratchDir + "'", e);
+        }
+        if (!BrowserServerPool.isRemoteMode() && moveTo(download, file)) {
+            logger.debug("Renamed download '{}' in the scratch directory", download.suggestedFilename());
+        } else {
+            // The file is on the browser server, or could not be renamed; saveAs copies it over
+            download.saveAs(file);
+            // Playwright's own copy is not needed once the file is in the scratch directory
+            download.delete();
+        }
+        RunMetrics.record("download.saveMs", System.currentTimeMillis() - startedAt);
+        logger.info("Downloaded '{}' to {}", download.suggestedFilename(), file.toAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Renames the file a local browser wrote into the scratch directory, instead of copying it.
+     *
+     * @return Whether the file was moved
+     */
+    private static boolean moveTo(Download download, Path file) {
+        try {
+            Files.move(download.path(), file);
+            return true;
+        } catch (IOException | PlaywrightException e) {
+            logger.debug("Failed to rename download '{}', saving a copy instead", download.suggestedFilename(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Runs an action that starts a download, saves the download and verifies it in the background.
+     *
+     * @param page        The page the download starts from
+     * @param trigger     The action that starts the download, e.g. a click
+     * @param expectation What the downloaded file must satisfy
+     * @return The downloaded file
+     */
+    public static Path downloadAndVerify(Page page, Runnable trigger, Expectation expectation) {
+        Path file = download(page, trigger);
+        verifyAsync(file, expectation);
+        return file;
+    }
+
+    /**
+     * Verifies a file in the background; the outcome is collected by {@link #awaitVerifications()}
+     * at the end of the scenario.
+     *
+     * @param file        The file to verify
+     * @param expectation What the file must satisfy
+     */
+    public static void verifyAsync(Path file, Expectation expectation) {
+        pending.get().add(executor.submit(() -> verify(file, expectation)));
+    }
+
+    /**
+     * Waits for the verifications started by the current scenario.
+     *
+     * @return The failures of all of them, empty if they passed
+     */
+    public static List<String> awaitVerifications() {
+        List<Future<List<String>>> futures = pending.get();
+        pending.remove();
+        if (futures.isEmpty()) {
+            return Collections.emptyList();
+        }
+        long startedAt = System.currentTimeMillis();
+        List<String> failures = new ArrayList<>();
+        for (Future<List<String>> future : futures) {
+            try {
+                failures.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add("Interrupted while waiting for download verification");
+                break;
+            } catch (ExecutionException e) {
+                failures.add("Download verification failed: " + e.getCause());
+            }
+        }
+        // Time the scenario waited for verification it could not overlap with its steps
+        RunMetrics.record("download.awaitMs", System.currentTimeMillis() - startedAt);
+        return failures;
+    }
+
+    /**
+     * Verifies a file on the calling thread.
+     *
+     * @param file        The file to verify
+     * @param expectation What the file must satisfy
+     * @return The failures, empty if the file passed
+     */
+    public static List<String> verify(Path file, Expectation expectation) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        Scan scan = new Scan(file.getFileName().toString(), expectation);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            scan.checkSize(size);
+            for (long position = 0; position < size; position += WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+                scan.accept(window);
+            }
+        }
+        scan.finish();
+        RunMetrics.record("download.verifyMs", System.currentTimeMillis() - startedAt);
+        if (scan.failures.isEmpty()) {
+            logger.info("Download '{}' verified: {} record(s)", file.getFileName(), scan.records);
+            if (!keep) {
+                delete(file);
+            }
+        } else {
+            logger.error("Download '{}' failed verification: {}", file.toAbsolutePath(), scan.failures);
+        }
+        return scan.failures;
+    }
+
+    /**
+     * Deletes a verified file. On Windows a file cannot be deleted while a mapping of it is still
+     * open, and mapped buffers are only unmapped when they are garbage collected, so a failed
+     * deletion is logged and retried when the JVM exits instead of failing the verification.
+     */
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete verified download '{}', deleting it on exit: {}", file.toAbsolutePath(), e.toString());
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * What a downloaded file must satisfy. Rows are the records of the file, the header excluded when
+     * a header is expected; a record ends at a line break outside double quotes.
+     */
+    public static final class Expectation {
+        private String sha256;
+        private byte[] magic;
+        private long minBytes = -1;
+        private long rows = -1;
+        private long minRows = -1;
+        private List<String> header;
+        private char delimiter = ',';
+        private final List<Pattern> rowPatterns = new ArrayList<>();
+        private final List<Pattern> containedPatterns = new ArrayList<>();
+        private final Map<String, Pattern> fieldPatterns = new LinkedHashMap<>();
+
+        public static Expectation create() {
+            return new Expectation();
+        }
+
+        /**
+         * The SHA-256 checksum of the file, in hex.
+         */
+        public Expectation sha256(String sha256) {
+            this.sha256 = sha256.toLowerCase();
+            return this;
+        }
+
+        /**
+         * The bytes the file starts with, e.g. {@code %PDF-} for a PDF.
+         */
+        public Expectation startsWith(String magic) {
+            this.magic = magic.getBytes(StandardCharsets.ISO_8859_1);
+            return this;
+        }
+
+        public Expectation minBytes(long minBytes) {
+            this.minBytes = minBytes;
+            return this;
+        }
+
+        public Expectation rows(long rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        public Expectation minRows(long minRows) {
+            this.minRows = minRows;
+            return this;
+        }
+
+        /**
+         * The columns of the first record, in order.
+         */
+        public Expectation header(String... columns) {
+            this.header = Arrays.asList(columns);
+            return this;
+        }
+
+        public Expectation delimiter(char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /**
+         * A pattern every row must match as a whole.
+         */
+        public Expectation everyRowMatches(String regex) {
+            rowPatterns.add(Pattern.compile(regex));
+            return this;
+        }
+
+        /**
+         * A pattern found in at least one record.
+         */
+        public Expectation contains(String regex) {
+            containedPatterns.add(Pattern.compile(regex));
+            return this;
+        }
+
+        /**
+         * A pattern the value of a column must match as a whole in every row; requires a header.
+         */
+        public Expectation field(String column, String regex) {
+            fieldPatterns.put(column, Pattern.compile(regex));
+            return this;
+        }
+
+        private boolean scansRecords() {
+            return header != null || rows >= 0 || minRows >= 0 || decodesRows();
+        }
+
+        private boolean decodesRows() {
+            return !rowPatterns.isEmpty() || !containedPatterns.isEmpty() || !fieldPatterns.isEmpty();
+        }
+    }
+
+    /**
+     * A single pass over the mapped windows of a file.
+     */
+    private static final class Scan {
+        private final String name;
+        private final Expectation expectation;
+        private final MessageDigest digest;
+        private final List<String> failures = new ArrayList<>();
+        // Bytes of the record being read, only kept when the record is decoded
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final boolean[] found;
+        private final Map<String, Integer> failedRows = new LinkedHashMap<>();
+        private int[] fieldColumns;
+        private long records;
+        private boolean inQuotes;
+        private boolean recordHasContent;
+        private long recordStart;
+        private boolean recordTooLong;
+        private long offset;
+
+        Scan(String name, Expectation expectation) {
+            this.name = name;
+            this.expectation = expectation;
+            this.found = new boolean[expectation.containedPatterns.size()];
+            try {
+                this.digest = expectation.sha256 != null ? MessageDigest.getInstance("SHA-256") : null;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void checkSize(long size) {
+            if (expectation.minBytes >= 0 && size < expectation.minBytes) {
+                failures.add(name + ": expected at least " + expectation.minBytes + " bytes but has " + size);
+            }
+            if (expectation.magic != null && size < expectation.magic.length) {
+                failures.add(name + ": too short to start with '" + new String(expectation.magic, StandardCharsets.ISO_8859_1) + "'");
+            }
+        }
+
+        void accept(MappedByteBuffer window) {
+            if (digest != null) {
+                digest.update(window.duplicate());
+            }
+            if (offset == 0 && expectation.magic != null && window.limit() >= expectation.magic.length) {
+                byte[] start = new byte[expectation.magic.length];
+                window.duplicate().get(start);
+                if (!Arrays.equals(start, expectation.magic)) {
+                    failures.add(name + ": does not start with '" + new String(expectation.magic, StandardCharsets.ISO_8859_1) + "'");
+                }
+            }
+            if (!expectation.scansRecords()) {
+                // A checksum or size check only, e.g. of a PDF
+                offset += window.limit();
+                return;
+            }
+            int limit = window.limit();
+            for (int i = 0; i < limit; i++, offset++) {
+                byte b = window.get(i);
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    endRecord();
+                    continue;
+                }
+                if (b != '\r') {
+                    recordHasContent = true;
+                }
+                if (recordTooLong) {
+                    continue;
+                }
+                if (offset - recordStart >= maxRecordBytes) {
+                    // Usually an unbalanced quote, which would make the rest of the file one record
+                    recordTooLong = true;
+                    record.reset();
+                    failures.add(name + ": record " + (records + 1) + " at byte " + recordStart + " is longer than "
+                            + maxRecordBytes + " bytes" + (inQuotes ? ", probably an unbalanced double quote" : ""));
+                    continue;
+                }
+                if (needsRecordBytes()) {
+                    record.write(b);
+                }
+            }
+        }
+
+        /**
+         * The header is always decoded when expected; the other records only for row patterns.
+         */
+        private boolean needsRecordBytes() {
+            boolean isHeader = records == 0 && (expectation.header != null || !expectation.fieldPatterns.isEmpty());
+            return isHeader || expectation.decodesRows();
+        }
+
+        private void endRecord() {
+            if (recordHasContent) {
+                String text = needsRecordBytes() && !recordTooLong ? decode() : null;
+                records++;
+                if (text != null) {
+                    checkRecord(text);
+                }
+            }
+            record.reset();
+            recordHasContent = false;
+            recordTooLong = false;
+            recordStart = offset + 1;
+        }
+
+        private String decode() {
+            String text = new String(record.toByteArray(), StandardCharsets.UTF_8);
+            if (text.endsWith("\r")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            return text.startsWith("\uFEFF") ? text.substring(1) : text;
+        }
+
+        private void checkRecord(String text) {
+            boolean hasHeader = expectation.header != null || !expectation.fieldPatterns.isEmpty();
+            if (records == 1 && hasHeader) {
+                checkHeader(split(text));
+                return;
+            }
+            long row = hasHeader ? records - 1 : records;
+            for (Pattern pattern : expectation.rowPatterns) {
+                if (!pattern.matcher(text).matches()) {
+                    failRow("row does not match '" + pattern + "'", row, text);
+                }
+            }
+            for (int i = 0; i < found.length; i++) {
+                found[i] = found[i] || expectation.containedPatterns.get(i).matcher(text).find();
+            }
+            if (fieldColumns != null && !expectation.fieldPatterns.isEmpty()) {
+                List<String> fields = split(text);
+                int column = 0;
+                for (Map.Entry<String, Pattern> field : expectation.fieldPatterns.entrySet()) {
+                    int index = fieldColumns[column++];
+                    String value = index < fields.size() ? fields.get(index) : null;
+                    if (value == null || !field.getValue().matcher(value).matches()) {
+                        failRow("'" + field.getKey() + "' does not match '" + field.getValue() + "'", row, text);
+                    }
+                }
+            }
+        }
+
+        private void checkHeader(List<String> columns) {
+            if (expectation.header != null && !expectation.header.equals(columns)) {
+                failures.add(name + ": expected header " + expectation.header + " but was " + columns);
+            }
+            fieldColumns = new int[expectation.fieldPatterns.size()];
+            int column = 0;
+            for (String field : expectation.fieldPatterns.keySet()) {
+                fieldColumns[column] = columns.indexOf(field);
+                if (fieldColumns[column++] < 0) {
+                    failures.add(name + ": no column '" + field + "' in header " + columns);
+                    fieldColumns = null;
+                    return;
+                }
+            }
+        }
+
+        private void failRow(String reason, long row, String text) {
+            int count = failedRows.merge(reason, 1, Integer::sum);
+            if (count <= MAX_REPORTED_ROWS) {
+                failures.add(name + ": row " + row + ": " + reason + ": " + text);
+            }
+        }
+
+        /**
+         * Splits a record into fields; double quotes enclose fields and are escaped by doubling.
+         */
+        private List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    if (quoted && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = !quoted;
+                    }
+                } else if (c == expectation.delimiter && !quoted) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        void finish() {
+            if (expectation.scansRecords()) {
+                // The last record has no line break after it
+                endRecord();
+            }
+            if (digest != null) {
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(String.format("%02x", b));
+                }
+                if (!hex.toString().equals(expectation.sha256)) {
+                    failures.add(name + ": expected SHA-256 " + expectation.sha256 + " but was " + hex);
+                }
+            }
+            boolean hasHeader = expectation.header != null || !expectation.fieldPatterns.isEmpty();
+            long rows = hasHeader ? Math.max(0, records - 1) : records;
+            if (expectation.rows >= 0 && rows != expectation.rows) {
+                failures.add(name + ": expected " + expectation.rows + " rows but has " + rows);
+            }
+            if (expectation.minRows >= 0 && rows < expectation.minRows) {
+                failures.add(name + ": expected at least " + expectation.minRows + " rows but has " + rows);
+            }
+            for (int i = 0; i < found.length; i++) {
+                if (!found[i]) {
+                    failures.add(name + ": no record contains '" + expectation.containedPatterns.get(i) + "'");
+                }
+            }
+            failedRows.forEach((reason, count) -> {
+                if (count > MAX_REPORTED_ROWS) {
+                    failures.add(name + ": " + (count - MAX_REPORTED_ROWS) + " more row(s): " + reason);
+                }
+            });
+        }
+    }
+}
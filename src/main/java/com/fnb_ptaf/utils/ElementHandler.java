@@ -1,9 +1,13 @@
 package com.fnb_ptaf.utils;
 
+import com.fnb_ptaf.GetElement;
+import com.fnb_ptaf.GetContextScope;
+import com.fnb_ptaf.GetLocatorForType;
+import com.fnb_ptaf.LocatorScope;
+import com.fnb_ptaf.hooks.Hooks;
 import com.fnb_ptaf.pages.CommonMethods;
 import com.microsoft.playwright.Locator;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.options.AriaRole;
 import com.microsoft.playwright.options.WaitForSelectorState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +19,22 @@ public class ElementHandler {
     private Page page;
     private static final Logger logger = LoggerFactory.getLogger(CommonMethods.class);
 
+    /**
+     * Constructor to initialize the ElementHandler with the current scenario's Page instance.
+     */
+    public ElementHandler() {
+        this(Hooks.getPage());
+    }
+
+    /**
+     * Constructor to initialize the ElementHandler with a Page instance.
+     *
+     * @param page The Playwright Page instance
+     */
+    public ElementHandler(Page page) {
+        this.page = page;
+    }
+
     /**
      * Retrieves the CSS selector for a given element and key from the YAML configuration.
      *
@@ -24,7 +44,7 @@ public class ElementHandler {
      */
     public String getElement(String element, String key) {
         try {
-            return (String) YamlReader.get("elements." + element + "." + key);
+            return GetElement.getElement(element, key);
         } catch (Exception e) {
             logger.error("Failed to retrieve selector for element '{}'", element + key, e);
             throw e;
@@ -45,15 +65,7 @@ public class ElementHandler {
             String locatorType = getLocatorType(locatorValue);
             String actualLocator = getActualLocator(locatorValue);
 
-            Locator targetLocator;
-
-            switch (context) {
-                case "page":
-                    targetLocator = getLocatorForType(locatorType, page, actualLocator);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown context: " + context);
-            }
+            Locator targetLocator = GetLocatorForType.getLocatorForType(locatorType, getScope(context, element), actualLocator);
 
             waitForElementToBeDisplayed(targetLocator);
             return targetLocator.first().elementHandle();
@@ -70,14 +82,7 @@ public class ElementHandler {
             String locatorType = getLocatorType(locatorValue);
             String actualLocator = getActualLocator(locatorValue);
 
-            Locator targetLocator;
-            switch (context) {
-                case "page":
-                    targetLocator = getLocatorForType(locatorType, page, actualLocator);
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown context: " + context);
-            }
+            Locator targetLocator = GetLocatorForType.getLocatorForType(locatorType, getScope(context, element), actualLocator);
 
             waitForElementToBeDisplayed(targetLocator);
 
@@ -105,7 +110,7 @@ public class ElementHandler {
         try {
             com.microsoft.playwright.ElementHandle elementHandle = getElementHandle(context, element, locator);
             boolean isEnabled = elementHandle.isEnabled();
-            logger.info("Element '{}' is enabled: {}", element, isEnabled);
+            EventJournal.record(EventJournal.Event.IS_ENABLED, element, locator, isEnabled);
             return isEnabled;
         } catch (Exception e) {
             logger.error("Failed to check if element '{}' is enabled", element, e);
@@ -125,7 +130,7 @@ public class ElementHandler {
         try {
             com.microsoft.playwright.ElementHandle elementHandle = getElementHandle(context, element, locator);
             boolean isDisabled = !elementHandle.isEnabled();
-            logger.info("Element '{}' is disabled: {}", element, isDisabled);
+            EventJournal.record(EventJournal.Event.IS_DISABLED, element, locator, isDisabled);
             return isDisabled;
         } catch (Exception e) {
             logger.error("Failed to check if element '{}' is disabled", element, e);
@@ -145,7 +150,7 @@ public class ElementHandler {
         try {
             com.microsoft.playwright.ElementHandle elementHandle = getElementHandle(context, element, locator);
             boolean isChecked = elementHandle.isChecked();
-            logger.info("Element '{}' is checked: {}", element, isChecked);
+            EventJournal.record(EventJournal.Event.IS_CHECKED, element, locator, isChecked);
             return isChecked;
         } catch (Exception e) {
             logger.error("Failed to check if element '{}' is checked", element, e);
@@ -165,7 +170,7 @@ public class ElementHandler {
         try {
             com.microsoft.playwright.ElementHandle elementHandle = getElementHandle(context, element, locator);
             boolean isVisible = elementHandle.isVisible();
-            logger.info("Element '{}' is visible: {}", element, isVisible);
+            EventJournal.record(EventJournal.Event.IS_VISIBLE, element, locator, isVisible);
             return isVisible;
         } catch (Exception e) {
             logger.error("Failed to check if element '{}' is visible", element, e);
@@ -185,7 +190,7 @@ public class ElementHandler {
         try {
             com.microsoft.playwright.ElementHandle elementHandle = getElementHandle(context, element, locator);
             boolean isHidden = elementHandle.isHidden();
-            logger.info("Element '{}' is hidden: {}", element, isHidden);
+            EventJournal.record(EventJournal.Event.IS_HIDDEN, element, locator, isHidden);
             return isHidden;
         } catch (Exception e) {
             logger.error("Failed to check if element '{}' is hidden", element, e);
@@ -218,51 +223,19 @@ public class ElementHandler {
     }
 
     /**
-     * Determines and returns the appropriate Locator based on the specified locator type.
-     * This method is designed for use in page contexts and supports various locator types,
-     * such as XPATH, CSS, Role, and others.
+     * Resolves the scope an element is located in. The {@code page} context uses the element's own
+     * {@code context} entry from the YAML configuration (or the page itself if it has none); any
+     * other value is taken as a context path such as {@code frame:payments>frame:card}.
      *
-     * @param locatorType The type of locator (e.g., XPATH, CSS).
-     * @param page        The Page object in which to locate the element.
-     * @param locator     The locator string used to identify the element.
-     * @return The appropriate Locator for the specified element.
-     * @throws IllegalArgumentException if the locator type is unknown.
+     * @param context The context in which the element is located (e.g., page, frame path).
+     * @param element The name of the element as defined in the YAML configuration.
+     * @return The scope in which to locate the element.
      */
-    private Locator getLocatorForType(String locatorType, Page page, String locator) {
-        switch (locatorType) {
-            case "XPATH":
-            case "CSS":
-            case "Tag":
-                return page.locator(locator);
-            case "Button":
-                return page.getByRole(AriaRole.BUTTON, new Page.GetByRoleOptions().setName(locator));
-            case "LinkText":
-                return page.getByRole(AriaRole.LINK, new Page.GetByRoleOptions().setName(locator));
-            case "Heading":
-                return page.getByRole(AriaRole.HEADING, new Page.GetByRoleOptions().setName(locator));
-            case "Text":
-                return page.getByText(locator);
-            case "Role":
-                return page.getByRole(AriaRole.valueOf(locator));
-            case "AltText":
-                return page.getByAltText(locator);
-            case "Title":
-                return page.getByTitle(locator);
-            case "Placeholder":
-                return page.getByPlaceholder(locator);
-            case "Label":
-                return page.getByLabel(locator);
-            case "TestId":
-                return page.getByTestId(locator);
-            case "Id":
-                return page.locator("#" + locator);
-            case "Name":
-                return page.locator("[name='" + locator + "']");
-            case "Class":
-                return page.locator("." + locator);
-            default:
-                throw new IllegalArgumentException("Unknown locator type: " + locatorType);
+    private LocatorScope getScope(String context, String element) {
+        if ("page".equals(context)) {
+            return GetContextScope.getElementScope(page, element);
         }
+        return GetContextScope.getContextScope(page, context);
     }
 
     /**
@@ -0,0 +1,228 @@
+package com.fnb_ptaf.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The EventJournal records what the workers do on their hot paths (actions, waits, element checks)
+ * without the cost of synchronous logging. A worker writes each event into a ring buffer of its own:
+ * a few array stores of primitives and references to strings the caller already holds, with no
+ * formatting, no locking and no allocation. A background thread drains all buffers every
+ * {@code journal.flushMs} and writes the events, formatted, to the journal file, one tab-separated line
+ * per event:
+ * <pre>
+ * epoch millis, thread, event, name, detail, result, duration in microseconds
+ * </pre>
+ * A worker never waits for the writer: when its buffer is full, events are dropped and counted as
+ * {@code journal.dropped} in the run metrics. Configuration keys:
+ * <ul>
+ *     <li>{@code journal.enabled} - record events (default true)</li>
+ *     <li>{@code journal.file} - journal location (default {@code target/ptaf-journal.tsv})</li>
+ *     <li>{@code journal.bufferSize} - events buffered per worker, rounded up to a power of two (default 8192)</li>
+ *     <li>{@code journal.flushMs} - interval of the background writer (default 200)</li>
+ * </ul>
+ */
+public class EventJournal {
+    private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("journal.enabled", true);
+    private static final int bufferSize = Integer.highestOneBit(Math.max(16, ConfigurationProperties.getInt("journal.bufferSize", 8192)) * 2 - 1);
+    private static final long flushMs = Math.max(10, ConfigurationProperties.getLong("journal.flushMs", 200));
+
+    /**
+     * The kinds of events in the journal.
+     */
+    public enum Event {
+        ACTION,
+        WAIT,
+        SETTLE,
+        IS_ENABLED,
+        IS_DISABLED,
+        IS_CHECKED,
+        IS_VISIBLE,
+        IS_HIDDEN
+    }
+
+    // Result codes of an event
+    public static final byte FALSE = 0;
+    public static final byte TRUE = 1;
+    public static final byte FAILED = -1;
+
+    private static final Event[] EVENTS = Event.values();
+    private static final List<Ring> rings = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Ring> ring = ThreadLocal.withInitial(() -> {
+        Ring newRing = new Ring(Thread.currentThread());
+        rings.add(newRing);
+        return newRing;
+    });
+    private static final Object writeLock = new Object();
+    private static BufferedWriter writer;
+
+    static {
+        if (enabled) {
+            Thread drainer = new Thread(EventJournal::drainLoop, "ptaf-journal-writer");
+            drainer.setDaemon(true);
+            drainer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(EventJournal::close, "ptaf-journal-close"));
+        }
+    }
+
+    /**
+     * Records an event of the current thread.
+     *
+     * @param event         The kind of event
+     * @param name          What the event is about, usually the element name
+     * @param detail        Further detail, usually the element key or the action
+     * @param result        {@link #TRUE}, {@link #FALSE} or {@link #FAILED}
+     * @param durationNanos How long the event took, or 0 if not timed
+     */
+    public static void record(Event event, String name, String detail, byte result, long durationNanos) {
+        if (!enabled) {
+            return;
+        }
+        ring.get().add(event, name, detail, result, durationNanos);
+    }
+
+    /**
+     * Records an untimed boolean check of the current thread.
+     *
+     * @param event  The kind of check
+     * @param name   The element name
+     * @param detail The element key
+     * @param result The outcome of the check
+     */
+    public static void record(Event event, String name, String detail, boolean result) {
+        record(event, name, detail, result ? TRUE : FALSE, 0);
+    }
+
+    private static void drainLoop() {
+        while (true) {
+            try {
+                Thread.sleep(flushMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Writes the events buffered by all workers to the journal file.
+     */
+    static void drain() {
+        synchronized (writeLock) {
+            try {
+                if (writer == null) {
+                    Path file = Paths.get(ConfigurationProperties.getString("journal.file", "target/ptaf-journal.tsv"));
+                    if (file.getParent() != null) {
+                        Files.createDirectories(file.getParent());
+                    }
+                    writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                }
+                StringBuilder line = new StringBuilder(160);
+                for (Ring buffered : rings) {
+                    // Checked before draining, so the last events of a finished thread are written
+                    boolean finished = !buffered.owner.isAlive();
+                    buffered.drainTo(writer, line);
+                    if (finished) {
+                        rings.remove(buffered);
+                    }
+                }
+                writer.flush();
+            } catch (IOException e) {
+                logger.error("Failed to write the event journal", e);
+            }
+        }
+    }
+
+    private static void close() {
+        drain();
+        synchronized (writeLock) {
+            try {
+                if (writer != null) {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to close the event journal", e);
+            }
+        }
+    }
+
+    /**
+     * A single-producer, single-consumer ring buffer of events. The owning worker is the only writer
+     * of the slots and of {@code head}; the journal writer is the only reader of the slots and writer
+     * of {@code tail}. Publishing {@code head} with release semantics after the slots are filled makes
+     * the slots visible to the journal writer once it reads the new head.
+     */
+    private static final class Ring {
+        private final Thread owner;
+        private final String thread;
+        private final int mask = bufferSize - 1;
+        private final long[] times = new long[bufferSize];
+        private final long[] durations = new long[bufferSize];
+        private final byte[] events = new byte[bufferSize];
+        private final byte[] results = new byte[bufferSize];
+        private final String[] names = new String[bufferSize];
+        private final String[] details = new String[bufferSize];
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        // Only touched by the owning worker
+        private long dropped;
+
+        Ring(Thread owner) {
+            this.owner = owner;
+            this.thread = owner.getName();
+        }
+
+        void add(Event event, String name, String detail, byte result, long durationNanos) {
+            long position = head.get();
+            if (position - tail.get() >= bufferSize) {
+                dropped++;
+                return;
+            }
+            if (dropped > 0) {
+                RunMetrics.increment("journal.dropped", dropped);
+                dropped = 0;
+            }
+            int slot = (int) position & mask;
+            times[slot] = System.currentTimeMillis();
+            durations[slot] = durationNanos;
+            events[slot] = (byte) event.ordinal();
+            results[slot] = result;
+            names[slot] = name;
+            details[slot] = detail;
+            head.lazySet(position + 1);
+        }
+
+        void drainTo(BufferedWriter out, StringBuilder line) throws IOException {
+            long end = head.get();
+            long position = tail.get();
+            for (; position < end; position++) {
+                int slot = (int) position & mask;
+                line.setLength(0);
+                line.append(times[slot]).append('\t')
+                        .append(thread).append('\t')
+                        .append(EVENTS[events[slot]]).append('\t')
+                        .append(names[slot]).append('\t')
+                        .append(details[slot]).append('\t')
+                        .append(results[slot] == TRUE ? "true" : results[slot] == FALSE ? "false" : "failed").append('\t')
+                        .append(durations[slot] / 1000)
+                        .append('\n');
+                names[slot] = null;
+                details[slot] = null;
+                out.append(line);
+            }
+            tail.lazySet(position);
+        }
+    }
+}
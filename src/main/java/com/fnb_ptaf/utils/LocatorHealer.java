@@ -0,0 +1,259 @@
+package com.fnb_ptaf.utils;
+
+import com.fnb_ptaf.GetLocatorForType;
+import com.fnb_ptaf.LocatorScope;
+import com.fnb_ptaf.WaitAction;
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.TimeoutError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.fnb_ptaf.GetActualLocator.getActualLocator;
+import static com.fnb_ptaf.GetLocatorType.getLocatorType;
+
+/**
+ * The LocatorHealer class resolves element keys that declare fallback locators. When the preferred
+ * locator does not match, all candidates are polled together instead of waiting out the full
+ * timeout on each one; the first visible candidate wins and is remembered in a local stats file so
+ * that it is tried first on later runs. A report of healed elements is written at the end of the
+ * run so the YAML can be fixed.
+ *
+ * <p>The stats file maps each {@code element.key} to {@code <lookups> <winning locator>}. At the end
+ * of a run only the keys the run touched are merged into the file, under a file lock, so parallel
+ * JVMs sharing the file keep each other's results.
+ *
+ * <p>Configuration keys:
+ * <ul>
+ *     <li>{@code healing.statsFile} - stats file kept between runs (default {@code .ptaf/healing-stats.properties})</li>
+ *     <li>{@code healing.reportFile} - report of healed elements (default {@code target/healed-locators.txt})</li>
+ *     <li>{@code healing.pollIntervalMs} - interval between polling rounds (default 100)</li>
+ * </ul>
+ */
+public class LocatorHealer {
+    private static final Logger logger = LoggerFactory.getLogger(LocatorHealer.class);
+
+    private static final Path statsFile = Paths.get(ConfigurationProperties.getString("healing.statsFile", ".ptaf/healing-stats.properties"));
+    private static final Path reportFile = Paths.get(ConfigurationProperties.getString("healing.reportFile", "target/healed-locators.txt"));
+    private static final long pollIntervalMs = ConfigurationProperties.getLong("healing.pollIntervalMs", 100);
+
+    // Winning locator value per "element.key", loaded from and saved to the stats file
+    private static final Map<String, String> promoted = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> hits = new ConcurrentHashMap<>();
+    // Healed lookups counted during this run, and the keys whose stats this run changed
+    private static final Map<String, Integer> hitsThisRun = new ConcurrentHashMap<>();
+    private static final Set<String> changedThisRun = ConcurrentHashMap.newKeySet();
+    // Keys healed during this run, with their primary locator value
+    private static final Map<String, String> healedThisRun = new ConcurrentHashMap<>();
+
+    static {
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            save();
+            writeReport();
+        }, "ptaf-locator-healer"));
+    }
+
+    /**
+     * Resolves the locator of an element key from its ordered candidates.
+     *
+     * @param scope      The scope in which to locate the element.
+     * @param element    The name of the element as defined in the YAML configuration.
+     * @param key        The key of the element.
+     * @param candidates The locator values declared for the key; the first one is the primary locator.
+     * @return The locator of the first visible candidate.
+     * @throws TimeoutError if no candidate became visible within {@link WaitAction#TIMEOUT}; the whole
+     * timeout is spent here, so the caller does not wait for the element a second time.
+     */
+    public static Locator resolve(LocatorScope scope, String element, String key, List<String> candidates) {
+        String id = element + "." + key;
+        List<String> ordered = new ArrayList<>(candidates);
+        String preferred = promoted.get(id);
+        if (preferred != null && ordered.remove(preferred)) {
+            ordered.add(0, preferred);
+        }
+
+        List<Locator> locators = new ArrayList<>();
+        for (String candidate : ordered) {
+            locators.add(GetLocatorForType.getLocatorForType(getLocatorType(candidate), scope, getActualLocator(candidate)));
+        }
+
+        // Fast path: the preferred candidate is already there
+        if (isVisible(locators.get(0))) {
+            record(id, candidates.get(0), ordered.get(0));
+            return locators.get(0);
+        }
+
+        // Poll all candidates together until one of them shows up
+        long deadline = System.currentTimeMillis() + WaitAction.TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            for (int i = 0; i < locators.size(); i++) {
+                if (isVisible(locators.get(i))) {
+                    record(id, candidates.get(0), ordered.get(i));
+                    return locators.get(i);
+                }
+            }
+            locators.get(0).page().waitForTimeout(pollIntervalMs);
+        }
+        throw new TimeoutError("None of the " + locators.size() + " locators of '" + id + "' became visible within "
+                + WaitAction.TIMEOUT + " ms: " + ordered);
+    }
+
+    private static boolean isVisible(Locator locator) {
+        try {
+            return locator.first().isVisible();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static void record(String id, String primary, String winner) {
+        if (winner.equals(primary)) {
+            // The primary locator works (again); nothing to heal
+            if (promoted.remove(id) != null) {
+                hits.remove(id);
+                hitsThisRun.remove(id);
+                changedThisRun.add(id);
+            }
+            return;
+        }
+        if (!winner.equals(promoted.put(id, winner))) {
+            logger.warn("Healed locator of '{}': primary '{}' did not match, using '{}'", id, primary, winner);
+        }
+        hits.merge(id, 1, Integer::sum);
+        hitsThisRun.merge(id, 1, Integer::sum);
+        changedThisRun.add(id);
+        healedThisRun.put(id, primary);
+        RunMetrics.increment("healing.healedLookups", 1);
+    }
+
+    private static void load() {
+        if (!Files.isRegularFile(statsFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(statsFile, StandardOpenOption.READ);
+             FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+            readStats(channel, lock).forEach((id, stats) -> {
+                promoted.put(id, stats.winner);
+                hits.put(id, stats.hits);
+            });
+        } catch (IOException e) {
+            logger.warn("Failed to read locator healing stats from '{}'", statsFile, e);
+        }
+    }
+
+    /**
+     * Merges the keys changed by this run into the stats file. The file is read and rewritten in
+     * place under an exclusive lock, so the stats of other runs written in the meantime are kept.
+     */
+    private static synchronized void save() {
+        if (changedThisRun.isEmpty()) {
+            return;
+        }
+        try {
+            if (statsFile.getParent() != null) {
+                Files.createDirectories(statsFile.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(statsFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                Map<String, Stats> stats = readStats(channel, lock);
+                for (String id : changedThisRun) {
+                    String winner = promoted.get(id);
+                    if (winner == null) {
+                        stats.remove(id);
+                        continue;
+                    }
+                    Stats previous = stats.get(id);
+                    int previousHits = previous != null && previous.winner.equals(winner) ? previous.hits : 0;
+                    stats.put(id, new Stats(previousHits + hitsThisRun.getOrDefault(id, 0), winner));
+                }
+
+                Properties properties = new Properties();
+                stats.forEach((id, entry) -> properties.setProperty(id, entry.hits + " " + entry.winner));
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                properties.store(out, "Locators promoted by self-healing: <element.key>=<lookups> <locator>");
+                channel.truncate(0);
+                ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, buffer.position());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write locator healing stats to '{}'", statsFile, e);
+        }
+    }
+
+    /**
+     * Reads the stats file; entries that are not {@code <lookups> <locator>} are skipped.
+     *
+     * @param channel The channel of the stats file
+     * @param lock    The lock the caller holds on the channel while reading
+     */
+    private static Map<String, Stats> readStats(FileChannel channel, FileLock lock) throws IOException {
+        Properties properties = new Properties();
+        channel.position(0);
+        properties.load(Channels.newInputStream(channel));
+        Map<String, Stats> stats = new TreeMap<>();
+        for (String id : properties.stringPropertyNames()) {
+            String value = properties.getProperty(id);
+            int separator = value.indexOf(' ');
+            try {
+                stats.put(id, new Stats(Integer.parseInt(value.substring(0, Math.max(separator, 0))), value.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring locator healing stats entry '{}' of '{}'", id, statsFile);
+            }
+        }
+        return stats;
+    }
+
+    private static void writeReport() {
+        if (healedThisRun.isEmpty()) {
+            return;
+        }
+        try {
+            if (reportFile.getParent() != null) {
+                Files.createDirectories(reportFile.getParent());
+            }
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+                writer.println("Healed elements - update the primary locator in elements/*.yml");
+                new TreeMap<>(healedThisRun).forEach((id, primary) -> writer.printf("%s: '%s' -> '%s' (%d lookups)%n",
+                        id, primary, promoted.get(id), hits.getOrDefault(id, 0)));
+            }
+            logger.warn("{} element(s) were healed, see {}", healedThisRun.size(), reportFile.toAbsolutePath());
+        } catch (IOException e) {
+            logger.warn("Failed to write healed locator report to '{}'", reportFile, e);
+        }
+    }
+
+    /**
+     * The promoted locator of a key and the number of lookups it healed.
+     */
+    private static class Stats {
+        private final int hits;
+        private final String winner;
+
+        Stats(int hits, String winner) {
+            this.hits = hits;
+            this.winner = winner;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The NetworkSettle class tracks in-flight requests of each page and waits until a page has been
+ * quiet for a given time, as a replacement for fixed sleeps after navigation or XHR-driven updates.
+ * Requests matching one of the ignore patterns (long-polling, analytics beacons, ...) are not counted.
+ *
+ * <p>Configuration keys:
+ * <ul>
+ *     <li>{@code settle.ignore} - list of regular expressions matched against request URLs</li>
+ *     <li>{@code settle.quietMs} - time without network activity that counts as settled (default 500)</li>
+ *     <li>{@code settle.timeoutMs} - maximum time to wait for the page to settle (default 30000)</li>
+ *     <li>{@code settle.afterActions} - settle after every action of CommonMethods (default false)</li>
+ * </ul>
+ */
+public class NetworkSettle {
+    private static final Logger logger = LoggerFactory.getLogger(NetworkSettle.class);
+
+    private static final List<Pattern> ignorePatterns = new ArrayList<>();
+    private static final Map<Page, Tracker> trackers = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // Interval at which Playwright events are pumped while waiting
+    private static final long POLL_INTERVAL_MS = 25;
+
+    static {
+        for (String pattern : ConfigurationProperties.getList("settle.ignore")) {
+            ignorePatterns.add(Pattern.compile(pattern));
+        }
+    }
+
+    /**
+     * Starts tracking the requests of a page. Must be called before the page navigates.
+     *
+     * @param page The page to track
+     */
+    public static void track(Page page) {
+        Tracker tracker = new Tracker();
+        trackers.put(page, tracker);
+        page.onRequest(request -> {
+            if (!isIgnored(request)) {
+                tracker.started(request);
+            }
+        });
+        page.onRequestFinished(tracker::finished);
+        page.onRequestFailed(tracker::finished);
+    }
+
+    /**
+     * Waits until the page has had no tracked request in flight for {@code settle.quietMs}.
+     *
+     * @param page The page to wait for
+     * @return True if the page settled, false if the timeout elapsed first
+     */
+    public static boolean waitForQuiet(Page page) {
+        return waitForQuiet(page, ConfigurationProperties.getLong("settle.quietMs", 500),
+                ConfigurationProperties.getLong("settle.timeoutMs", 30000));
+    }
+
+    /**
+     * Waits until the page has had no tracked request in flight for the given time. Returns as soon
+     * as the page is quiet, so an idle page costs only the quiet period.
+     *
+     * @param page      The page to wait for
+     * @param quietMs   The time without network activity that counts as settled
+     * @param timeoutMs The maximum time to wait
+     * @return True if the page settled, false if the timeout elapsed first
+     */
+    public static boolean waitForQuiet(Page page, long quietMs, long timeoutMs) {
+        Tracker tracker = trackers.get(page);
+        if (tracker == null) {
+            logger.warn("Network activity of the page is not tracked, cannot wait for it to settle");
+            return false;
+        }
+        long started = System.currentTimeMillis();
+        long deadline = started + timeoutMs;
+        while (true) {
+            long now = System.currentTimeMillis();
+            // Requests started by the action are only dispatched to the tracker while waiting, so a
+            // quiet period from before this call does not count
+            long quietFor = tracker.quietSince() > 0 ? now - Math.max(tracker.quietSince(), started) : 0;
+            if (quietFor >= quietMs) {
+                RunMetrics.record("settle.waitMs", now - started);
+                return true;
+            }
+            if (now >= deadline) {
+                logger.warn("Page did not settle within {} ms, {} request(s) still in flight: {}",
+                        timeoutMs, tracker.inFlight(), tracker.describeInFlight());
+                RunMetrics.increment("settle.timeouts", 1);
+                return false;
+            }
+            // Waiting through Playwright dispatches the request events to the tracker
+            long remainingQuiet = tracker.quietSince() > 0 ? quietMs - quietFor : POLL_INTERVAL_MS;
+            page.waitForTimeout(Math.max(1, Math.min(Math.min(remainingQuiet, POLL_INTERVAL_MS), deadline - now)));
+        }
+    }
+
+    private static boolean isIgnored(Request request) {
+        String url = request.url();
+        for (Pattern pattern : ignorePatterns) {
+            if (pattern.matcher(url).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * In-flight requests of a single page. Events are delivered on the thread that drives the page,
+     * the lock only guards the state against concurrent readers.
+     */
+    private static class Tracker {
+        private final Set<Request> inFlight = Collections.newSetFromMap(new IdentityHashMap<>());
+        private long quietSince = System.currentTimeMillis();
+
+        synchronized void started(Request request) {
+            inFlight.add(request);
+            quietSince = 0;
+        }
+
+        synchronized void finished(Request request) {
+            if (inFlight.remove(request) && inFlight.isEmpty()) {
+                quietSince = System.currentTimeMillis();
+            }
+        }
+
+        synchronized long quietSince() {
+            return quietSince;
+        }
+
+        synchronized int inFlight() {
+            return inFlight.size();
+        }
+
+        synchronized String describeInFlight() {
+            List<String> urls = new ArrayList<>();
+            for (Request request : inFlight) {
+                urls.add(request.method() + " " + request.url());
+            }
+            return String.join(", ", urls);
+        }
+    }
+}
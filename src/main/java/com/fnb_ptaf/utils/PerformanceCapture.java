@@ -0,0 +1,392 @@
+package com.fnb_ptaf.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * The PerformanceCapture class records page-side performance data of the application under test:
+ * Navigation Timing, resource timing, long tasks and the Web Vitals LCP, CLS and INP. An init script
+ * installs the performance observers in every document of the context; {@link #collect(Page)} reads
+ * them after each step, and the final values of each document (navigation) are added to a history
+ * that is kept across runs, so budgets can be asserted on a percentile rather than a single sample.
+ * At the end of a run only the samples it added are merged into the history file, under a file lock,
+ * so parallel JVMs sharing the file keep each other's samples.
+ *
+ * <p>Pages are identified by the name of the budget whose {@code url} pattern matches the page URL,
+ * or by the URL path otherwise. Configuration keys:
+ * <ul>
+ *     <li>{@code perf.enabled} - capture performance data (default false)</li>
+ *     <li>{@code perf.historyFile} - history kept across runs (default {@code .ptaf/perf-history.json})</li>
+ *     <li>{@code perf.historySize} - samples kept per page and metric (default 50)</li>
+ *     <li>{@code perf.budgets.<page>.url} - regular expression matched against the page URL</li>
+ *     <li>{@code perf.budgets.<page>.<metric>} - upper bound of a metric ({@code lcp}, {@code cls},
+ *     {@code inp}, {@code ttfb}, {@code domContentLoaded}, {@code load}, {@code longTaskMs},
+ *     {@code transferKb}); times are in milliseconds</li>
+ *     <li>{@code perf.budgets.<page>.percentile} - percentile the bounds apply to (default 75)</li>
+ * </ul>
+ */
+public class PerformanceCapture {
+    private static final Logger logger = LoggerFactory.getLogger(PerformanceCapture.class);
+
+    private static final boolean enabled = ConfigurationProperties.getBoolean("perf.enabled", false);
+    private static final Path historyFile = Paths.get(ConfigurationProperties.getString("perf.historyFile", ".ptaf/perf-history.json"));
+    private static final int historySize = ConfigurationProperties.getInt("perf.historySize", 50);
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private static final Type HISTORY_TYPE = new TypeToken<Map<String, Map<String, List<Double>>>>() {
+    }.getType();
+
+    // Samples per page and metric, oldest first
+    private static final Map<String, Map<String, List<Double>>> history = new TreeMap<>();
+    // Samples added by this run, merged into the history file at the end of the run
+    private static final Map<String, Map<String, List<Double>>> addedThisRun = new TreeMap<>();
+    private static final Map<String, Budget> budgets = new LinkedHashMap<>();
+
+    // Latest sample of the document currently shown by the page of this worker
+    private static final ThreadLocal<Map<String, Object>> currentDocument = new ThreadLocal<>();
+
+    // Installed in every document; observers buffer the entries the page produced before collection
+    private static final String INIT_SCRIPT = "(() => {\n"
+            + "  if (window.__ptafPerf) return;\n"
+            + "  const perf = window.__ptafPerf = { lcp: 0, cls: 0, longTasks: 0, longTaskMs: 0, interactions: {} };\n"
+            + "  let session = 0, sessionStart = 0, lastShift = 0;\n"
+            + "  const observe = (type, callback, options) => {\n"
+            + "    try {\n"
+            + "      new PerformanceObserver(list => list.getEntries().forEach(callback))\n"
+            + "        .observe(Object.assign({ type: type, buffered: true }, options || {}));\n"
+            + "    } catch (e) { /* entry type not supported by this browser */ }\n"
+            + "  };\n"
+            + "  observe('largest-contentful-paint', e => { perf.lcp = e.renderTime || e.loadTime || e.startTime; });\n"
+            // CLS is the largest session window: shifts less than 1 s apart, spanning at most 5 s
+            + "  observe('layout-shift', e => {\n"
+            + "    if (e.hadRecentInput) return;\n"
+            + "    if (session && e.startTime - lastShift < 1000 && e.startTime - sessionStart < 5000) {\n"
+            + "      session += e.value;\n"
+            + "    } else {\n"
+            + "      session = e.value;\n"
+            + "      sessionStart = e.startTime;\n"
+            + "    }\n"
+            + "    lastShift = e.startTime;\n"
+            + "    perf.cls = Math.max(perf.cls, session);\n"
+            + "  });\n"
+            + "  observe('longtask', e => { perf.longTasks++; perf.longTaskMs += e.duration; });\n"
+            + "  observe('event', e => {\n"
+            + "    if (e.interactionId) perf.interactions[e.interactionId] = Math.max(perf.interactions[e.interactionId] || 0, e.duration);\n"
+            + "  }, { durationThreshold: 16 });\n"
+            + "})();";
+
+    private static final String COLLECT_SCRIPT = "(() => {\n"
+            + "  const perf = window.__ptafPerf || { lcp: 0, cls: 0, longTasks: 0, longTaskMs: 0, interactions: {} };\n"
+            + "  const nav = performance.getEntriesByType('navigation')[0];\n"
+            + "  const resources = performance.getEntriesByType('resource');\n"
+            + "  const durations = Object.values(perf.interactions).sort((a, b) => b - a);\n"
+            + "  const slowest = resources.slice().sort((a, b) => b.duration - a.duration).slice(0, 5)\n"
+            + "    .map(r => ({ name: r.name, duration: Math.round(r.duration), transferSize: r.transferSize || 0 }));\n"
+            + "  return JSON.stringify({\n"
+            + "    url: location.href,\n"
+            + "    timeOrigin: performance.timeOrigin,\n"
+            + "    ttfb: nav ? nav.responseStart - nav.startTime : 0,\n"
+            + "    domContentLoaded: nav ? nav.domContentLoadedEventEnd - nav.startTime : 0,\n"
+            + "    load: nav ? nav.loadEventEnd - nav.startTime : 0,\n"
+            + "    lcp: perf.lcp,\n"
+            + "    cls: perf.cls,\n"
+            // INP is the worst interaction, ignoring one outlier per 50 interactions
+            + "    inp: durations.length ? durations[Math.min(durations.length - 1, Math.floor(durations.length / 50))] : 0,\n"
+            + "    longTasks: perf.longTasks,\n"
+            + "    longTaskMs: perf.longTaskMs,\n"
+            + "    resources: resources.length,\n"
+            + "    transferKb: resources.reduce((sum, r) => sum + (r.transferSize || 0), nav ? nav.transferSize || 0 : 0) / 1024,\n"
+            + "    slowestResources: slowest\n"
+            + "  });\n"
+            + "})()";
+
+    static {
+        Object configured = YamlReader.getOrDefault("perf.budgets", null);
+        if (configured instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) configured).entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    budgets.put(String.valueOf(entry.getKey()), new Budget(String.valueOf(entry.getKey()), (Map<?, ?>) entry.getValue()));
+                }
+            }
+        }
+        if (enabled) {
+            loadHistory();
+            Runtime.getRuntime().addShutdownHook(new Thread(PerformanceCapture::writeHistory, "ptaf-perf-history"));
+        }
+    }
+
+    /**
+     * Installs the performance observers in every document of a context.
+     *
+     * @param context The browser context of the scenario
+     */
+    public static void install(BrowserContext context) {
+        if (enabled) {
+            context.addInitScript(INIT_SCRIPT);
+        }
+    }
+
+    /**
+     * Reads the performance data of the document currently shown by the page. When the page has
+     * navigated since the previous collection, the previous document's data is added to the history.
+     *
+     * @param page The page of the scenario
+     * @return The data as JSON, or null if capture is disabled or failed
+     */
+    public static String collect(Page page) {
+        if (!enabled || page == null || page.isClosed()) {
+            return null;
+        }
+        try {
+            String json = (String) page.evaluate(COLLECT_SCRIPT);
+            Map<String, Object> sample = gson.fromJson(json, new TypeToken<Map<String, Object>>() {
+            }.getType());
+            Map<String, Object> previous = currentDocument.get();
+            if (previous != null && !sameDocument(previous, sample)) {
+                addToHistory(previous);
+            }
+            currentDocument.set(sample);
+            return json;
+        } catch (Exception e) {
+            logger.debug("Failed to collect performance data", e);
+            return null;
+        }
+    }
+
+    /**
+     * Collects the final data of the page and adds it to the history. Called at the end of a scenario.
+     *
+     * @param page The page of the scenario
+     * @return The final data as JSON, or null if capture is disabled or failed
+     */
+    public static String finish(Page page) {
+        String json = collect(page);
+        Map<String, Object> last = currentDocument.get();
+        currentDocument.remove();
+        if (last != null) {
+            addToHistory(last);
+        }
+        return json;
+    }
+
+    /**
+     * Checks the metrics of a page against its budget, at the budget's percentile over the history.
+     * When the document last collected on this thread (see {@link #collect(Page)}) belongs to the
+     * page, its values count as one more sample, so the first run of a budget assertion is checked
+     * against the page it is looking at rather than failing for lack of history.
+     *
+     * @param pageName The name of the budget under {@code perf.budgets}
+     * @return The violated bounds, empty if the page is within its budget
+     */
+    public static List<String> checkBudget(String pageName) {
+        Budget budget = budgets.get(pageName);
+        if (budget == null) {
+            throw new IllegalArgumentException("No performance budget configured for page '" + pageName + "'");
+        }
+        Map<String, Object> current = currentDocument.get();
+        boolean currentIsPage = current != null && pageName.equals(pageName(String.valueOf(current.get("url"))));
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, Double> limit : budget.limits.entrySet()) {
+            List<Double> samples = samples(pageName, limit.getKey());
+            if (currentIsPage && current.get(limit.getKey()) instanceof Number) {
+                // The current document is added to the history only once the page navigates away
+                samples.add(((Number) current.get(limit.getKey())).doubleValue());
+            }
+            if (samples.isEmpty()) {
+                violations.add(limit.getKey() + ": no samples recorded");
+                continue;
+            }
+            double value = percentile(samples, budget.percentile);
+            if (value > limit.getValue()) {
+                violations.add(String.format("%s p%d = %.2f exceeds %.2f (%d samples)", limit.getKey(),
+                        budget.percentile, value, limit.getValue(), samples.size()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Returns the recorded samples of a metric of a page, oldest first.
+     *
+     * @param pageName The page name (budget name or URL path)
+     * @param metric   The metric name
+     * @return The samples
+     */
+    public static List<Double> samples(String pageName, String metric) {
+        synchronized (history) {
+            List<Double> samples = history.getOrDefault(pageName, Collections.emptyMap()).get(metric);
+            return samples != null ? new ArrayList<>(samples) : new ArrayList<>();
+        }
+    }
+
+    private static void addToHistory(Map<String, Object> sample) {
+        String pageName = pageName(String.valueOf(sample.get("url")));
+        synchronized (history) {
+            Map<String, List<Double>> metrics = history.computeIfAbsent(pageName, key -> new TreeMap<>());
+            for (Map.Entry<String, Object> value : sample.entrySet()) {
+                if (value.getValue() instanceof Number && !"timeOrigin".equals(value.getKey())) {
+                    List<Double> samples = metrics.computeIfAbsent(value.getKey(), key -> new ArrayList<>());
+                    samples.add(((Number) value.getValue()).doubleValue());
+                    trim(samples);
+                    addedThisRun.computeIfAbsent(pageName, key -> new TreeMap<>())
+                            .computeIfAbsent(value.getKey(), key -> new ArrayList<>())
+                            .add(((Number) value.getValue()).doubleValue());
+                }
+            }
+        }
+        Object lcp = sample.get("lcp");
+        if (lcp instanceof Number) {
+            RunMetrics.record("perf." + pageName + ".lcp", ((Number) lcp).doubleValue());
+        }
+    }
+
+    private static boolean sameDocument(Map<String, Object> a, Map<String, Object> b) {
+        return String.valueOf(a.get("timeOrigin")).equals(String.valueOf(b.get("timeOrigin")));
+    }
+
+    private static String pageName(String url) {
+        for (Map.Entry<String, Budget> budget : budgets.entrySet()) {
+            if (budget.getValue().url != null && budget.getValue().url.matcher(url).find()) {
+                return budget.getKey();
+            }
+        }
+        try {
+            String path = URI.create(url).getPath();
+            return path == null || path.isEmpty() ? "/" : path;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static double percentile(List<Double> samples, int percentile) {
+        List<Double> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        // Nearest-rank percentile
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1)));
+    }
+
+    private static void trim(List<Double> samples) {
+        while (samples.size() > historySize) {
+            samples.remove(0);
+        }
+    }
+
+    private static void loadHistory() {
+        if (!Files.isRegularFile(historyFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.READ);
+             FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+            history.putAll(readHistory(channel, lock));
+        } catch (IOException e) {
+            logger.warn("Failed to read performance history from '{}'", historyFile, e);
+        }
+    }
+
+    /**
+     * Merges the samples added by this run into the history file. The file is read and rewritten in
+     * place under an exclusive lock, so the samples other runs wrote in the meantime are kept.
+     */
+    private static void writeHistory() {
+        synchronized (history) {
+            if (addedThisRun.isEmpty()) {
+                return;
+            }
+            try {
+                if (historyFile.getParent() != null) {
+                    Files.createDirectories(historyFile.getParent());
+                }
+                try (FileChannel channel = FileChannel.open(historyFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                     FileLock lock = channel.lock()) {
+                    Map<String, Map<String, List<Double>>> merged = readHistory(channel, lock);
+                    addedThisRun.forEach((pageName, metrics) -> metrics.forEach((metric, added) -> {
+                        List<Double> samples = merged.computeIfAbsent(pageName, key -> new TreeMap<>())
+                                .computeIfAbsent(metric, key -> new ArrayList<>());
+                        samples.addAll(added);
+                        trim(samples);
+                    }));
+
+                    ByteBuffer buffer = ByteBuffer.wrap(gson.toJson(merged, HISTORY_TYPE).getBytes(StandardCharsets.UTF_8));
+                    channel.truncate(0);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, buffer.position());
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Failed to write performance history to '{}'", historyFile, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the history file; an empty or unreadable file is an empty history.
+     *
+     * @param channel The channel of the history file
+     * @param lock    The lock the caller holds on the channel while reading
+     */
+    private static Map<String, Map<String, List<Double>>> readHistory(FileChannel channel, FileLock lock) throws IOException {
+        channel.position(0);
+        try {
+            Map<String, Map<String, List<Double>>> loaded = gson.fromJson(
+                    Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1), HISTORY_TYPE);
+            return loaded != null ? new TreeMap<>(loaded) : new TreeMap<>();
+        } catch (JsonParseException e) {
+            logger.warn("Ignoring unreadable performance history in '{}'", historyFile, e);
+            return new TreeMap<>();
+        }
+    }
+
+    /**
+     * Upper bounds of the metrics of one page.
+     */
+    private static class Budget {
+        private final Map<String, Double> limits = new LinkedHashMap<>();
+        private Pattern url;
+        private int percentile = 75;
+
+        Budget(String name, Map<?, ?> config) {
+            String prefix = "perf.budgets." + name + ".";
+            for (Map.Entry<?, ?> entry : config.entrySet()) {
+                String key = String.valueOf(entry.getKey());
+                try {
+                    if ("url".equals(key)) {
+                        url = Pattern.compile(String.valueOf(entry.getValue()));
+                    } else if ("percentile".equals(key)) {
+                        percentile = (int) ConfigurationProperties.getDouble(prefix + key, percentile);
+                    } else {
+                        limits.put(key, ConfigurationProperties.getDouble(prefix + key, 0));
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Ignoring invalid performance budget setting {}{}: '{}'", prefix, key, entry.getValue(), e);
+                }
+            }
+        }
+    }
+}
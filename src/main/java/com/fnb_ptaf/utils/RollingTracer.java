@@ -0,0 +1,171 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Tracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The RollingTracer class records Playwright traces in chunks and keeps only the most recent ones,
+ * so that a failing scenario comes with a trace of its last steps without paying for full tracing
+ * of every passing scenario. Chunks are rotated after a number of steps or seconds; older chunks
+ * are deleted, and the retained ones are written to the trace directory only when the scenario fails.
+ *
+ * <p>Configuration keys:
+ * <ul>
+ *     <li>{@code trace.mode} - {@code off} (default) or {@code rolling}</li>
+ *     <li>{@code trace.chunkSteps} - steps per chunk (default 5)</li>
+ *     <li>{@code trace.chunkSeconds} - maximum age of a chunk in seconds (default 30)</li>
+ *     <li>{@code trace.keepChunks} - number of chunks kept, including the live one (default 2)</li>
+ *     <li>{@code trace.dir} - directory for the traces of failed scenarios (default {@code target/traces})</li>
+ * </ul>
+ * The time spent in the tracing calls themselves (start, chunk rotation, stop) is reported as
+ * {@code trace.overheadMs} in the run metrics. It does not include the cost of recording snapshots
+ * while the steps run; compare the step durations of runs with {@code trace.mode} {@code off} and
+ * {@code rolling} (e.g. in the run history) for that.
+ */
+public class RollingTracer {
+    private static final Logger logger = LoggerFactory.getLogger(RollingTracer.class);
+
+    private static final boolean enabled = "rolling".equalsIgnoreCase(ConfigurationProperties.getString("trace.mode", "off"));
+    private static final int chunkSteps = ConfigurationProperties.getInt("trace.chunkSteps", 5);
+    private static final long chunkMillis = ConfigurationProperties.getLong("trace.chunkSeconds", 30) * 1000;
+    private static final int keepChunks = Math.max(1, ConfigurationProperties.getInt("trace.keepChunks", 2));
+    private static final Path traceDir = Paths.get(ConfigurationProperties.getString("trace.dir", "target/traces"));
+
+    private static final ThreadLocal<TraceState> state = new ThreadLocal<>();
+
+    /**
+     * Starts rolling tracing on a scenario's context.
+     *
+     * @param context The browser context of the scenario
+     */
+    public static void start(BrowserContext context) {
+        if (!enabled) {
+            return;
+        }
+        TraceState trace = new TraceState();
+        long started = System.nanoTime();
+        try {
+            trace.scratchDir = Files.createTempDirectory("ptaf-trace");
+            context.tracing().start(new Tracing.StartOptions().setScreenshots(true).setSnapshots(true));
+            context.tracing().startChunk();
+            trace.chunkStartedAt = System.currentTimeMillis();
+            state.set(trace);
+        } catch (Exception e) {
+            logger.warn("Failed to start rolling trace", e);
+        }
+        trace.overheadNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Called after each step; rotates the live chunk once it holds enough steps or is old enough.
+     *
+     * @param context The browser context of the scenario
+     */
+    public static void afterStep(BrowserContext context) {
+        TraceState trace = state.get();
+        if (trace == null) {
+            return;
+        }
+        trace.stepsInChunk++;
+        if (trace.stepsInChunk < chunkSteps && System.currentTimeMillis() - trace.chunkStartedAt < chunkMillis) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            Path chunk = trace.scratchDir.resolve("chunk-" + trace.chunkIndex++ + ".zip");
+            context.tracing().stopChunk(new Tracing.StopChunkOptions().setPath(chunk));
+            trace.chunks.addLast(chunk);
+            // Keep keepChunks - 1 finished chunks next to the live one
+            while (trace.chunks.size() > keepChunks - 1) {
+                Files.deleteIfExists(trace.chunks.removeFirst());
+            }
+            context.tracing().startChunk();
+        } catch (Exception e) {
+            logger.warn("Failed to rotate rolling trace chunk", e);
+        }
+        trace.stepsInChunk = 0;
+        trace.chunkStartedAt = System.currentTimeMillis();
+        trace.overheadNanos += System.nanoTime() - started;
+    }
+
+    /**
+     * Stops tracing at the end of a scenario. The retained chunks are written to the trace directory
+     * only if the scenario failed; otherwise they are discarded.
+     *
+     * @param context      The browser context of the scenario
+     * @param scenarioName The name of the scenario, used for the trace file names
+     * @param failed       Whether the scenario failed
+     * @return The trace files written for a failed scenario, oldest first; empty otherwise
+     */
+    public static List<Path> finish(BrowserContext context, String scenarioName, boolean failed) {
+        TraceState trace = state.get();
+        state.remove();
+        List<Path> written = new ArrayList<>();
+        if (trace == null) {
+            return written;
+        }
+        long started = System.nanoTime();
+        try {
+            if (failed) {
+                Path live = trace.scratchDir.resolve("chunk-" + trace.chunkIndex + ".zip");
+                context.tracing().stopChunk(new Tracing.StopChunkOptions().setPath(live));
+                trace.chunks.addLast(live);
+                Files.createDirectories(traceDir);
+                String baseName = scenarioName.replaceAll("[^A-Za-z0-9._-]+", "_") + "-" + System.currentTimeMillis();
+                int part = 1;
+                for (Path chunk : trace.chunks) {
+                    Path target = traceDir.resolve(baseName + "-part" + part++ + ".zip");
+                    Files.move(chunk, target, StandardCopyOption.REPLACE_EXISTING);
+                    written.add(target);
+                }
+                trace.chunks.clear();
+            } else {
+                context.tracing().stopChunk();
+            }
+            context.tracing().stop();
+        } catch (Exception e) {
+            logger.warn("Failed to finish rolling trace", e);
+        } finally {
+            for (Path chunk : trace.chunks) {
+                try {
+                    Files.deleteIfExists(chunk);
+                } catch (IOException e) {
+                    logger.debug("Failed to delete trace chunk '{}'", chunk, e);
+                }
+            }
+            try {
+                Files.deleteIfExists(trace.scratchDir);
+            } catch (IOException e) {
+                logger.debug("Failed to delete trace scratch directory '{}'", trace.scratchDir, e);
+            }
+        }
+        trace.overheadNanos += System.nanoTime() - started;
+
+        RunMetrics.record("trace.overheadMs", trace.overheadNanos / 1_000_000.0);
+        return written;
+    }
+
+    /**
+     * Rolling trace state of the scenario running on the current thread.
+     */
+    private static class TraceState {
+        private final Deque<Path> chunks = new ArrayDeque<>();
+        private Path scratchDir;
+        private int chunkIndex;
+        private int stepsInChunk;
+        private long chunkStartedAt;
+        private long overheadNanos;
+    }
+}
@@ -0,0 +1,149 @@
+package com.fnb_ptaf.utils;
+
+import com.google.gson.GsonBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The RunMetrics class collects counters and sampled values produced during a test run
+ * (browser memory, trace overhead, cache hit rates, ...) and writes them to a JSON file
+ * when the JVM shuts down.
+ */
+public class RunMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(RunMetrics.class);
+
+    // Upper bound on the number of timestamped samples kept per series; beyond it the kept samples
+    // are a uniform random sample of the whole series (reservoir sampling), not its first values
+    private static final int MAX_SAMPLES = 10000;
+
+    private static final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Series> series = new ConcurrentHashMap<>();
+    private static final long startedAt = System.currentTimeMillis();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(RunMetrics::write, "ptaf-metrics-writer"));
+    }
+
+    /**
+     * Adds the given delta to a named counter.
+     *
+     * @param name  The name of the counter
+     * @param delta The amount to add
+     */
+    public static void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new AtomicLong()).addAndGet(delta);
+    }
+
+    /**
+     * Returns the current value of a named counter.
+     *
+     * @param name The name of the counter
+     * @return The counter value, or 0 if it was never incremented
+     */
+    public static long counter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Records a sample for a named series. Summary statistics are always kept; the individual
+     * timestamped samples are kept up to a fixed bound, as a uniform sample of the series once it is
+     * longer, so the series can be plotted over time and its percentiles estimated.
+     *
+     * @param name  The name of the series
+     * @param value The sampled value
+     */
+    public static void record(String name, double value) {
+        series.computeIfAbsent(name, k -> new Series()).add(System.currentTimeMillis() - startedAt, value);
+    }
+
+    /**
+     * Writes all collected metrics to the file configured by {@code metrics.file}
+     * (default {@code target/ptaf-metrics.json}).
+     */
+    public static synchronized void write() {
+        if (counters.isEmpty() && series.isEmpty()) {
+            return;
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt);
+        report.put("durationMs", System.currentTimeMillis() - startedAt);
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, value) -> counterValues.put(name, value.get()));
+        report.put("counters", counterValues);
+        Map<String, Object> seriesValues = new TreeMap<>();
+        series.forEach((name, value) -> seriesValues.put(name, value.toMap()));
+        report.put("series", seriesValues);
+
+        Path file = Paths.get(ConfigurationProperties.getString("metrics.file", "target/ptaf-metrics.json"));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+            }
+            logger.info("Run metrics written to {}", file.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to write run metrics to '{}'", file, e);
+        }
+    }
+
+    /**
+     * A named series of sampled values with running summary statistics.
+     */
+    private static class Series {
+        private long count;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double last;
+        private final List<double[]> samples = new ArrayList<>();
+
+        synchronized void add(long offsetMs, double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(new double[]{offsetMs, value});
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(count);
+                if (slot < MAX_SAMPLES) {
+                    samples.set((int) slot, new double[]{offsetMs, value});
+                }
+            }
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("min", min);
+            map.put("max", max);
+            map.put("mean", count > 0 ? sum / count : 0);
+            map.put("last", last);
+            map.put("sampled", count > samples.size());
+            List<double[]> ordered = new ArrayList<>(samples);
+            ordered.sort(Comparator.comparingDouble(sample -> sample[0]));
+            map.put("samples", ordered);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Frame;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.ReducedMotion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SpeedMode class takes the waiting for the application's own delays out of a scenario. In every
+ * document of the scenario's context an init script:
+ * <ul>
+ *     <li>finishes each CSS transition and animation as soon as it starts, so elements reach their
+ *     final state (and fire their end events) at once; infinite animations such as spinners are left
+ *     alone. Smooth scrolling is turned off and {@code prefers-reduced-motion} is emulated.</li>
+ *     <li>optionally replaces the page's timers and clock with a virtual clock that runs
+ *     {@code timerScale} times faster than real time, so debounces and polling intervals elapse
+ *     sooner while {@code Date.now()} and {@code performance.now()} stay consistent with them. The
+ *     virtual clock can also be moved forward on demand with {@link #fastForward(Page, long)}.</li>
+ * </ul>
+ * The script counts the waiting it skipped: the remaining time of every finished animation and the
+ * difference between the virtual and the real delay of every timer that fired. It is summed per
+ * scenario and written to a report at the end of the run. Concurrent animations and timers are summed
+ * independently, so the figure is an upper bound of the wall-clock time saved.
+ *
+ * <p>Speed mode is configured per feature, by file name without extension, falling back to the
+ * global setting. Configuration keys:
+ * <ul>
+ *     <li>{@code speed.enabled} / {@code speed.features.<feature>.enabled} - install speed mode (default false)</li>
+ *     <li>{@code speed.animations} / {@code speed.features.<feature>.animations} - finish animations (default true)</li>
+ *     <li>{@code speed.fakeTimers} / {@code speed.features.<feature>.fakeTimers} - run timers on the virtual clock (default false)</li>
+ *     <li>{@code speed.timerScale} / {@code speed.features.<feature>.timerScale} - speed of the virtual clock (default 1)</li>
+ *     <li>{@code speed.reportFile} - report of the time saved per scenario (default {@code target/speed-report.txt})</li>
+ * </ul>
+ */
+public class SpeedMode {
+    private static final Logger logger = LoggerFactory.getLogger(SpeedMode.class);
+
+    private static final Path reportFile = Paths.get(ConfigurationProperties.getString("speed.reportFile", "target/speed-report.txt"));
+
+    private static final String INIT_SCRIPT = "(() => {\n"
+            + "  if (window.__ptafSpeed) return;\n"
+            + "  const cfg = %s;\n"
+            + "  const stats = { animations: 0, animationMs: 0, timers: 0, timerMs: 0 };\n"
+            + "  const api = { take: () => { const taken = Object.assign({}, stats);\n"
+            + "    stats.animations = stats.animationMs = stats.timers = stats.timerMs = 0; return taken; } };\n"
+            + "  Object.defineProperty(window, '__ptafSpeed', { value: api });\n"
+            // Savings of the previous document of the tab that were not collected before it went away
+            + "  try {\n"
+            + "    const carried = JSON.parse(sessionStorage.getItem('__ptafSpeed') || 'null');\n"
+            + "    if (carried) { Object.assign(stats, carried); sessionStorage.removeItem('__ptafSpeed'); }\n"
+            + "  } catch (e) {}\n"
+            + "  window.addEventListener('pagehide', () => {\n"
+            + "    try { if (stats.animations || stats.timers) sessionStorage.setItem('__ptafSpeed', JSON.stringify(stats)); } catch (e) {}\n"
+            + "  });\n"
+            + "  if (cfg.animations) {\n"
+            + "    const style = document.createElement('style');\n"
+            + "    style.textContent = '*,*::before,*::after{scroll-behavior:auto!important}';\n"
+            + "    const addStyle = () => (document.head || document.documentElement).appendChild(style);\n"
+            + "    if (document.documentElement) addStyle(); else document.addEventListener('readystatechange', addStyle, { once: true });\n"
+            + "    const finish = event => {\n"
+            + "      const target = event.target;\n"
+            + "      if (!target || !target.getAnimations) return;\n"
+            + "      for (const animation of target.getAnimations()) {\n"
+            + "        const name = event.type === 'transitionrun' ? animation.transitionProperty : animation.animationName;\n"
+            + "        const wanted = event.type === 'transitionrun' ? event.propertyName : event.animationName;\n"
+            + "        const timing = animation.effect && animation.effect.getComputedTiming();\n"
+            + "        if (name !== wanted || !timing || !isFinite(timing.endTime) || animation.playState === 'finished') continue;\n"
+            + "        const remaining = timing.endTime - (animation.currentTime || 0);\n"
+            + "        try { animation.finish(); } catch (e) { continue; }\n"
+            + "        stats.animations++;\n"
+            + "        stats.animationMs += Math.max(0, remaining);\n"
+            + "      }\n"
+            + "    };\n"
+            + "    window.addEventListener('transitionrun', finish, true);\n"
+            + "    window.addEventListener('animationstart', finish, true);\n"
+            + "  }\n"
+            + "  if (cfg.fakeTimers) {\n"
+            + "    const scale = cfg.timerScale > 0 ? cfg.timerScale : 1;\n"
+            + "    const realSetTimeout = window.setTimeout.bind(window);\n"
+            + "    const realClearTimeout = window.clearTimeout.bind(window);\n"
+            + "    const realPerformanceNow = performance.now.bind(performance);\n"
+            + "    const RealDate = Date;\n"
+            + "    const startedAt = RealDate.now();\n"
+            + "    const perfStartedAt = realPerformanceNow();\n"
+            + "    let offset = 0;\n"
+            + "    const elapsed = () => (realPerformanceNow() - perfStartedAt) * scale + offset;\n"
+            + "    const timers = new Map();\n"
+            + "    let nextId = 1;\n"
+            + "    const arm = timer => {\n"
+            + "      timer.armedAt = realPerformanceNow();\n"
+            + "      timer.armedFor = Math.max(0, timer.due - elapsed());\n"
+            + "      timer.native = realSetTimeout(() => fire(timer), timer.armedFor / scale);\n"
+            + "    };\n"
+            + "    const fire = timer => {\n"
+            + "      if (timers.get(timer.id) !== timer) return;\n"
+            + "      const saved = timer.armedFor - (realPerformanceNow() - timer.armedAt);\n"
+            + "      if (saved >= 1) { stats.timers++; stats.timerMs += saved; }\n"
+            + "      if (timer.interval) { timer.due = Math.max(timer.due + timer.delay, elapsed()); arm(timer); } else timers.delete(timer.id);\n"
+            + "      if (typeof timer.fn === 'function') timer.fn.apply(window, timer.args); else (0, eval)(String(timer.fn));\n"
+            + "    };\n"
+            + "    const schedule = (fn, delay, args, interval) => {\n"
+            + "      delay = Math.max(0, Number(delay) || 0);\n"
+            + "      const timer = { id: nextId++, fn, args, delay, interval, due: elapsed() + delay };\n"
+            + "      timers.set(timer.id, timer);\n"
+            + "      arm(timer);\n"
+            + "      return timer.id;\n"
+            + "    };\n"
+            + "    const cancel = id => { const timer = timers.get(id); if (timer) { timers.delete(id); realClearTimeout(timer.native); } };\n"
+            + "    window.setTimeout = (fn, delay, ...args) => schedule(fn, delay, args, false);\n"
+            + "    window.setInterval = (fn, delay, ...args) => schedule(fn, delay, args, true);\n"
+            + "    window.clearTimeout = cancel;\n"
+            + "    window.clearInterval = cancel;\n"
+            + "    const VirtualDate = function (...args) {\n"
+            + "      if (!new.target) return new RealDate(VirtualDate.now()).toString();\n"
+            + "      return new RealDate(...(args.length ? args : [VirtualDate.now()]));\n"
+            + "    };\n"
+            + "    VirtualDate.prototype = RealDate.prototype;\n"
+            + "    VirtualDate.now = () => Math.floor(startedAt + elapsed());\n"
+            + "    VirtualDate.parse = RealDate.parse;\n"
+            + "    VirtualDate.UTC = RealDate.UTC;\n"
+            + "    window.Date = VirtualDate;\n"
+            + "    performance.now = () => perfStartedAt + elapsed();\n"
+            + "    api.fastForward = ms => {\n"
+            + "      offset += ms;\n"
+            + "      if (timers.size) { stats.timers++; stats.timerMs += ms; }\n"
+            + "      for (const timer of timers.values()) { realClearTimeout(timer.native); arm(timer); }\n"
+            + "      return timers.size;\n"
+            + "    };\n"
+            + "  }\n"
+            + "})()";
+
+    private static final String TAKE_SCRIPT = "() => window.__ptafSpeed ? window.__ptafSpeed.take() : null";
+
+    // Settings and savings of the scenario running on this thread
+    private static final ThreadLocal<Settings> current = new ThreadLocal<>();
+    private static final ThreadLocal<double[]> saved = new ThreadLocal<>();
+    // Savings per scenario for the report: animations, animation ms, timers, timer ms
+    private static final Map<String, double[]> savedPerScenario = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SpeedMode::writeReport, "ptaf-speed-report"));
+    }
+
+    /**
+     * Installs speed mode in the context of a scenario, if it is enabled for the scenario's feature.
+     * The page's current document gets it too, in case the page was navigated before the scenario
+     * started (pre-warmed or restored from a checkpoint).
+     *
+     * @param context The context of the scenario
+     * @param page    The page of the scenario
+     * @param feature The URI of the scenario's feature file
+     */
+    public static void install(BrowserContext context, Page page, URI feature) {
+        String featureName = featureName(feature);
+        if (!setting(featureName, "enabled", false)) {
+            return;
+        }
+        Settings settings = new Settings(featureName, setting(featureName, "animations", true),
+                setting(featureName, "fakeTimers", false), Double.parseDouble(String.valueOf(setting(featureName, "timerScale", 1))));
+        String script = String.format(INIT_SCRIPT, String.format(Locale.ROOT, "{ animations: %b, fakeTimers: %b, timerScale: %s }",
+                settings.animations, settings.fakeTimers, settings.timerScale));
+        context.addInitScript(script);
+        if (settings.animations) {
+            page.emulateMedia(new Page.EmulateMediaOptions().setReducedMotion(ReducedMotion.REDUCE));
+        }
+        if (!"about:blank".equals(page.url())) {
+            try {
+                page.evaluate(script);
+            } catch (RuntimeException e) {
+                logger.debug("Failed to install speed mode in the current document", e);
+            }
+        }
+        current.set(settings);
+        saved.set(new double[4]);
+        logger.debug("Speed mode installed for feature '{}': animations {}, fake timers {}, timer scale {}",
+                featureName, settings.animations, settings.fakeTimers, settings.timerScale);
+    }
+
+    /**
+     * Moves the virtual clock of every document of the page forward, firing the timers that become
+     * due, e.g. to skip a debounce or the next poll without waiting for it.
+     *
+     * @param page   The page of the scenario
+     * @param millis How far to move the clock
+     * @throws IllegalStateException if fake timers are not enabled for the scenario
+     */
+    public static void fastForward(Page page, long millis) {
+        Settings settings = current.get();
+        if (settings == null || !settings.fakeTimers) {
+            throw new IllegalStateException("Fast-forward needs speed.fakeTimers enabled for the feature");
+        }
+        for (Frame frame : page.frames()) {
+            try {
+                frame.evaluate("ms => window.__ptafSpeed && window.__ptafSpeed.fastForward ? window.__ptafSpeed.fastForward(ms) : 0", millis);
+            } catch (RuntimeException e) {
+                logger.debug("Failed to fast-forward frame '{}'", frame.url(), e);
+            }
+        }
+    }
+
+    /**
+     * Adds the waiting skipped in the page's documents since the last collection to the scenario's
+     * savings. Called after each step, so savings of documents navigated away from are not lost.
+     *
+     * @param page The page of the scenario
+     */
+    public static void collect(Page page) {
+        double[] totals = saved.get();
+        if (totals == null || page == null || page.isClosed()) {
+            return;
+        }
+        for (Frame frame : page.frames()) {
+            try {
+                Object taken = frame.evaluate(TAKE_SCRIPT);
+                if (taken instanceof Map) {
+                    Map<?, ?> stats = (Map<?, ?>) taken;
+                    totals[0] += number(stats.get("animations"));
+                    totals[1] += number(stats.get("animationMs"));
+                    totals[2] += number(stats.get("timers"));
+                    totals[3] += number(stats.get("timerMs"));
+                }
+            } catch (RuntimeException e) {
+                // Detached or navigating frame; its savings are carried over to its next document
+                logger.debug("Failed to collect speed mode savings of frame '{}'", frame.url(), e);
+            }
+        }
+    }
+
+    /**
+     * Collects the final savings of a scenario and adds them to the report. Called at the end of a scenario.
+     *
+     * @param page         The page of the scenario
+     * @param scenarioName The name of the scenario
+     */
+    public static void finish(Page page, String scenarioName) {
+        Settings settings = current.get();
+        if (settings == null) {
+            return;
+        }
+        collect(page);
+        double[] totals = saved.get();
+        current.remove();
+        saved.remove();
+        long savedMs = Math.round(totals[1] + totals[3]);
+        RunMetrics.record("speed.savedMs", savedMs);
+        savedPerScenario.merge(settings.feature + " > " + scenarioName, totals, (a, b) -> {
+            double[] sum = new double[a.length];
+            for (int i = 0; i < a.length; i++) {
+                sum[i] = a[i] + b[i];
+            }
+            return sum;
+        });
+        logger.info("Speed mode skipped {} ms of waiting: {} animation(s), {} timer(s)", savedMs, (long) totals[0], (long) totals[2]);
+    }
+
+    private static void writeReport() {
+        if (savedPerScenario.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, double[]>> scenarios = new ArrayList<>(savedPerScenario.entrySet());
+        scenarios.sort((a, b) -> Double.compare(b.getValue()[1] + b.getValue()[3], a.getValue()[1] + a.getValue()[3]));
+        double total = 0;
+        for (Map.Entry<String, double[]> scenario : scenarios) {
+            total += scenario.getValue()[1] + scenario.getValue()[3];
+        }
+        try {
+            if (reportFile.getParent() != null) {
+                Files.createDirectories(reportFile.getParent());
+            }
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+                writer.printf(Locale.ROOT, "Waiting skipped by speed mode: %.1f s over %d scenario(s)%n", total / 1000, scenarios.size());
+                writer.printf("Animations and timers are summed independently; overlapping waits make this an upper bound%n%n");
+                writer.printf("%10s  %10s  %6s  %10s  %6s  %s%n", "saved ms", "anim ms", "anims", "timer ms", "timers", "scenario");
+                for (Map.Entry<String, double[]> scenario : scenarios) {
+                    double[] totals = scenario.getValue();
+                    writer.printf(Locale.ROOT, "%10.0f  %10.0f  %6d  %10.0f  %6d  %s%n", totals[1] + totals[3], totals[1], (long) totals[0],
+                            totals[3], (long) totals[2], scenario.getKey());
+                }
+            }
+            logger.info("Speed mode report written to {}", reportFile.toAbsolutePath());
+        } catch (IOException e) {
+            logger.warn("Failed to write the speed mode report to '{}'", reportFile, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T setting(String feature, String key, T defaultValue) {
+        Object global = YamlReader.getOrDefault("speed." + key, defaultValue);
+        Object value = YamlReader.getOrDefault("speed.features." + feature + "." + key, global);
+        if (defaultValue instanceof Boolean) {
+            return (T) Boolean.valueOf(String.valueOf(value));
+        }
+        return (T) value;
+    }
+
+    private static String featureName(URI feature) {
+        String path = feature.toString();
+        String fileName = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf(':')) + 1);
+        return fileName.endsWith(".feature") ? fileName.substring(0, fileName.length() - ".feature".length()) : fileName;
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private static final class Settings {
+        final String feature;
+        final boolean animations;
+        final boolean fakeTimers;
+        final double timerScale;
+
+        Settings(String feature, boolean animations, boolean fakeTimers, double timerScale) {
+            this.feature = feature;
+            this.animations = animations;
+            this.fakeTimers = fakeTimers;
+            this.timerScale = timerScale;
+        }
+    }
+}
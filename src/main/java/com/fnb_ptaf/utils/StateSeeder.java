@@ -0,0 +1,503 @@
+package com.fnb_ptaf.utils;
+
+import com.fnb_ptaf.hooks.Hooks;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.Cookie;
+import com.microsoft.playwright.options.RequestOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The StateSeeder sets up the data a scenario needs with HTTP calls instead of setup screens. A
+ * seed is a named group of requests under {@code seeds.<name>} in the YAML configuration:
+ * <pre>
+ * seeds:
+ *   fundedBeneficiary:
+ *     requests:
+ *       login:       { method: POST, path: /api/session, body: { user: "${user}", password: "${password}" } }
+ *       beneficiary: { method: POST, path: /api/beneficiaries, body: { name: "${name}" }, after: login }
+ *       fund:        { method: POST, path: "/api/beneficiaries/${beneficiary.id}/fund", body: { amount: 100 } }
+ *     localStorage:
+ *       selectedBeneficiary: "${beneficiary.id}"
+ *     url: "/beneficiaries/${beneficiary.id}"
+ * </pre>
+ * {@code ${...}} placeholders resolve to the parameters passed to {@link #seed(String, Map)} or to
+ * a dotted path into the JSON response of another request of the seed. A request runs after the
+ * requests it references and the ones listed in its {@code after} list; requests that do not depend
+ * on each other run concurrently. A request fails the seed unless it answers with its
+ * {@code expect} status (default any 2xx).
+ *
+ * <p>The requests share cookies with the scenario's browser context: the context's cookies are sent
+ * with them and the cookies they set are added to the context. Playwright's {@code APIRequestContext}
+ * shares the cookie store natively, but the synchronous Java client cannot issue requests from
+ * several threads at once. By default the requests are therefore sent with {@code java.net.http}
+ * and cookies are copied in both directions. With {@code seed.client: playwright} they go through
+ * {@code context.request()} one after the other in dependency order. Finally the seed's
+ * {@code localStorage} entries are applied to the base URL's origin and its {@code url} is loaded.
+ * Configuration keys:
+ * <ul>
+ *     <li>{@code seed.baseUrlKey} - key of the base URL requests are resolved against (default
+ *     {@code baseUrl}); a seed may set its own {@code baseUrlKey}</li>
+ *     <li>{@code seed.client} - {@code http} (default) or {@code playwright}</li>
+ *     <li>{@code seed.timeoutMs} - timeout of each request (default 30000)</li>
+ *     <li>{@code seed.threads} - threads handling concurrent responses (default 4)</li>
+ * </ul>
+ * The time taken by each seed is recorded as {@code seed.<name>Ms} in the run metrics.
+ */
+public class StateSeeder {
+    private static final Logger logger = LoggerFactory.getLogger(StateSeeder.class);
+
+    private static final String defaultBaseUrlKey = ConfigurationProperties.getString("seed.baseUrlKey", "baseUrl");
+    private static final boolean usePlaywrightClient = "playwright".equalsIgnoreCase(ConfigurationProperties.getString("seed.client", "http"));
+    private static final long timeoutMs = ConfigurationProperties.getLong("seed.timeoutMs", 30000);
+    private static final int threads = Math.max(1, ConfigurationProperties.getInt("seed.threads", 4));
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+    private static final Gson gson = new Gson();
+    private static final AtomicInteger threadIndex = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+        Thread thread = new Thread(runnable, "ptaf-seed-" + threadIndex.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Responses of the last seed run on each worker, for values the scenario needs afterwards
+    private static final ThreadLocal<Map<String, JsonElement>> responses = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Runs a seed without parameters against the current scenario's page.
+     *
+     * @param seedName The name of the seed under {@code seeds}
+     */
+    public static void seed(String seedName) {
+        seed(seedName, Collections.emptyMap());
+    }
+
+    /**
+     * Runs a seed against the current scenario's page.
+     *
+     * @param seedName   The name of the seed under {@code seeds}
+     * @param parameters Values for the seed's {@code ${...}} placeholders
+     */
+    public static void seed(String seedName, Map<String, String> parameters) {
+        seed(Hooks.getPage(), seedName, parameters);
+    }
+
+    /**
+     * Runs a seed: sends its requests, shares the resulting cookies with the page's context and
+     * applies the seed's page state.
+     *
+     * @param page       The page of the scenario
+     * @param seedName   The name of the seed under {@code seeds}
+     * @param parameters Values for the seed's {@code ${...}} placeholders
+     * @throws IllegalArgumentException if the seed is not configured or its dependencies form a cycle
+     * @throws IllegalStateException    if a request fails
+     */
+    public static void seed(Page page, String seedName, Map<String, String> parameters) {
+        Object definition = YamlReader.getOrDefault("seeds." + seedName, null);
+        if (!(definition instanceof Map) || !(((Map<?, ?>) definition).get("requests") instanceof Map)) {
+            throw new IllegalArgumentException("No requests configured for seed '" + seedName + "'");
+        }
+        Map<?, ?> seed = (Map<?, ?>) definition;
+        long started = System.currentTimeMillis();
+        String baseUrl = ConfigurationProperties.getBaseUrl(
+                seed.get("baseUrlKey") != null ? String.valueOf(seed.get("baseUrlKey")) : defaultBaseUrlKey);
+
+        Map<String, SeedRequest> requests = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) seed.get("requests")).entrySet()) {
+            requests.put(String.valueOf(entry.getKey()), new SeedRequest(String.valueOf(entry.getKey()), (Map<?, ?>) entry.getValue()));
+        }
+        List<SeedRequest> order = dependencyOrder(seedName, requests);
+
+        Map<String, JsonElement> results = new HashMap<>();
+        Resolver resolver = new Resolver(parameters, results);
+        BrowserContext context = page.context();
+        if (usePlaywrightClient) {
+            for (SeedRequest request : order) {
+                results.put(request.name, sendThroughContext(context, baseUrl, seedName, request, resolver));
+            }
+        } else {
+            sendConcurrently(context, baseUrl, seedName, order, resolver, results);
+        }
+        responses.set(results);
+
+        applyPageState(page, baseUrl, seed, resolver);
+        long elapsed = System.currentTimeMillis() - started;
+        RunMetrics.record("seed." + seedName + "Ms", elapsed);
+        logger.info("Seeded '{}' with {} request(s) in {} ms", seedName, order.size(), elapsed);
+    }
+
+    /**
+     * Retrieves a value from the responses of the last seed run on the current thread.
+     *
+     * @param path The request name followed by a dotted path into its JSON response, e.g. {@code beneficiary.id}
+     * @return The value as a string, or null if the response has no such value
+     */
+    public static String value(String path) {
+        return new Resolver(Collections.emptyMap(), responses.get()).lookup(path);
+    }
+
+    /**
+     * Orders the requests so every request comes after its dependencies.
+     */
+    private static List<SeedRequest> dependencyOrder(String seedName, Map<String, SeedRequest> requests) {
+        for (SeedRequest request : requests.values()) {
+            request.collectDependencies(requests.keySet());
+            for (String dependency : request.dependencies) {
+                if (!requests.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Request '" + request.name + "' of seed '" + seedName
+                            + "' runs after unknown request '" + dependency + "'");
+                }
+            }
+        }
+        List<SeedRequest> order = new ArrayList<>();
+        Set<String> visiting = new LinkedHashSet<>();
+        Set<String> done = new LinkedHashSet<>();
+        for (SeedRequest request : requests.values()) {
+            visit(seedName, request, requests, visiting, done, order);
+        }
+        return order;
+    }
+
+    private static void visit(String seedName, SeedRequest request, Map<String, SeedRequest> requests,
+                              Set<String> visiting, Set<String> done, List<SeedRequest> order) {
+        if (done.contains(request.name)) {
+            return;
+        }
+        if (!visiting.add(request.name)) {
+            throw new IllegalArgumentException("Requests of seed '" + seedName + "' depend on each other: " + visiting);
+        }
+        for (String dependency : request.dependencies) {
+            visit(seedName, requests.get(dependency), requests, visiting, done, order);
+        }
+        visiting.remove(request.name);
+        done.add(request.name);
+        order.add(request);
+    }
+
+    /**
+     * Sends the requests with one future per request, each started once the futures of its
+     * dependencies have completed, through a cookie jar filled from and copied back to the context.
+     */
+    private static void sendConcurrently(BrowserContext context, String baseUrl, String seedName,
+                                         List<SeedRequest> order, Resolver resolver, Map<String, JsonElement> results) {
+        CookieManager cookies = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+        URI base = URI.create(baseUrl);
+        Set<String> initial = new HashSet<>();
+        for (Cookie cookie : context.cookies(baseUrl)) {
+            initial.add(cookie.name + "=" + cookie.value);
+            HttpCookie httpCookie = new HttpCookie(cookie.name, cookie.value);
+            httpCookie.setDomain(cookie.domain);
+            httpCookie.setPath(cookie.path);
+            httpCookie.setSecure(Boolean.TRUE.equals(cookie.secure));
+            httpCookie.setHttpOnly(Boolean.TRUE.equals(cookie.httpOnly));
+            httpCookie.setVersion(0);
+            cookies.getCookieStore().add(base, httpCookie);
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(cookies)
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .executor(executor)
+                .build();
+
+        Map<String, CompletableFuture<JsonElement>> futures = new HashMap<>();
+        for (SeedRequest request : order) {
+            CompletableFuture<?>[] dependencies = request.dependencies.stream().map(futures::get).toArray(CompletableFuture<?>[]::new);
+            futures.put(request.name, CompletableFuture.allOf(dependencies).thenComposeAsync(ignored -> {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve(resolver.resolve(request.path)))
+                        .timeout(Duration.ofMillis(timeoutMs));
+                String body = request.body(resolver);
+                request.headers(resolver, body).forEach(builder::header);
+                builder.method(request.method, body != null
+                        ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody());
+                return client.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofString());
+            }, executor).thenApply(response -> {
+                JsonElement result = request.check(seedName, response.statusCode(), response.body());
+                // Dependents read the result from the shared map; the future completes after the put
+                synchronized (results) {
+                    results.put(request.name, result);
+                }
+                return result;
+            }));
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(CompletableFuture<?>[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Seed '" + seedName + "' failed", e.getCause());
+        }
+
+        // Copy back the cookies the requests set; the jar qualifies dotless hosts such as localhost
+        // with ".local", which the browser must not see
+        List<Cookie> seeded = new ArrayList<>();
+        for (HttpCookie cookie : cookies.getCookieStore().getCookies()) {
+            if (initial.contains(cookie.getName() + "=" + cookie.getValue())) {
+                continue;
+            }
+            String domain = cookie.getDomain();
+            if (domain == null || domain.equalsIgnoreCase(base.getHost() + ".local")) {
+                domain = base.getHost();
+            }
+            Cookie browserCookie = new Cookie(cookie.getName(), cookie.getValue())
+                    .setDomain(domain)
+                    .setPath(cookie.getPath() != null ? cookie.getPath() : "/")
+                    .setSecure(cookie.getSecure())
+                    .setHttpOnly(cookie.isHttpOnly());
+            if (cookie.getMaxAge() >= 0) {
+                browserCookie.setExpires(System.currentTimeMillis() / 1000.0 + cookie.getMaxAge());
+            }
+            seeded.add(browserCookie);
+        }
+        if (!seeded.isEmpty()) {
+            context.addCookies(seeded);
+        }
+    }
+
+    private static JsonElement sendThroughContext(BrowserContext context, String baseUrl, String seedName,
+                                                  SeedRequest request, Resolver resolver) {
+        RequestOptions options = RequestOptions.create()
+                .setMethod(request.method)
+                .setTimeout(timeoutMs);
+        String body = request.body(resolver);
+        request.headers(resolver, body).forEach(options::setHeader);
+        if (body != null) {
+            options.setData(body);
+        }
+        APIResponse response = context.request().fetch(URI.create(baseUrl).resolve(resolver.resolve(request.path)).toString(), options);
+        try {
+            return request.check(seedName, response.status(), response.text());
+        } finally {
+            response.dispose();
+        }
+    }
+
+    /**
+     * Stores the seed's {@code localStorage} entries for the base URL's origin and loads its {@code url}.
+     * The entries are added by an init script, so they are in place before the application's own
+     * scripts run on every later navigation of the context.
+     */
+    private static void applyPageState(Page page, String baseUrl, Map<?, ?> seed, Resolver resolver) {
+        if (seed.get("localStorage") instanceof Map) {
+            Map<String, String> items = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> item : ((Map<?, ?>) seed.get("localStorage")).entrySet()) {
+                items.put(String.valueOf(item.getKey()), resolver.resolve(String.valueOf(item.getValue())));
+            }
+            URI base = URI.create(baseUrl);
+            String origin = base.getScheme() + "://" + base.getRawAuthority();
+            String script = "(() => { if (location.origin !== " + gson.toJson(origin) + ") return;"
+                    + " const items = " + gson.toJson(items) + ";"
+                    + " for (const key in items) localStorage.setItem(key, items[key]); })();";
+            page.context().addInitScript(script);
+            if (page.url().startsWith(origin)) {
+                page.evaluate(script);
+            }
+        }
+        if (seed.get("url") != null) {
+            page.navigate(URI.create(baseUrl).resolve(resolver.resolve(String.valueOf(seed.get("url")))).toString());
+        }
+    }
+
+    /**
+     * A request of a seed as configured in YAML.
+     */
+    private static final class SeedRequest {
+        private final String name;
+        private final String method;
+        private final String path;
+        private final Object body;
+        private final Map<?, ?> headers;
+        private final List<Object> after;
+        private final String expect;
+        private final Set<String> dependencies = new LinkedHashSet<>();
+
+        SeedRequest(String name, Map<?, ?> definition) {
+            if (definition == null || definition.get("path") == null) {
+                throw new IllegalArgumentException("Seed request '" + name + "' has no path");
+            }
+            this.name = name;
+            this.method = String.valueOf(definition.containsKey("method") ? definition.get("method") : "GET").toUpperCase();
+            this.path = String.valueOf(definition.get("path"));
+            this.body = definition.get("body");
+            this.headers = definition.get("headers") instanceof Map ? (Map<?, ?>) definition.get("headers") : Collections.emptyMap();
+            this.after = definition.get("after") instanceof Collection ? new ArrayList<>((Collection<?>) definition.get("after"))
+                    : definition.get("after") != null ? Collections.singletonList(definition.get("after")) : Collections.emptyList();
+            this.expect = definition.get("expect") != null ? String.valueOf(definition.get("expect")) : null;
+        }
+
+        /**
+         * Collects the requests listed in {@code after} and the ones referenced by placeholders.
+         */
+        void collectDependencies(Set<String> requestNames) {
+            for (Object dependency : after) {
+                dependencies.add(String.valueOf(dependency));
+            }
+            collectReferences(path, requestNames);
+            collectReferences(body, requestNames);
+            collectReferences(headers, requestNames);
+            dependencies.remove(name);
+        }
+
+        private void collectReferences(Object value, Set<String> requestNames) {
+            if (value instanceof Map) {
+                ((Map<?, ?>) value).values().forEach(item -> collectReferences(item, requestNames));
+            } else if (value instanceof Collection) {
+                ((Collection<?>) value).forEach(item -> collectReferences(item, requestNames));
+            } else if (value != null) {
+                Matcher matcher = PLACEHOLDER.matcher(String.valueOf(value));
+                while (matcher.find()) {
+                    String first = matcher.group(1).split("\\.")[0];
+                    if (requestNames.contains(first)) {
+                        dependencies.add(first);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The body with its placeholders resolved, serialized as JSON unless configured as text
+         */
+        String body(Resolver resolver) {
+            if (body == null) {
+                return null;
+            }
+            if (body instanceof String) {
+                return resolver.resolve((String) body);
+            }
+            return gson.toJson(resolver.resolveTree(body));
+        }
+
+        Map<String, String> headers(Resolver resolver, String resolvedBody) {
+            Map<String, String> resolved = new LinkedHashMap<>();
+            if (resolvedBody != null && !(body instanceof String)) {
+                resolved.put("Content-Type", "application/json");
+            }
+            for (Map.Entry<?, ?> header : headers.entrySet()) {
+                resolved.put(String.valueOf(header.getKey()), resolver.resolve(String.valueOf(header.getValue())));
+            }
+            return resolved;
+        }
+
+        /**
+         * Checks the response status and parses the body as JSON.
+         *
+         * @return The parsed body, or JSON null when the body is empty or not JSON
+         */
+        JsonElement check(String seedName, int status, String responseBody) {
+            boolean ok = expect != null ? expect.equals(String.valueOf(status)) : status >= 200 && status < 300;
+            if (!ok) {
+                String snippet = responseBody == null ? "" : responseBody.substring(0, Math.min(200, responseBody.length()));
+                throw new IllegalStateException("Request '" + name + "' of seed '" + seedName + "' answered " + status
+                        + (expect != null ? " instead of " + expect : "") + ": " + snippet);
+            }
+            if (responseBody == null || responseBody.trim().isEmpty()) {
+                return JsonNull.INSTANCE;
+            }
+            try {
+                return JsonParser.parseString(responseBody);
+            } catch (JsonSyntaxException e) {
+                return JsonNull.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Resolves {@code ${...}} placeholders from parameters and request responses.
+     */
+    private static final class Resolver {
+        private final Map<String, String> parameters;
+        private final Map<String, JsonElement> results;
+
+        Resolver(Map<String, String> parameters, Map<String, JsonElement> results) {
+            this.parameters = parameters;
+            this.results = results;
+        }
+
+        String resolve(String template) {
+            Matcher matcher = PLACEHOLDER.matcher(template);
+            StringBuffer resolved = new StringBuffer();
+            while (matcher.find()) {
+                String value = lookup(matcher.group(1));
+                if (value == null) {
+                    throw new IllegalStateException("No value for placeholder '${" + matcher.group(1) + "}'");
+                }
+                matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+            }
+            matcher.appendTail(resolved);
+            return resolved.toString();
+        }
+
+        Object resolveTree(Object value) {
+            if (value instanceof Map) {
+                Map<Object, Object> resolved = new LinkedHashMap<>();
+                ((Map<?, ?>) value).forEach((key, item) -> resolved.put(key, resolveTree(item)));
+                return resolved;
+            }
+            if (value instanceof Collection) {
+                List<Object> resolved = new ArrayList<>();
+                ((Collection<?>) value).forEach(item -> resolved.add(resolveTree(item)));
+                return resolved;
+            }
+            return value instanceof String ? resolve((String) value) : value;
+        }
+
+        String lookup(String reference) {
+            if (parameters.containsKey(reference)) {
+                return parameters.get(reference);
+            }
+            String[] parts = reference.split("\\.");
+            JsonElement current;
+            synchronized (results) {
+                current = results.get(parts[0]);
+            }
+            for (int i = 1; i < parts.length && current != null; i++) {
+                if (current.isJsonObject()) {
+                    current = current.getAsJsonObject().get(parts[i]);
+                } else if (current.isJsonArray() && parts[i].matches("\\d+")
+                        && Integer.parseInt(parts[i]) < current.getAsJsonArray().size()) {
+                    current = current.getAsJsonArray().get(Integer.parseInt(parts[i]));
+                } else {
+                    current = null;
+                }
+            }
+            if (current == null || current.isJsonNull()) {
+                return null;
+            }
+            return current.isJsonPrimitive() ? current.getAsString() : current.toString();
+        }
+    }
+}
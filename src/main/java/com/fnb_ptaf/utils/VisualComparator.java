@@ -0,0 +1,479 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * The VisualComparator class compares screenshots of pages and elements against stored baselines.
+ * Comparisons take the cheapest path that decides them:
+ * <ol>
+ *     <li>identical bytes (same content hash as the baseline) match without decoding;</li>
+ *     <li>images whose perceptual hash is far from the baseline's differ regardless of the pixel
+ *     tolerance (they are still pixel-diffed for the diff image);</li>
+ *     <li>otherwise both images are decoded into {@code int[]} ARGB arrays and diffed in parallel row
+ *     tiles, ignoring pixels within the colour tolerance and anti-aliased edge pixels.</li>
+ * </ol>
+ *
+ * <p>Baselines are stored content-addressed: each image is written once as {@code objects/<sha256>.png}
+ * and an index maps baseline names to hashes, so identical baselines share storage and a baseline
+ * can be compared by hash alone. A missing baseline is recorded from the first capture. Configuration keys:
+ * <ul>
+ *     <li>{@code visual.baselineDir} - baseline store (default {@code .ptaf/baselines})</li>
+ *     <li>{@code visual.diffDir} - diff images of mismatches (default {@code target/visual-diffs})</li>
+ *     <li>{@code visual.threshold} - colour distance (0..1) below which pixels are equal (default 0.1)</li>
+ *     <li>{@code visual.maxDiffRatio} - fraction of differing pixels still accepted (default 0.001)</li>
+ *     <li>{@code visual.maxHashDistance} - perceptual hash distance above which images differ
+ *     regardless of {@code visual.maxDiffRatio} (default 12)</li>
+ *     <li>{@code visual.updateBaselines} - replace baselines with the captures (default false)</li>
+ * </ul>
+ */
+public class VisualComparator {
+    private static final Logger logger = LoggerFactory.getLogger(VisualComparator.class);
+
+    private static final Path baselineDir = Paths.get(ConfigurationProperties.getString("visual.baselineDir", ".ptaf/baselines"));
+    private static final Path diffDir = Paths.get(ConfigurationProperties.getString("visual.diffDir", "target/visual-diffs"));
+    private static final double threshold = ConfigurationProperties.getDouble("visual.threshold", 0.1);
+    private static final double maxDiffRatio = ConfigurationProperties.getDouble("visual.maxDiffRatio", 0.001);
+    private static final int maxHashDistance = ConfigurationProperties.getInt("visual.maxHashDistance", 12);
+    private static final boolean updateBaselines = ConfigurationProperties.getBoolean("visual.updateBaselines", false);
+
+    // Maximum YIQ colour distance between two pixels, used to scale the threshold
+    private static final double MAX_YIQ_DELTA = 35215;
+    private static final int TILE_ROWS = 64;
+    private static final int HASH_SIZE = 32;
+    private static final double[][] DCT_COSINES = new double[8][HASH_SIZE];
+
+    private static final Properties index = new Properties();
+    private static final Map<String, SoftReference<DecodedBaseline>> decodedBaselines = new ConcurrentHashMap<>();
+
+    static {
+        for (int u = 0; u < 8; u++) {
+            for (int x = 0; x < HASH_SIZE; x++) {
+                DCT_COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * HASH_SIZE));
+            }
+        }
+        Path indexFile = baselineDir.resolve("index.properties");
+        if (Files.exists(indexFile)) {
+            try (InputStream in = Files.newInputStream(indexFile)) {
+                index.load(in);
+            } catch (IOException e) {
+                logger.warn("Failed to read the baseline index '{}'", indexFile, e);
+            }
+        }
+    }
+
+    /**
+     * Compares a full-page screenshot against the named baseline.
+     *
+     * @param page The page to capture
+     * @param name The baseline name
+     * @return The comparison result
+     */
+    public static Result comparePage(Page page, String name) {
+        return compare(name, page.screenshot(new Page.ScreenshotOptions().setFullPage(true)));
+    }
+
+    /**
+     * Compares a screenshot of an element against the named baseline.
+     *
+     * @param locator The element to capture
+     * @param name    The baseline name
+     * @return The comparison result
+     */
+    public static Result compareElement(Locator locator, String name) {
+        return compare(name, locator.screenshot());
+    }
+
+    /**
+     * Compares an encoded image against the named baseline, recording it as the baseline if there
+     * is none yet (or if {@code visual.updateBaselines} is set).
+     *
+     * @param name  The baseline name
+     * @param image The encoded (PNG) image
+     * @return The comparison result
+     */
+    public static Result compare(String name, byte[] image) {
+        try {
+            String hash = sha256(image);
+            String baselineHash;
+            synchronized (index) {
+                baselineHash = index.getProperty(name + ".sha256");
+            }
+            if (baselineHash == null || updateBaselines) {
+                storeBaseline(name, hash, image);
+                return new Result(true, 0, 0, null, baselineHash == null ? "baseline recorded" : "baseline updated");
+            }
+            if (baselineHash.equals(hash)) {
+                RunMetrics.increment("visual.identical", 1);
+                return new Result(true, 0, 0, null, "identical");
+            }
+
+            BufferedImage candidateImage = ImageIO.read(new ByteArrayInputStream(image));
+            int width = candidateImage.getWidth();
+            int height = candidateImage.getHeight();
+            int[] candidate = pixels(candidateImage);
+            long candidateHash = perceptualHash(candidate, width, height);
+            long storedHash;
+            synchronized (index) {
+                storedHash = Long.parseUnsignedLong(index.getProperty(name + ".phash", "0"), 16);
+            }
+            // A hash rejection still runs the pixel diff below, so the failure carries a diff image
+            int distance = Long.bitCount(candidateHash ^ storedHash);
+            boolean hashRejected = distance > maxHashDistance;
+            if (hashRejected) {
+                RunMetrics.increment("visual.hashMismatches", 1);
+            }
+
+            DecodedBaseline decoded = decodedBaseline(baselineHash);
+            if (decoded.width != width || decoded.height != height) {
+                return new Result(false, -1, 1, null, String.format("size %dx%d differs from baseline %dx%d",
+                        width, height, decoded.width, decoded.height));
+            }
+            int[] baseline = decoded.pixels;
+            if (Arrays.equals(baseline, candidate) && !hashRejected) {
+                return new Result(true, 0, 0, null, "identical pixels");
+            }
+
+            int[] diff = new int[baseline.length];
+            int differing = diff(baseline, candidate, width, height, diff);
+            double ratio = (double) differing / (width * height);
+            RunMetrics.increment("visual.pixelDiffs", 1);
+            if (ratio <= maxDiffRatio && !hashRejected) {
+                return new Result(true, differing, ratio, null, "within tolerance");
+            }
+            Path diffImage = writeDiff(name, diff, width, height);
+            String reason = String.format("%d pixels (%.3f%%) differ", differing, ratio * 100);
+            return new Result(false, differing, ratio, diffImage, hashRejected ? "perceptual hash distance " + distance + ", " + reason : reason);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to compare screenshot '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Returns the decoded pixels of a baseline object. Decoded baselines are cached softly, as the
+     * same baseline is typically compared many times in a run.
+     */
+    private static DecodedBaseline decodedBaseline(String hash) throws IOException {
+        SoftReference<DecodedBaseline> cached = decodedBaselines.get(hash);
+        DecodedBaseline decoded = cached != null ? cached.get() : null;
+        if (decoded == null) {
+            BufferedImage image = ImageIO.read(objectPath(hash).toFile());
+            decoded = new DecodedBaseline(image.getWidth(), image.getHeight(), pixels(image));
+            decodedBaselines.put(hash, new SoftReference<>(decoded));
+        }
+        return decoded;
+    }
+
+    /**
+     * Diffs two images in parallel row tiles.
+     *
+     * @return The number of differing pixels; {@code diff} receives opaque red for each of them
+     */
+    private static int diff(int[] baseline, int[] candidate, int width, int height, int[] diff) {
+        double maxDelta = MAX_YIQ_DELTA * threshold * threshold;
+        AtomicInteger differing = new AtomicInteger();
+        int tiles = (height + TILE_ROWS - 1) / TILE_ROWS;
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            int count = 0;
+            int endRow = Math.min(height, (tile + 1) * TILE_ROWS);
+            for (int y = tile * TILE_ROWS; y < endRow; y++) {
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    if (baseline[i] == candidate[i] || colorDelta(baseline[i], candidate[i]) <= maxDelta) {
+                        // Faded baseline as context for the differences
+                        diff[i] = 0x40000000 | (baseline[i] & 0x00FFFFFF);
+                    } else if (isAntialiased(baseline, x, y, width, height) || isAntialiased(candidate, x, y, width, height)) {
+                        diff[i] = 0xFFFFFF00;
+                    } else {
+                        diff[i] = 0xFFFF0000;
+                        count++;
+                    }
+                }
+            }
+            differing.addAndGet(count);
+        });
+        return differing.get();
+    }
+
+    /**
+     * Returns true if a pixel looks like an anti-aliased edge: its brightness lies strictly between
+     * the darkest and brightest of its neighbours and at most two neighbours have its exact colour.
+     */
+    private static boolean isAntialiased(int[] pixels, int x, int y, int width, int height) {
+        int pixel = pixels[y * width + x];
+        double brightness = luma(pixel);
+        double darkest = Double.MAX_VALUE;
+        double brightest = -Double.MAX_VALUE;
+        int equal = 0;
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if (nx == x && ny == y) {
+                    continue;
+                }
+                int neighbour = pixels[ny * width + nx];
+                if (neighbour == pixel && ++equal > 2) {
+                    return false;
+                }
+                double neighbourBrightness = luma(neighbour);
+                darkest = Math.min(darkest, neighbourBrightness);
+                brightest = Math.max(brightest, neighbourBrightness);
+            }
+        }
+        return darkest < brightness && brightness < brightest;
+    }
+
+    /**
+     * Squared YIQ distance of two ARGB pixels blended over white, weighted for perceived difference.
+     */
+    private static double colorDelta(int a, int b) {
+        double[] yiqA = yiq(a);
+        double[] yiqB = yiq(b);
+        double dy = yiqA[0] - yiqB[0];
+        double di = yiqA[1] - yiqB[1];
+        double dq = yiqA[2] - yiqB[2];
+        return 0.5053 * dy * dy + 0.299 * di * di + 0.1957 * dq * dq;
+    }
+
+    private static double[] yiq(int argb) {
+        double alpha = ((argb >>> 24) & 0xFF) / 255.0;
+        double r = 255 + (((argb >> 16) & 0xFF) - 255) * alpha;
+        double g = 255 + (((argb >> 8) & 0xFF) - 255) * alpha;
+        double b = 255 + ((argb & 0xFF) - 255) * alpha;
+        return new double[]{
+                r * 0.29889531 + g * 0.58662247 + b * 0.11448223,
+                r * 0.59597799 - g * 0.27417610 - b * 0.32180189,
+                r * 0.21147017 - g * 0.52261711 + b * 0.31114694};
+    }
+
+    private static double luma(int argb) {
+        return ((argb >> 16) & 0xFF) * 0.299 + ((argb >> 8) & 0xFF) * 0.587 + (argb & 0xFF) * 0.114;
+    }
+
+    /**
+     * Returns the pixels of an image as ARGB values, reading the raster directly for the layouts
+     * ImageIO produces for PNG instead of going through {@code getRGB} pixel by pixel.
+     */
+    private static int[] pixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+                return ((DataBufferInt) image.getRaster().getDataBuffer()).getData().clone();
+            case BufferedImage.TYPE_INT_RGB: {
+                int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                int[] pixels = new int[data.length];
+                for (int i = 0; i < data.length; i++) {
+                    pixels[i] = 0xFF000000 | data[i];
+                }
+                return pixels;
+            }
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int[] pixels = new int[width * height];
+                for (int i = 0, j = 0; i < pixels.length; i++, j += 4) {
+                    pixels[i] = (data[j] & 0xFF) << 24 | (data[j + 3] & 0xFF) << 16 | (data[j + 2] & 0xFF) << 8 | (data[j + 1] & 0xFF);
+                }
+                return pixels;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR: {
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                int[] pixels = new int[width * height];
+                for (int i = 0, j = 0; i < pixels.length; i++, j += 3) {
+                    pixels[i] = 0xFF000000 | (data[j + 2] & 0xFF) << 16 | (data[j + 1] & 0xFF) << 8 | (data[j] & 0xFF);
+                }
+                return pixels;
+            }
+            default:
+                return image.getRGB(0, 0, width, height, null, 0, width);
+        }
+    }
+
+    /**
+     * Computes a 64-bit DCT perceptual hash: the image is reduced to 32x32 grey levels and each bit
+     * tells whether one of the 8x8 lowest frequencies is above their median.
+     */
+    private static long perceptualHash(int[] pixels, int width, int height) {
+        double[][] grey = new double[HASH_SIZE][HASH_SIZE];
+        for (int gy = 0; gy < HASH_SIZE; gy++) {
+            int y0 = gy * height / HASH_SIZE;
+            int y1 = Math.max(y0 + 1, (gy + 1) * height / HASH_SIZE);
+            for (int gx = 0; gx < HASH_SIZE; gx++) {
+                int x0 = gx * width / HASH_SIZE;
+                int x1 = Math.max(x0 + 1, (gx + 1) * width / HASH_SIZE);
+                double sum = 0;
+                int count = 0;
+                for (int y = y0; y < Math.min(y1, height); y++) {
+                    for (int x = x0; x < Math.min(x1, width); x++) {
+                        sum += luma(pixels[y * width + x]);
+                        count++;
+                    }
+                }
+                grey[gy][gx] = count > 0 ? sum / count : 0;
+            }
+        }
+        double[] coefficients = new double[64];
+        for (int u = 0; u < 8; u++) {
+            for (int v = 0; v < 8; v++) {
+                double sum = 0;
+                for (int y = 0; y < HASH_SIZE; y++) {
+                    for (int x = 0; x < HASH_SIZE; x++) {
+                        sum += grey[y][x] * DCT_COSINES[u][y] * DCT_COSINES[v][x];
+                    }
+                }
+                coefficients[u * 8 + v] = sum;
+            }
+        }
+        // The DC coefficient only reflects overall brightness
+        double[] sorted = Arrays.copyOfRange(coefficients, 1, 64);
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        long hash = 0;
+        for (int i = 1; i < 64; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    private static void storeBaseline(String name, String hash, byte[] image) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image));
+        long phash = perceptualHash(pixels(decoded), decoded.getWidth(), decoded.getHeight());
+        Path object = objectPath(hash);
+        Files.createDirectories(object.getParent());
+        if (!Files.exists(object)) {
+            Path temp = Files.createTempFile(object.getParent(), hash, ".tmp");
+            Files.write(temp, image);
+            moveIntoPlace(temp, object);
+        }
+        synchronized (index) {
+            index.setProperty(name + ".sha256", hash);
+            index.setProperty(name + ".phash", Long.toHexString(phash));
+            Path temp = Files.createTempFile(baselineDir, "index", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                index.store(out, "Baseline name -> content hash and perceptual hash");
+            }
+            moveIntoPlace(temp, baselineDir.resolve("index.properties"));
+        }
+        logger.info("Baseline '{}' stored as {}", name, hash);
+    }
+
+    private static Path writeDiff(String name, int[] diff, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, diff, 0, width);
+        Files.createDirectories(diffDir);
+        Path file = diffDir.resolve(name.replaceAll("[^A-Za-z0-9._-]+", "_") + "-diff.png");
+        ImageIO.write(image, "png", file.toFile());
+        return file;
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path objectPath(String hash) {
+        return baselineDir.resolve("objects").resolve(hash + ".png");
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Pixels of a decoded baseline image.
+     */
+    private static class DecodedBaseline {
+        private final int width;
+        private final int height;
+        private final int[] pixels;
+
+        DecodedBaseline(int width, int height, int[] pixels) {
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Outcome of a comparison.
+     */
+    public static final class Result {
+        private final boolean match;
+        private final int differingPixels;
+        private final double diffRatio;
+        private final Path diffImage;
+        private final String description;
+
+        Result(boolean match, int differingPixels, double diffRatio, Path diffImage, String description) {
+            this.match = match;
+            this.differingPixels = differingPixels;
+            this.diffRatio = diffRatio;
+            this.diffImage = diffImage;
+            this.description = description;
+        }
+
+        public boolean isMatch() {
+            return match;
+        }
+
+        /**
+         * @return The number of differing pixels, or -1 if the images were not diffed pixel by pixel
+         */
+        public int getDifferingPixels() {
+            return differingPixels;
+        }
+
+        public double getDiffRatio() {
+            return diffRatio;
+        }
+
+        /**
+         * @return The diff image of a mismatch, or null
+         */
+        public Path getDiffImage() {
+            return diffImage;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+}
@@ -86,4 +86,26 @@ public class YamlReader {
         // Return the final value
         return value.get(keys[keys.length - 1]);
     }
+
+    /**
+     * Retrieves a value from the loaded YAML data, falling back to a default when any part of the
+     * dot-separated key is missing.
+     *
+     * @param key          The dot-separated key to look up
+     * @param defaultValue The value returned when the key is not present
+     * @return The value associated with the key, or the default value
+     */
+    public static Object getOrDefault(String key, Object defaultValue) {
+        // Split the key into parts
+        String[] keys = key.split("\\.");
+        Object value = data;
+        // Traverse the map using the key parts, stopping at the first missing level
+        for (String part : keys) {
+            if (!(value instanceof Map)) {
+                return defaultValue;
+            }
+            value = ((Map<?, ?>) value).get(part);
+        }
+        return value != null ? value : defaultValue;
+    }
 }
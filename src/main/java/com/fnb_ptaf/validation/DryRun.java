@@ -0,0 +1,140 @@
+package com.fnb_ptaf.validation;
+
+import com.fnb_ptaf.utils.YamlReader;
+import io.cucumber.core.cli.Main;
+import io.cucumber.plugin.Plugin;
+import io.cucumber.plugin.event.Argument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared parts of the tools that inspect features without a browser ({@link DryRunValidator} and
+ * {@code UsageIndex}): running Cucumber with {@code --dry-run} and a plugin, and reading step arguments
+ * by the conventions of the step definitions, where an argument naming a registered element is
+ * followed by the key of that element.
+ */
+public final class DryRun {
+
+    private DryRun() {
+    }
+
+    /**
+     * Runs the features with {@code --dry-run}, so no hooks and no step bodies are executed, and with
+     * the given plugin to inspect the steps.
+     *
+     * @param glue     The glue package of the step definitions
+     * @param plugin   The plugin class; Cucumber creates the instance
+     * @param features The feature paths, in Cucumber's command line syntax
+     * @return The exit status of Cucumber
+     */
+    public static byte run(String glue, Class<? extends Plugin> plugin, List<String> features) {
+        // Cucumber 6 reads the publish banner setting from properties only, not from the command line
+        System.setProperty("cucumber.publish.quiet", "true");
+        List<String> cucumberArgs = new ArrayList<>(Arrays.asList(
+                "--dry-run",
+                "--monochrome",
+                "--glue", glue,
+                "--plugin", plugin.getName()));
+        cucumberArgs.addAll(features);
+        return Main.run(cucumberArgs.toArray(new String[0]), Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Reads the arguments a step was matched with. An argument naming a registered element takes the
+     * argument after it as its key, whether or not the element has that key; arguments without a
+     * value are skipped.
+     *
+     * @param arguments The arguments of the step definition
+     * @return The arguments in step order, with element arguments and their keys combined
+     */
+    public static List<StepArgument> stepArguments(List<Argument> arguments) {
+        List<StepArgument> result = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            Argument argument = arguments.get(i);
+            String value = unquote(argument.getValue());
+            if (value == null) {
+                continue;
+            }
+            String key = null;
+            boolean element = isElement(value);
+            if (element && i + 1 < arguments.size() && arguments.get(i + 1).getValue() != null) {
+                key = unquote(arguments.get(++i).getValue());
+            }
+            result.add(new StepArgument(argument, value, element, key));
+        }
+        return result;
+    }
+
+    /**
+     * @param name An element name
+     * @return Whether the element registry declares the element
+     */
+    public static boolean isElement(String name) {
+        return YamlReader.getOrDefault("elements." + name, null) instanceof Map;
+    }
+
+    /**
+     * @param element An element name
+     * @param key     A key name
+     * @return Whether the element declares the key; {@code context} is not a key
+     */
+    public static boolean isKey(String element, String key) {
+        return !"context".equals(key) && YamlReader.getOrDefault("elements." + element + "." + key, null) != null;
+    }
+
+    /**
+     * Strips the quotes Cucumber keeps around {@code {string}} arguments.
+     */
+    public static String unquote(String value) {
+        if (value != null && value.length() >= 2 && (value.startsWith("\"") && value.endsWith("\"")
+                || value.startsWith("'") && value.endsWith("'"))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * An argument of a step, unquoted, with the key that follows it if it names a registered element.
+     */
+    public static final class StepArgument {
+        private final Argument argument;
+        private final String value;
+        private final boolean element;
+        private final String key;
+
+        StepArgument(Argument argument, String value, boolean element, String key) {
+            this.argument = argument;
+            this.value = value;
+            this.element = element;
+            this.key = key;
+        }
+
+        /**
+         * @return The argument as matched, with its position in the step text
+         */
+        public Argument getArgument() {
+            return argument;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * @return Whether the value names a registered element
+         */
+        public boolean isElement() {
+            return element;
+        }
+
+        /**
+         * @return The argument after an element argument, or null if there is none
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.fnb_ptaf.validation;
+
+import com.fnb_ptaf.GetLocatorForType;
+import com.fnb_ptaf.HandleAction;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.YamlReader;
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.Argument;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestRunFinished;
+import io.cucumber.plugin.event.TestRunStarted;
+import io.cucumber.plugin.event.TestStepFinished;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The DryRunValidator checks every feature against the step definitions and the element registry
+ * without starting a browser, so that typos in step text, element names, keys, locator types and
+ * actions are reported in seconds instead of part-way through an expensive run. It runs Cucumber
+ * with {@code --dry-run} (no hooks and no step bodies are executed) and registers itself as a plugin
+ * to inspect the arguments every step was matched with.
+ *
+ * <p>Step arguments are checked by the conventions of the step definitions: an argument naming a
+ * registered element is followed by the key of that element, and an argument next to the word
+ * {@code element} or {@code action} must name a registered element or a supported action. The
+ * element registry itself is checked for unknown locator types and malformed contexts.
+ *
+ * <p>Run it with {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.validation.DryRunValidator
+ * -Dexec.args="<feature path>..."}; it fails if problems were found and writes them to
+ * {@code dryRun.reportFile} (default {@code target/dry-run-report.txt}). The glue package is read
+ * from {@code dryRun.glue} (default {@code com.fnb_ptaf}).
+ */
+public class DryRunValidator implements ConcurrentEventListener {
+    private static final Logger logger = LoggerFactory.getLogger(DryRunValidator.class);
+
+    private static final Pattern ADJACENT_WORD = Pattern.compile("^\\s*(\\w+)");
+    private static final Pattern PRECEDING_WORD = Pattern.compile("(\\w+)\\s*$");
+    private static final Pattern CONTEXT_SEGMENT = Pattern.compile("^(frame|shadow):(.+)$");
+
+    // Problems found by the plugin instance of the current run, sorted by location
+    private static final Set<String> problems = Collections.synchronizedSet(new TreeSet<>());
+    private static int checkedSteps;
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Usage: DryRunValidator <feature path>...");
+        }
+        List<String> found = validate(Arrays.asList(args));
+        if (!found.isEmpty()) {
+            throw new IllegalStateException("Dry run found " + found.size() + " problem(s), see "
+                    + ConfigurationProperties.getString("dryRun.reportFile", "target/dry-run-report.txt"));
+        }
+    }
+
+    /**
+     * Dry-runs the features and writes the problems found to {@code dryRun.reportFile}. A Cucumber
+     * failure and a run that matched no steps at all are problems too, so a wrong feature path or glue
+     * package does not pass as a clean run.
+     *
+     * @param features The feature paths, in Cucumber's command line syntax
+     * @return The problems found, sorted by location; empty if the features are valid
+     */
+    public static List<String> validate(List<String> features) {
+        long started = System.currentTimeMillis();
+        problems.clear();
+        synchronized (problems) {
+            checkedSteps = 0;
+        }
+        byte status = DryRun.run(ConfigurationProperties.getString("dryRun.glue", "com.fnb_ptaf"), DryRunValidator.class, features);
+
+        int steps;
+        synchronized (problems) {
+            steps = checkedSteps;
+        }
+        if (status != 0) {
+            problems.add("cucumber: dry run exited with status " + status);
+        }
+        if (steps == 0) {
+            problems.add("cucumber: no steps were checked in " + features);
+        }
+        Path report = Paths.get(ConfigurationProperties.getString("dryRun.reportFile", "target/dry-run-report.txt"));
+        List<String> lines;
+        synchronized (problems) {
+            lines = new ArrayList<>(problems);
+        }
+        try {
+            if (report.getParent() != null) {
+                Files.createDirectories(report.getParent());
+            }
+            Files.write(report, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.error("Failed to write dry-run report to '{}'", report, e);
+        }
+        lines.forEach(logger::error);
+        logger.info("Dry run checked {} steps in {} ms: {} problem(s)", steps, System.currentTimeMillis() - started, lines.size());
+        return lines;
+    }
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestRunStarted.class, event -> validateRegistry());
+        publisher.registerHandlerFor(TestStepFinished.class, this::onTestStepFinished);
+        publisher.registerHandlerFor(TestRunFinished.class, event -> {
+            if (problems.isEmpty()) {
+                logger.info("No problems found");
+            }
+        });
+    }
+
+    private void onTestStepFinished(TestStepFinished event) {
+        if (!(event.getTestStep() instanceof PickleStepTestStep)) {
+            return;
+        }
+        PickleStepTestStep step = (PickleStepTestStep) event.getTestStep();
+        String location = step.getUri() + ":" + step.getStep().getLine();
+        synchronized (problems) {
+            checkedSteps++;
+        }
+        Status status = event.getResult().getStatus();
+        if (status == Status.UNDEFINED) {
+            problems.add(location + ": undefined step '" + step.getStep().getText() + "'");
+            return;
+        }
+        if (status == Status.AMBIGUOUS) {
+            problems.add(location + ": ambiguous step '" + step.getStep().getText() + "'");
+            return;
+        }
+        validateArguments(location, step.getStep().getText(), step.getDefinitionArgument());
+    }
+
+    private void validateArguments(String location, String text, List<Argument> arguments) {
+        for (DryRun.StepArgument argument : DryRun.stepArguments(arguments)) {
+            String value = argument.getValue();
+            String before = word(PRECEDING_WORD, text.substring(0, argument.getArgument().getStart()));
+            String after = word(ADJACENT_WORD, text.substring(argument.getArgument().getEnd()));
+            if (argument.isElement()) {
+                if (argument.getKey() != null && !DryRun.isKey(value, argument.getKey())) {
+                    problems.add(location + ": element '" + value + "' has no key '" + argument.getKey() + "'");
+                }
+            } else if (refersTo("element", before, after)) {
+                problems.add(location + ": unknown element '" + value + "'");
+            } else if (refersTo("action", before, after) && !HandleAction.ACTIONS.containsKey(value)) {
+                problems.add(location + ": unknown action '" + value + "', expected one of " + new TreeSet<>(HandleAction.ACTIONS.keySet()));
+            }
+        }
+    }
+
+    /**
+     * Checks every key of every registered element for resolvable locators and contexts.
+     */
+    private static void validateRegistry() {
+        Object elements = YamlReader.getOrDefault("elements", null);
+        if (!(elements instanceof Map)) {
+            problems.add("elements: no element registry found");
+            return;
+        }
+        for (Map.Entry<?, ?> element : ((Map<?, ?>) elements).entrySet()) {
+            if (!(element.getValue() instanceof Map)) {
+                problems.add("elements." + element.getKey() + ": must map keys to locators");
+                continue;
+            }
+            for (Map.Entry<?, ?> key : ((Map<?, ?>) element.getValue()).entrySet()) {
+                String location = "elements." + element.getKey() + "." + key.getKey();
+                if ("context".equals(key.getKey())) {
+                    validateContext(location, String.valueOf(key.getValue()));
+                    continue;
+                }
+                Collection<?> candidates = key.getValue() instanceof Collection
+                        ? (Collection<?>) key.getValue() : Collections.singletonList(key.getValue());
+                for (Object candidate : candidates) {
+                    validateLocator(location, String.valueOf(candidate));
+                }
+            }
+        }
+    }
+
+    private static void validateLocator(String location, String locatorValue) {
+        String problem = GetLocatorForType.validate(locatorValue);
+        if (problem != null) {
+            problems.add(location + ": " + problem);
+        }
+    }
+
+    private static void validateContext(String location, String contextPath) {
+        if (contextPath.trim().isEmpty() || "page".equals(contextPath.trim())) {
+            return;
+        }
+        for (String segment : contextPath.split(">")) {
+            if (!CONTEXT_SEGMENT.matcher(segment.trim()).matches()) {
+                problems.add(location + ": context segment '" + segment.trim() + "' must be frame:<target> or shadow:<locator>");
+            }
+        }
+    }
+
+    private static boolean refersTo(String noun, String before, String after) {
+        return noun.equalsIgnoreCase(before) || noun.equalsIgnoreCase(after);
+    }
+
+    private static String word(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : "";
+    }
+}
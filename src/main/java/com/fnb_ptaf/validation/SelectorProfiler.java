@@ -0,0 +1,322 @@
+package com.fnb_ptaf.validation;
+
+import com.fnb_ptaf.GetContextScope;
+import com.fnb_ptaf.GetLocatorForType;
+import com.fnb_ptaf.LocatorScope;
+import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.ConfigurationProperties;
+import com.fnb_ptaf.utils.YamlReader;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import static com.fnb_ptaf.GetActualLocator.getActualLocator;
+import static com.fnb_ptaf.GetLocatorType.getLocatorType;
+
+/**
+ * The SelectorProfiler measures what every locator of the element catalogue costs on a real page. It
+ * opens a live page or a saved HTML snapshot of one and, for every candidate locator of every
+ * {@code element.key} in {@code elements/*.yml}, counts its matches several times and takes the
+ * median query time. The round trip to the browser is measured separately and subtracted, so the
+ * times are what the selector engine spends on the page.
+ *
+ * <p>For each key whose locator matches, the element it finds is inspected for a test id, an id, a
+ * name or an accessible role and name. Locators built from them are profiled in turn and suggested
+ * when they find exactly the same element, alone, faster than the declared locator. The report lists
+ * the slowest locators, the suggestions and the locators that match no element or more than one.
+ *
+ * <p>Run it with {@code mvn exec:java -Dexec.mainClass=com.fnb_ptaf.validation.SelectorProfiler
+ * -Dexec.args="<URL, base URL key or snapshot file> [<element>...]"}. Configuration keys:
+ * <ul>
+ *     <li>{@code profiler.target} - page to profile when no argument is given (default the {@code baseUrl} key)</li>
+ *     <li>{@code profiler.runs} - timed queries per locator (default 5)</li>
+ *     <li>{@code profiler.top} - slowest locators listed in the report (default 20)</li>
+ *     <li>{@code profiler.reportFile} - report location (default {@code target/selector-profile.txt})</li>
+ * </ul>
+ */
+public class SelectorProfiler {
+    private static final Logger logger = LoggerFactory.getLogger(SelectorProfiler.class);
+
+    private static final Pattern CSS_IDENTIFIER = Pattern.compile("^[A-Za-z_][\\w-]*$");
+    private static final int MAX_NAME_LENGTH = 80;
+
+    // Identifying attributes of an element, read in the page
+    private static final String DESCRIBE = "e => {"
+            + " const implicit = { BUTTON: 'button', H1: 'heading', H2: 'heading', H3: 'heading', H4: 'heading',"
+            + " H5: 'heading', H6: 'heading', A: e.hasAttribute('href') ? 'link' : null };"
+            + " return { testId: e.getAttribute('data-testid'), id: e.id || null, name: e.getAttribute('name'),"
+            + " role: e.getAttribute('role') || implicit[e.tagName] || null,"
+            + " label: (e.getAttribute('aria-label') || e.innerText || '').trim() }; }";
+
+    private final int runs = Math.max(1, ConfigurationProperties.getInt("profiler.runs", 5));
+    private final List<Measurement> measurements = new ArrayList<>();
+    private final List<Suggestion> suggestions = new ArrayList<>();
+    private double roundTripMs;
+
+    public static void main(String[] args) throws IOException {
+        String target = args.length > 0 ? args[0] : ConfigurationProperties.getString("profiler.target", "baseUrl");
+        List<String> elements = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : Collections.emptyList();
+        Path reportFile = Paths.get(ConfigurationProperties.getString("profiler.reportFile", "target/selector-profile.txt"));
+        String url = resolveTarget(target);
+
+        Browser browser = BrowserFactory.createStandaloneBrowser(BrowserFactory.BrowserTypeEnum.fromName(ConfigurationProperties.getBrowser()));
+        SelectorProfiler profiler = new SelectorProfiler();
+        try {
+            BrowserContext context = browser.newContext();
+            Page page = context.newPage();
+            page.navigate(url);
+            page.waitForLoadState();
+            profiler.profile(page, elements);
+            context.close();
+        } finally {
+            BrowserFactory.closeBrowser(browser);
+        }
+        profiler.writeReport(reportFile, url);
+    }
+
+    /**
+     * @return The URL of a target given as a snapshot file, a base URL key or a URL
+     */
+    private static String resolveTarget(String target) {
+        Path snapshot = Paths.get(target);
+        if (Files.isRegularFile(snapshot)) {
+            return snapshot.toAbsolutePath().toUri().toString();
+        }
+        Object configured = YamlReader.getOrDefault(target, null);
+        return configured instanceof String ? (String) configured : target;
+    }
+
+    /**
+     * Profiles the locators of the given elements, or of all elements if none are given.
+     */
+    void profile(Page page, Collection<String> elementNames) {
+        roundTripMs = median(() -> page.evaluate("() => 0"));
+        logger.info("Browser round trip: {} ms", format(roundTripMs));
+
+        Object registry = YamlReader.getOrDefault("elements", null);
+        if (!(registry instanceof Map)) {
+            logger.warn("No elements registered");
+            return;
+        }
+        for (Map.Entry<?, ?> element : new TreeMap<>((Map<?, ?>) registry).entrySet()) {
+            String elementName = String.valueOf(element.getKey());
+            if (!(element.getValue() instanceof Map) || !elementNames.isEmpty() && !elementNames.contains(elementName)) {
+                continue;
+            }
+            LocatorScope scope;
+            try {
+                scope = GetContextScope.getElementScope(page, elementName);
+            } catch (RuntimeException e) {
+                logger.warn("Skipping element '{}': {}", elementName, e.getMessage());
+                continue;
+            }
+            for (Map.Entry<?, ?> key : new TreeMap<>((Map<?, ?>) element.getValue()).entrySet()) {
+                if (!"context".equals(key.getKey())) {
+                    profileKey(scope, elementName + "." + key.getKey(), key.getValue());
+                }
+            }
+        }
+        logger.info("Profiled {} locator(s), {} suggestion(s)", measurements.size(), suggestions.size());
+    }
+
+    private void profileKey(LocatorScope scope, String id, Object value) {
+        Collection<?> candidates = value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+        Measurement found = null;
+        for (Object candidate : candidates) {
+            Measurement measurement = measure(scope, id, String.valueOf(candidate));
+            measurements.add(measurement);
+            if (found == null && measurement.matches > 0) {
+                found = measurement;
+            }
+        }
+        if (found != null) {
+            suggest(scope, found);
+        }
+    }
+
+    private Measurement measure(LocatorScope scope, String id, String value) {
+        Measurement measurement = new Measurement(id, value);
+        try {
+            measurement.locator = GetLocatorForType.getLocatorForType(getLocatorType(value), scope, getActualLocator(value));
+            // Untimed first query, so engine set-up and frame attachment are not counted
+            measurement.matches = measurement.locator.count();
+            measurement.costMs = Math.max(0, median(measurement.locator::count) - roundTripMs);
+        } catch (RuntimeException e) {
+            measurement.error = e.getMessage() != null ? e.getMessage().split("\n")[0] : e.toString();
+        }
+        return measurement;
+    }
+
+    /**
+     * Builds locators from the identifying attributes of the element a locator finds and suggests the
+     * fastest one that finds exactly that element, if it is faster than the locator.
+     */
+    private void suggest(LocatorScope scope, Measurement current) {
+        Map<?, ?> description;
+        try {
+            Locator target = current.locator.first();
+            target.evaluate("e => { window.__ptafProfiled = e; }");
+            description = (Map<?, ?>) target.evaluate(DESCRIBE);
+        } catch (RuntimeException e) {
+            return;
+        }
+        List<String> alternatives = new ArrayList<>();
+        String testId = (String) description.get("testId");
+        String elementId = (String) description.get("id");
+        String name = (String) description.get("name");
+        String role = (String) description.get("role");
+        String label = (String) description.get("label");
+        if (testId != null && !testId.isEmpty()) {
+            alternatives.add("TestId_" + testId);
+        }
+        if (elementId != null && CSS_IDENTIFIER.matcher(elementId).matches()) {
+            alternatives.add("Id_" + elementId);
+        }
+        if (name != null && !name.isEmpty() && name.indexOf('\'') == -1) {
+            alternatives.add("Name_" + name);
+        }
+        if (label != null && !label.isEmpty() && label.length() <= MAX_NAME_LENGTH && label.indexOf('\n') == -1) {
+            if ("button".equals(role)) {
+                alternatives.add("Button_" + label);
+            } else if ("link".equals(role)) {
+                alternatives.add("Link_" + label);
+            } else if ("heading".equals(role)) {
+                alternatives.add("Heading_" + label);
+            }
+        }
+
+        Measurement best = null;
+        for (String alternative : alternatives) {
+            if (alternative.equals(current.value)) {
+                continue;
+            }
+            Measurement measurement = measure(scope, current.id, alternative);
+            if (measurement.error != null || measurement.matches != 1 || !isProfiledElement(measurement.locator)) {
+                continue;
+            }
+            if (best == null || measurement.costMs < best.costMs) {
+                best = measurement;
+            }
+        }
+        // Also worth it when not faster, if the current locator is ambiguous
+        if (best != null && (best.costMs < current.costMs || current.matches > 1)) {
+            suggestions.add(new Suggestion(current, best));
+        }
+    }
+
+    private static boolean isProfiledElement(Locator locator) {
+        try {
+            return Boolean.TRUE.equals(locator.first().evaluate("e => e === window.__ptafProfiled"));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private double median(Runnable query) {
+        double[] samples = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            query.run();
+            samples[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(samples);
+        return runs % 2 == 1 ? samples[runs / 2] : (samples[runs / 2 - 1] + samples[runs / 2]) / 2;
+    }
+
+    void writeReport(Path reportFile, String url) throws IOException {
+        int top = ConfigurationProperties.getInt("profiler.top", 20);
+        List<Measurement> slowest = new ArrayList<>();
+        List<Measurement> problems = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            if (measurement.error != null || measurement.matches != 1) {
+                problems.add(measurement);
+            }
+            if (measurement.error == null) {
+                slowest.add(measurement);
+            }
+        }
+        slowest.sort(Comparator.comparingDouble((Measurement measurement) -> measurement.costMs).reversed());
+        suggestions.sort(Comparator.comparingDouble((Suggestion suggestion) -> suggestion.current.costMs - suggestion.alternative.costMs).reversed());
+
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8))) {
+            writer.printf("Selector profile of %s%n", url);
+            writer.printf("%d locator(s), median of %d queries each, browser round trip of %s ms subtracted%n%n",
+                    measurements.size(), runs, format(roundTripMs));
+
+            writer.printf("Slowest locators%n");
+            for (Measurement measurement : slowest.subList(0, Math.min(top, slowest.size()))) {
+                writer.printf("%10s ms  %3d match(es)  %s: '%s'%n", format(measurement.costMs), measurement.matches, measurement.id, measurement.value);
+            }
+
+            writer.printf("%nSuggested locators - same element, found alone, faster%n");
+            if (suggestions.isEmpty()) {
+                writer.printf("  none%n");
+            }
+            for (Suggestion suggestion : suggestions) {
+                writer.printf("  %s: '%s' (%s ms, %d match(es)) -> '%s' (%s ms)%n", suggestion.current.id, suggestion.current.value,
+                        format(suggestion.current.costMs), suggestion.current.matches, suggestion.alternative.value, format(suggestion.alternative.costMs));
+            }
+
+            writer.printf("%nLocators that do not match exactly one element on this page%n");
+            if (problems.isEmpty()) {
+                writer.printf("  none%n");
+            }
+            for (Measurement measurement : problems) {
+                writer.printf("  %s: '%s' - %s%n", measurement.id, measurement.value,
+                        measurement.error != null ? "error: " + measurement.error : measurement.matches + " match(es)");
+            }
+        }
+        logger.info("Selector profile written to {}", reportFile.toAbsolutePath());
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+
+    private static final class Measurement {
+        final String id;
+        final String value;
+        Locator locator;
+        int matches;
+        double costMs;
+        String error;
+
+        Measurement(String id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+
+    private static final class Suggestion {
+        final Measurement current;
+        final Measurement alternative;
+
+        Suggestion(Measurement current, Measurement alternative) {
+            this.current = current;
+            this.alternative = alternative;
+        }
+    }
+}
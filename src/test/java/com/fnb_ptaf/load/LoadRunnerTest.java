@@ -0,0 +1,83 @@
+package com.fnb_ptaf.load;
+
+import com.fnb_ptaf.load.fixture.FixtureSteps;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the load runner against a local fixture server with browser-free glue.
+ */
+@Test(singleThreaded = true)
+public class LoadRunnerTest {
+    private static final List<String> FEATURES = Collections.singletonList("classpath:com/fnb_ptaf/load/fixture");
+    private static final String GLUE = "com.fnb_ptaf.load.fixture";
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+
+    @BeforeClass
+    public void startFixtureServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            boolean found = "/".equals(exchange.getRequestURI().getPath());
+            byte[] body = (found ? "<h1>fixture</h1>" : "not found").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(found ? 200 : 404, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        FixtureSteps.baseUrl = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopFixtureServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void virtualUsersReplayTheScenarioUntilTheDeadline() throws Exception {
+        requests.set(0);
+        Map<String, Object> report = LoadRunner.run("^Fixture page loads$", FEATURES, GLUE, 2, 0, 2500);
+
+        long passed = (long) report.get("passedIterations");
+        assertTrue(passed >= 2, "every virtual user should complete at least one iteration, got " + passed);
+        assertEquals(report.get("failedIterations"), 0L);
+        assertEquals(requests.get(), (int) passed, "one request per iteration");
+        Map<?, ?> steps = (Map<?, ?>) report.get("steps");
+        assertEquals(steps.size(), 2);
+        for (Object stats : steps.values()) {
+            assertEquals(((Map<?, ?>) stats).get("count"), (int) passed);
+        }
+    }
+
+    @Test
+    public void failedIterationsAreCountedAndTheLoadContinues() throws Exception {
+        Map<String, Object> report = LoadRunner.run("^Fixture page is missing$", FEATURES, GLUE, 1, 0, 2500);
+
+        assertEquals(report.get("passedIterations"), 0L);
+        assertTrue((long) report.get("failedIterations") >= 1);
+    }
+
+    @Test
+    public void unknownScenarioFailsInsteadOfLooping() {
+        assertThrows(IllegalArgumentException.class, () -> LoadRunner.run("^No such scenario$", FEATURES, GLUE, 1, 0, 60_000));
+    }
+}
@@ -0,0 +1,34 @@
+package com.fnb_ptaf.load.fixture;
+
+import io.cucumber.java.en.Then;
+import io.cucumber.java.en.When;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Browser-free steps against the fixture server of {@code LoadRunnerTest}.
+ */
+public class FixtureSteps {
+    public static volatile URI baseUrl;
+
+    private int status;
+
+    @When("the user requests {string}")
+    public void theUserRequests(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) baseUrl.resolve(path).toURL().openConnection();
+        try {
+            status = connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Then("the response status is {int}")
+    public void theResponseStatusIs(int expected) {
+        assertEquals(status, expected);
+    }
+}
@@ -0,0 +1,69 @@
+package com.fnb_ptaf.runners;
+
+import com.fnb_ptaf.utils.BrowserFactory;
+import com.fnb_ptaf.utils.BrowserMatrix;
+import io.cucumber.testng.FeatureWrapper;
+import io.cucumber.testng.PickleWrapper;
+import io.cucumber.testng.TestNGCucumberRunner;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for runners that run every scenario against every browser of {@code matrix.browsers}
+ * in one JVM. It replaces {@code AbstractTestNGCucumberTests}: the scenarios are crossed with the
+ * browsers and all combinations are handed to TestNG's parallel data provider, so the run takes
+ * about as long as the slowest browser rather than the sum of all of them. Each combination is
+ * reported with its browser as a test parameter.
+ *
+ * <pre>
+ * &#64;CucumberOptions(features = "src/test/resources/features", glue = "com.fnb_ptaf")
+ * public class Matrix_Runner extends AbstractMatrixCucumberTests {
+ * }
+ * </pre>
+ */
+public abstract class AbstractMatrixCucumberTests {
+    private TestNGCucumberRunner testNGCucumberRunner;
+
+    @BeforeClass(alwaysRun = true)
+    public void setUpClass() {
+        testNGCucumberRunner = new TestNGCucumberRunner(this.getClass());
+    }
+
+    @Test(groups = "cucumber", description = "Runs Cucumber Scenarios", dataProvider = "scenarios")
+    public void runScenario(PickleWrapper pickleWrapper, FeatureWrapper featureWrapper, BrowserFactory.BrowserTypeEnum browserType) {
+        // Hooks.setUp runs on this thread and picks up the selected browser
+        BrowserMatrix.select(browserType);
+        try {
+            testNGCucumberRunner.runScenario(pickleWrapper.getPickle());
+        } finally {
+            BrowserMatrix.clear();
+        }
+    }
+
+    @DataProvider(parallel = true)
+    public Object[][] scenarios() {
+        if (testNGCucumberRunner == null) {
+            return new Object[0][0];
+        }
+        List<Object[]> combinations = new ArrayList<>();
+        for (Object[] scenario : testNGCucumberRunner.provideScenarios()) {
+            for (BrowserFactory.BrowserTypeEnum browserType : BrowserMatrix.browsers()) {
+                combinations.add(new Object[]{scenario[0], scenario[1], browserType});
+            }
+        }
+        return combinations.toArray(new Object[0][]);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDownClass() {
+        if (testNGCucumberRunner == null) {
+            return;
+        }
+        testNGCucumberRunner.finish();
+    }
+}
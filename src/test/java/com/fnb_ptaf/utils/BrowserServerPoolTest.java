@@ -0,0 +1,193 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs the pool against the local stand-in server started by {@link BrowserServerPool#launchLocalServer(int)},
+ * and its server selection against stub servers.
+ */
+@Test(singleThreaded = true)
+public class BrowserServerPoolTest {
+    private static final String DEAD = "ws://dead/";
+
+    @Test
+    public void localServerAcceptsConnectionsUntilStopped() throws Exception {
+        int port = freePort();
+        Process server = BrowserServerPool.launchLocalServer(port);
+        try {
+            assertTrue(accepts(port), "the stand-in server should accept connections once launched");
+        } finally {
+            BrowserServerPool.stopLocalServer(server);
+        }
+        assertTrue(server.waitFor(10, TimeUnit.SECONDS), "the server process should exit when stopped");
+        assertEquals(server.descendants().count(), 0L);
+        assertFalse(accepts(port), "the port should be closed once the server stopped");
+    }
+
+    @Test
+    public void browserConnectsToLocalServer() throws Exception {
+        int port = freePort();
+        Process server = BrowserServerPool.launchLocalServer(port);
+        try (Playwright playwright = createPlaywright()) {
+            BrowserType chromium = playwright.chromium();
+            Browser browser;
+            try {
+                browser = chromium.connect("ws://localhost:" + port + "/");
+            } catch (PlaywrightException e) {
+                if (String.valueOf(e.getMessage()).contains("Executable doesn't exist")) {
+                    throw new SkipException("Browsers are not installed: " + e.getMessage());
+                }
+                throw e;
+            }
+            assertTrue(browser.isConnected());
+            assertEquals(browser.newPage().evaluate("1 + 1"), 2);
+            browser.close();
+        } finally {
+            BrowserServerPool.stopLocalServer(server);
+        }
+    }
+
+    @Test
+    public void connectFailsFastWithoutEndpoints() {
+        BrowserServerPool.setEndpoints(Collections.emptyList());
+        try (Playwright playwright = createPlaywright()) {
+            assertThrows(IllegalStateException.class, () -> BrowserServerPool.connect(playwright.chromium()));
+        }
+    }
+
+    @Test
+    public void deadServerIsTakenOutOfRotation() {
+        BrowserServerPool.setEndpoints(Arrays.asList(DEAD, "ws://live-1/"));
+        StubBrowserType browserType = new StubBrowserType();
+
+        for (int i = 0; i < 3; i++) {
+            // The dead server is tried at most once, whichever order the tie is broken in
+            assertEquals(browserType.serverOf(BrowserServerPool.connect(browserType.proxy)), "ws://live-1/");
+        }
+        assertTrue(browserType.attempts.stream().filter(DEAD::equals).count() <= 1, browserType.attempts.toString());
+        assertEquals(browserType.attempts.stream().filter("ws://live-1/"::equals).count(), 3L);
+
+        BrowserServerPool.setEndpoints(Collections.singletonList(DEAD));
+        assertThrows(IllegalStateException.class, () -> BrowserServerPool.connect(browserType.proxy));
+    }
+
+    @Test
+    public void sessionsGoToTheLeastLoadedServer() {
+        BrowserServerPool.setEndpoints(Arrays.asList("ws://live-1/", "ws://live-2/"));
+        StubBrowserType browserType = new StubBrowserType();
+
+        Browser first = BrowserServerPool.connect(browserType.proxy);
+        Browser second = BrowserServerPool.connect(browserType.proxy);
+        assertNotEquals(browserType.serverOf(second), browserType.serverOf(first), "the second session should go to the idle server");
+
+        // Once the first session ends its server is the least loaded again
+        browserType.disconnect(first);
+        Browser third = BrowserServerPool.connect(browserType.proxy);
+        assertEquals(browserType.serverOf(third), browserType.serverOf(first));
+    }
+
+    /**
+     * A browser type whose {@code connect} refuses {@link #DEAD} and hands out stub browsers for every
+     * other endpoint, recording the attempts.
+     */
+    private static final class StubBrowserType {
+        final List<String> attempts = new ArrayList<>();
+        final Map<Browser, String> servers = new HashMap<>();
+        final Map<Browser, Consumer<Browser>> disconnectHandlers = new HashMap<>();
+        final BrowserType proxy = (BrowserType) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{BrowserType.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "name":
+                            return "chromium";
+                        case "connect":
+                            String url = (String) args[0];
+                            attempts.add(url);
+                            if (DEAD.equals(url)) {
+                                throw new PlaywrightException("connect ECONNREFUSED " + url);
+                            }
+                            Browser browser = browser();
+                            servers.put(browser, url);
+                            return browser;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        private Browser browser() {
+            Browser[] self = new Browser[1];
+            self[0] = (Browser) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Browser.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "onDisconnected":
+                                @SuppressWarnings("unchecked")
+                                Consumer<Browser> handler = (Consumer<Browser>) args[0];
+                                disconnectHandlers.put(self[0], handler);
+                                return null;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "stub browser";
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            return self[0];
+        }
+
+        String serverOf(Browser browser) {
+            return servers.get(browser);
+        }
+
+        void disconnect(Browser browser) {
+            disconnectHandlers.get(browser).accept(browser);
+        }
+    }
+
+    private static Playwright createPlaywright() {
+        // The browsers are launched by the server, so the client does not need to download them
+        return Playwright.create(new Playwright.CreateOptions()
+                .setEnv(Collections.singletonMap("PLAYWRIGHT_SKIP_BROWSER_DOWNLOAD", "1")));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static boolean accepts(int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("localhost", port), 2000);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
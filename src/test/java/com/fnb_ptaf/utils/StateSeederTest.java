@@ -0,0 +1,182 @@
+package com.fnb_ptaf.utils;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.Cookie;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+/**
+ * Runs seeds against a local server, with a recording stand-in for the scenario's page and context.
+ */
+@Test(singleThreaded = true)
+public class StateSeederTest {
+    private final List<String> paths = Collections.synchronizedList(new ArrayList<>());
+    private final List<Cookie> addedCookies = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> initScripts = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> navigations = Collections.synchronizedList(new ArrayList<>());
+    private CountDownLatch slowRequests;
+    private HttpServer server;
+    private String address;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+        address = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void seedRunsRequestsInDependencyOrderAndSharesCookies() {
+        resetRecordings();
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("server", address);
+        parameters.put("user", "ana");
+        parameters.put("name", "Thandi");
+
+        StateSeeder.seed(page(), "seedTestBeneficiary", parameters);
+
+        assertEquals(paths.size(), 5);
+        assertEquals(paths.get(0), "/api/session");
+        assertTrue(paths.subList(1, 3).containsAll(List.of("/api/slow/accounts", "/api/slow/limits")), paths.toString());
+        assertEquals(paths.get(3), "/api/beneficiaries");
+        assertEquals(paths.get(4), "/api/beneficiaries/42/fund", "the path should use the id from the beneficiary response");
+
+        assertEquals(addedCookies.size(), 1, "only the cookie set by the requests should be copied to the context");
+        assertEquals(addedCookies.get(0).name, "session");
+        assertEquals(addedCookies.get(0).value, "s3cr3t");
+        assertEquals(addedCookies.get(0).domain, "127.0.0.1");
+
+        assertEquals(initScripts.size(), 1);
+        assertTrue(initScripts.get(0).contains("\"selectedBeneficiary\":\"42\""), initScripts.get(0));
+        assertEquals(navigations, List.of(address + "/beneficiaries/42"));
+        assertEquals(StateSeeder.value("beneficiary.id"), "42");
+    }
+
+    @Test
+    public void rejectedRequestFailsTheSeed() {
+        resetRecordings();
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("server", address);
+        parameters.put("name", "Thandi");
+
+        IllegalStateException error = expectThrows(IllegalStateException.class,
+                () -> StateSeeder.seed(page(), "seedTestWithoutSession", parameters));
+        assertTrue(error.getMessage().contains("answered 401"), error.getMessage());
+    }
+
+    private void resetRecordings() {
+        paths.clear();
+        addedCookies.clear();
+        initScripts.clear();
+        navigations.clear();
+        slowRequests = new CountDownLatch(2);
+    }
+
+    /**
+     * Answers the seed requests: a login that needs the browser's cookie and starts a session, two
+     * requests that only succeed while both are in flight, and beneficiary calls within the session.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        paths.add(path);
+        String cookies = String.valueOf(exchange.getRequestHeaders().getFirst("Cookie"));
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        if (path.equals("/api/session")) {
+            if (!cookies.contains("theme=dark") || !body.contains("\"user\":\"ana\"")) {
+                respond(exchange, 400, "expected the browser's cookie and the user, got " + cookies + " " + body);
+                return;
+            }
+            exchange.getResponseHeaders().add("Set-Cookie", "session=s3cr3t; Path=/");
+            respond(exchange, 200, "{\"token\":\"t\"}");
+        } else if (!cookies.contains("session=s3cr3t")) {
+            respond(exchange, 401, "no session");
+        } else if (path.startsWith("/api/slow/")) {
+            slowRequests.countDown();
+            try {
+                boolean concurrent = slowRequests.await(10, TimeUnit.SECONDS);
+                respond(exchange, concurrent ? 200 : 500, concurrent ? "{}" : "the slow requests did not overlap");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 500, "interrupted");
+            }
+        } else if (path.equals("/api/beneficiaries")) {
+            respond(exchange, body.contains("\"name\":\"Thandi\"") ? 201 : 400, "{\"id\":42}");
+        } else {
+            respond(exchange, 200, "");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @return A page whose context holds one browser cookie and records what the seeder applies
+     */
+    private Page page() {
+        BrowserContext context = (BrowserContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{BrowserContext.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "cookies":
+                            return List.of(new Cookie("theme", "dark").setDomain("127.0.0.1").setPath("/"));
+                        case "addCookies":
+                            for (Object cookie : (List<?>) args[0]) {
+                                addedCookies.add((Cookie) cookie);
+                            }
+                            return null;
+                        case "addInitScript":
+                            initScripts.add(String.valueOf(args[0]));
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (Page) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Page.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "context":
+                            return context;
+                        case "url":
+                            return "about:blank";
+                        case "navigate":
+                            navigations.add(String.valueOf(args[0]));
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
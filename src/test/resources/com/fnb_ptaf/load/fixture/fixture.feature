@@ -0,0 +1,9 @@
+Feature: Load fixture
+
+  Scenario: Fixture page loads
+    When the user requests "/"
+    Then the response status is 200
+
+  Scenario: Fixture page is missing
+    When the user requests "/missing"
+    Then the response status is 200